@@ -28,9 +28,33 @@ import java.util.Arrays;
 public class ANSIWriter implements DrawableSurface {
   private final PrintStream output;
 
+  /**
+   * The number of bytes which have been written to the output stream.
+   */
+  private volatile long written;
+
   public ANSIWriter(OutputStream outputStream) {
     output = new PrintStream(
-      outputStream,
+      new FilterOutputStream(outputStream) {
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          written++;
+        }
+
+        @Override
+        public void write(
+          byte[] b,
+          int off,
+          int len) throws IOException
+        {
+          out.write(
+            b,
+            off,
+            len);
+          written += len;
+        }
+      },
       true,
       StandardCharsets.UTF_8);
   }
@@ -84,4 +108,9 @@ public class ANSIWriter implements DrawableSurface {
         0,
         w));
   }
+
+  @Override
+  public long getBytesWritten() {
+    return written;
+  }
 }
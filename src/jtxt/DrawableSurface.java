@@ -59,4 +59,15 @@ public interface DrawableSurface {
       height,
       width)));
   }
+
+  /**
+   * Gets the total number of bytes which this surface has written to its output, for
+   * surfaces which write frames to a stream or a file.
+   *
+   * @return The number of bytes written so far, or zero if this surface doesn't
+   *   write its frames anywhere.
+   */
+  default long getBytesWritten() {
+    return 0;
+  }
 }
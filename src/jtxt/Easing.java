@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Common curves for animations, which map the fraction of an animation's duration
+ * that has elapsed to the fraction of the change that should have been made.
+ *
+ * @see Terminal#animate(jtxt.emulator.tui.Component, long, java.util.concurrent.TimeUnit,
+ *   DoubleUnaryOperator, java.util.function.DoubleConsumer)
+ */
+public enum Easing implements DoubleUnaryOperator {
+  LINEAR {
+    @Override
+    public double applyAsDouble(double t) {
+      return t;
+    }
+  },
+
+  EASE_IN {
+    @Override
+    public double applyAsDouble(double t) {
+      return t*t*t;
+    }
+  },
+
+  EASE_OUT {
+    @Override
+    public double applyAsDouble(double t) {
+      double u = 1 - t;
+
+      return 1 - u*u*u;
+    }
+  },
+
+  EASE_IN_OUT {
+    @Override
+    public double applyAsDouble(double t) {
+      if (t < 0.5)
+        return 4*t*t*t;
+
+      double u = -2*t + 2;
+
+      return 1 - u*u*u/2;
+    }
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jtxt.FrameStats.Stage;
+
+/**
+ * Collects the measurements of every frame a terminal produces into histograms, so
+ * that the distribution of frame times can be inspected without keeping each
+ * frame's measurements. A terminal only measures its frames once its metrics have
+ * been requested, so there is no cost to a terminal which is never measured.
+ *
+ * @see Terminal#getMetrics()
+ */
+public final class FrameMetrics implements FrameMetricsMXBean {
+  private static final Stage[] STAGES = Stage.values();
+
+  /**
+   * The thread bean, if it's able to measure the bytes allocated by a thread.
+   */
+  private static final com.sun.management.ThreadMXBean threads = allocationBean();
+
+  private final Terminal terminal;
+
+  private final Histogram[] stages;
+  private final Histogram frameTime,
+    cellsChanged,
+    bytesWritten,
+    allocatedBytes;
+
+  private final List<FrameStatsListener> listeners;
+
+  /**
+   * The measurements of the frame currently being produced, which are reused for
+   * every frame.
+   */
+  private final FrameStats current;
+  private long frameStart,
+    allocationStart,
+    bytesStart;
+
+  private volatile long frames;
+
+  /**
+   * The frames produced within the current one-second window, and the rate of the
+   * last complete window.
+   */
+  private long windowStart,
+    windowFrames;
+  private volatile long lastFrame;
+  private volatile double rate;
+
+  FrameMetrics(Terminal terminal) {
+    this.terminal = terminal;
+
+    stages = new Histogram[STAGES.length];
+    for (int s = 0; s < stages.length; s++)
+      stages[s] = new Histogram();
+    frameTime = new Histogram();
+    cellsChanged = new Histogram();
+    bytesWritten = new Histogram();
+    allocatedBytes = new Histogram();
+
+    listeners = new CopyOnWriteArrayList<>();
+    current = new FrameStats();
+    windowStart = System.nanoTime();
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+      return null;
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+    if (!threads.isThreadAllocatedMemorySupported())
+      return null;
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    return threads;
+  }
+
+  private static long allocatedByCurrentThread() {
+    return threads == null
+      ? -1
+      : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Begins measuring a frame. This is called on the thread which produces frames.
+   *
+   * @param bytes The number of bytes the surface had written before this frame.
+   */
+  void beginFrame(long bytes) {
+    frameStart = System.nanoTime();
+    allocationStart = allocatedByCurrentThread();
+    bytesStart = bytes;
+  }
+
+  /**
+   * Finishes measuring the frame which was begun, records it in the histograms and
+   * notifies the listeners.
+   */
+  void endFrame(
+    long layout,
+    long draw,
+    long diff,
+    long submit,
+    long cells,
+    long bytes)
+  {
+    long now = System.nanoTime();
+    FrameStats stats = current;
+
+    stats.frame = frames;
+    stats.stageNanos[Stage.LAYOUT.ordinal()] = layout;
+    stats.stageNanos[Stage.DRAW.ordinal()] = draw;
+    stats.stageNanos[Stage.DIFF.ordinal()] = diff;
+    stats.stageNanos[Stage.SUBMIT.ordinal()] = submit;
+    stats.totalNanos = now - frameStart;
+    stats.cellsChanged = cells;
+    stats.bytesWritten = bytes - bytesStart;
+    stats.allocatedBytes = allocationStart < 0
+      ? -1
+      : allocatedByCurrentThread() - allocationStart;
+
+    stages[Stage.LAYOUT.ordinal()].record(layout);
+    stages[Stage.DRAW.ordinal()].record(draw);
+    stages[Stage.DIFF.ordinal()].record(diff);
+    stages[Stage.SUBMIT.ordinal()].record(submit);
+    frameTime.record(stats.totalNanos);
+    cellsChanged.record(cells);
+    bytesWritten.record(stats.bytesWritten);
+    if (stats.allocatedBytes >= 0)
+      allocatedBytes.record(stats.allocatedBytes);
+
+    frames++;
+    windowFrames++;
+    lastFrame = now;
+    if (now - windowStart >= 1_000_000_000L) {
+      rate = windowFrames * 1e9 / (now - windowStart);
+      windowStart = now;
+      windowFrames = 0;
+    }
+
+    for (FrameStatsListener listener : listeners)
+      listener.frameCompleted(stats);
+  }
+
+  /**
+   * Records the time a stage took for a frame, when the stage runs on a different
+   * thread from the one which produces frames (for example, a render thread). Each
+   * stage must only be recorded by one thread.
+   *
+   * @param stage The stage which was measured.
+   * @param nanos The duration of the stage, in nanoseconds.
+   */
+  public void record(
+    Stage stage,
+    long nanos)
+  {
+    stages[stage.ordinal()].record(nanos);
+  }
+
+  public void addListener(FrameStatsListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(FrameStatsListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Gets the histogram of the time taken by a stage of the pipeline, in
+   * nanoseconds.
+   */
+  public Histogram getStageTimes(Stage stage) {
+    return stages[stage.ordinal()];
+  }
+
+  /**
+   * Gets the histogram of the time taken to produce each frame, in nanoseconds.
+   */
+  public Histogram getFrameTimes() {
+    return frameTime;
+  }
+
+  public Histogram getCellsChanged() {
+    return cellsChanged;
+  }
+
+  public Histogram getBytesWritten() {
+    return bytesWritten;
+  }
+
+  public Histogram getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public long getFrameCount() {
+    return frames;
+  }
+
+  @Override
+  public int getTargetUpdatesPerSecond() {
+    return terminal.getTargetUpdatesPerSecond();
+  }
+
+  @Override
+  public void setTargetUpdatesPerSecond(int updatesPerSecond) {
+    terminal.setTargetUpdatesPerSecond(updatesPerSecond);
+  }
+
+  @Override
+  public double getActualUpdatesPerSecond() {
+    /*
+     * The terminal only produces frames when something changes, so a
+     * terminal which has been idle for a while isn't producing any.
+     */
+    return System.nanoTime() - lastFrame > 2_000_000_000L
+      ? 0.0
+      : rate;
+  }
+
+  @Override
+  public Map<String, Double> getSummary() {
+    Map<String, Double> summary = new LinkedHashMap<>();
+    summarize(
+      summary,
+      "frame",
+      frameTime,
+      true);
+    for (Stage stage : STAGES)
+      summarize(
+        summary,
+        stage.name().toLowerCase(),
+        stages[stage.ordinal()],
+        true);
+    summarize(
+      summary,
+      "cellsChanged",
+      cellsChanged,
+      false);
+    summarize(
+      summary,
+      "bytesWritten",
+      bytesWritten,
+      false);
+    summarize(
+      summary,
+      "allocatedBytes",
+      allocatedBytes,
+      false);
+
+    return summary;
+  }
+
+  private static void summarize(
+    Map<String, Double> summary,
+    String name,
+    Histogram histogram,
+    boolean nanos)
+  {
+    double scale = nanos
+      ? 1e-6
+      : 1.0;
+    String unit = nanos
+      ? "Millis"
+      : "";
+
+    summary.put(
+      name + ".p50" + unit,
+      histogram.getPercentile(0.5) * scale);
+    summary.put(
+      name + ".p99" + unit,
+      histogram.getPercentile(0.99) * scale);
+    summary.put(
+      name + ".max" + unit,
+      histogram.getMax() * scale);
+  }
+
+  @Override
+  public void reset() {
+    for (Histogram stage : stages)
+      stage.reset();
+    frameTime.reset();
+    cellsChanged.reset();
+    bytesWritten.reset();
+    allocatedBytes.reset();
+  }
+
+  /**
+   * Registers these metrics with the platform's MBean server, so that they can be
+   * monitored over JMX.
+   *
+   * @param name The name to register the metrics under, which distinguishes this
+   *   terminal from any others in the same JVM.
+   *
+   * @return The name of the registered MBean.
+   *
+   * @throws JMException if the metrics couldn't be registered; for example, if the
+   *   name is already in use.
+   */
+  public ObjectName registerMBean(String name) throws JMException {
+    ObjectName objectName = new ObjectName("jtxt:type=FrameMetrics,name="
+                                           + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(
+      this,
+      objectName);
+
+    return objectName;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "FrameMetrics[frames=%d, target=%d, actual=%.1f, %n\tsummary=%s]",
+      frames,
+      getTargetUpdatesPerSecond(),
+      getActualUpdatesPerSecond(),
+      getSummary());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.util.Map;
+
+/**
+ * The management interface of a terminal's {@code FrameMetrics}, which allows the
+ * frame pipeline to be monitored with JConsole or any other JMX client.
+ *
+ * @see FrameMetrics#registerMBean(String)
+ */
+public interface FrameMetricsMXBean {
+  long getFrameCount();
+
+  int getTargetUpdatesPerSecond();
+
+  void setTargetUpdatesPerSecond(int updatesPerSecond);
+
+  /**
+   * Gets the number of frames which were actually produced during the last second.
+   */
+  double getActualUpdatesPerSecond();
+
+  /**
+   * Gets the 50th and 99th percentiles and the maximum of each measurement, keyed by
+   * the name of the measurement and the statistic; for example, {@code
+   * "draw.p99Millis"} or {@code "cellsChanged.max"}.
+   */
+  Map<String, Double> getSummary();
+
+  /**
+   * Clears every measurement which has been recorded.
+   */
+  void reset();
+}
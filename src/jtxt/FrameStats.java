@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+/**
+ * The measurements taken while a single frame was produced. The same instance is
+ * reused for every frame, so a {@code FrameStatsListener} which wants to keep the
+ * measurements must copy them.
+ *
+ * @see FrameStatsListener
+ * @see FrameMetrics
+ */
+public final class FrameStats {
+  /**
+   * The stages of the pipeline which turns the components of a terminal into a
+   * frame on the screen.
+   */
+  public enum Stage {
+    /**
+     * Laying out the components, when the terminal was resized or a batch of
+     * changes was committed.
+     */
+    LAYOUT,
+
+    /**
+     * Drawing the components into a {@code GlyphBuffer}.
+     */
+    DRAW,
+
+    /**
+     * Comparing the buffer with the previous frame to count the cells which
+     * changed.
+     */
+    DIFF,
+
+    /**
+     * Handing the buffer to the terminal's surface. For surfaces which rasterize or
+     * encode the frame on the calling thread, this is the time that takes.
+     */
+    SUBMIT,
+
+    /**
+     * Rasterizing the frame, for surfaces which do so on a thread of their own.
+     */
+    RASTERIZE,
+
+    /**
+     * Painting the rasterized frame on the screen.
+     */
+    PAINT
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  long frame;
+  final long[] stageNanos;
+  long totalNanos,
+    cellsChanged,
+    bytesWritten,
+    allocatedBytes;
+
+  FrameStats() {
+    stageNanos = new long[STAGES.length];
+  }
+
+  /**
+   * Gets the number of this frame, counting from the first frame which was measured.
+   */
+  public long getFrameNumber() {
+    return frame;
+  }
+
+  /**
+   * Gets the time which the given stage took for this frame. Stages which run on
+   * another thread (rasterizing and painting, in the emulator) aren't known when the
+   * frame is produced, and are reported as zero; they are still recorded by the
+   * terminal's {@code FrameMetrics}.
+   *
+   * @param stage The stage of the pipeline.
+   *
+   * @return The duration of the stage, in nanoseconds.
+   */
+  public long getStageNanos(Stage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  /**
+   * Gets the time taken to produce this frame, from the moment the terminal began
+   * updating to the moment the frame was handed to its surface.
+   *
+   * @return The duration of the frame, in nanoseconds.
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getCellsChanged() {
+    return cellsChanged;
+  }
+
+  /**
+   * Gets the number of bytes which the terminal's surface wrote while drawing this
+   * frame, for surfaces which write to a stream or file.
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Gets the number of bytes allocated on the heap by the thread which produced this
+   * frame, or -1 if the JVM can't measure allocations.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder stages = new StringBuilder();
+    for (Stage stage : STAGES)
+      stages.append(String.format(
+        "%s=%.3fms, ",
+        stage.name().toLowerCase(),
+        stageNanos[stage.ordinal()] / 1e6));
+
+    return String.format(
+      "FrameStats[frame=%d, %stotal=%.3fms, cells=%d, bytes=%d, allocated=%d]",
+      frame,
+      stages,
+      totalNanos / 1e6,
+      cellsChanged,
+      bytesWritten,
+      allocatedBytes);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+/**
+ * Receives the measurements of each frame as it is produced by a terminal.
+ *
+ * @see Terminal#addFrameStatsListener(FrameStatsListener)
+ */
+@FunctionalInterface
+public interface FrameStatsListener {
+  /**
+   * Called on the thread which produced the frame, after the frame has been handed
+   * to the terminal's surface. This should return quickly, as the next frame can't
+   * be produced until it does.
+   *
+   * @param stats The measurements of the frame. This object is reused for the next
+   *   frame, and must be copied if it is kept.
+   */
+  void frameCompleted(FrameStats stats);
+}
@@ -1,6 +1,8 @@
 package jtxt;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import jtxt.emulator.GString;
@@ -44,6 +46,21 @@ public class GlyphBuffer {
       buffer.add(GString.blank(ls));
   }
 
+  /**
+   * Creates a buffer which contains the given lines. As {@code GString}s are
+   * immutable, the lines are shared rather than copied.
+   *
+   * @param bounds The bounds of the new buffer.
+   * @param lines The lines of the buffer, one for each line within the bounds.
+   */
+  GlyphBuffer(
+    Region bounds,
+    GString[] lines)
+  {
+    this.bounds = bounds;
+    buffer = new ArrayList<>(Arrays.asList(lines));
+  }
+
   /**
    * Updates the character at the specified index. This will overwrite the character
    * that occupied this location beforehand.
@@ -93,25 +110,49 @@ public class GlyphBuffer {
   public void update(
     GString glyphs,
     Location start)
+  {
+    update(
+      glyphs,
+      0,
+      glyphs.length(),
+      start);
+  }
+
+  /**
+   * Replaces the glyphs from the start with a range of the glyphs of the given
+   * string, so that part of a string may be drawn without copying it out first.
+   *
+   * @param glyphs The string which contains the glyphs to place in the buffer.
+   * @param from The index of the first glyph of the string to place.
+   * @param to The index just past the last glyph of the string to place.
+   * @param start The {@code Location} of the first glyph.
+   */
+  public void update(
+    GString glyphs,
+    int from,
+    int to,
+    Location start)
   {
     if (!start.inside(bounds))
       return;
 
-    GString line = buffer.get(start.line);
-    for (int c = 0;
-         c + start.position < bounds.getWidth() && c < glyphs.length();
-         c++)
-    {
-      line = line.set(
-        c + start.position,
-        glyphs.get(c));
-    }
+    /*
+     * The glyphs are copied into the line all at once, rather than one at a
+     * time, so that this only copies the line once.
+     */
+    GString line = buffer.get(start.line).replace(
+      start.position,
+      glyphs,
+      from,
+      to);
+    if (line.length() != bounds.getWidth())
+      line = line.substring(
+        0,
+        bounds.getWidth());
 
     buffer.set(
       start.line,
-      line.substring(
-        0,
-        bounds.getWidth()));
+      line);
   }
 
   /**
@@ -202,6 +243,39 @@ public class GlyphBuffer {
     return buffer;
   }
 
+  /**
+   * Moves the lines of this buffer up by the given number of lines, or down if the
+   * number is negative. Lines which are moved past the edge of the buffer are
+   * discarded, and the lines which are exposed are blank. The lines themselves are
+   * moved rather than copied, so this takes the same time however wide the buffer
+   * is.
+   *
+   * @param lines The number of lines to move the contents of this buffer up by.
+   */
+  public void scroll(int lines) {
+    int height = buffer.size();
+    if (Math.abs(lines) >= height) {
+      clear();
+      return;
+    }
+
+    Collections.rotate(
+      buffer,
+      -lines);
+
+    GString blank = GString.blank(bounds.getWidth());
+    int from = lines > 0
+      ? height - lines
+      : 0,
+      to = lines > 0
+        ? height
+        : -lines;
+    for (int line = from; line < to; line++)
+      buffer.set(
+        line,
+        blank);
+  }
+
   /**
    * Clear all characters out of this frame's buffer.
    */
@@ -213,6 +287,62 @@ public class GlyphBuffer {
     }
   }
 
+  /**
+   * Determines whether this buffer contains the same glyphs as another buffer, such
+   * that drawing one in place of the other would not change the frame. Lines which
+   * are shared between the buffers are compared by reference.
+   *
+   * @param other The buffer to compare with this one.
+   *
+   * @return Whether both buffers have the same bounds and the same glyphs.
+   */
+  public boolean contentEquals(GlyphBuffer other) {
+    if (other == this)
+      return true;
+    if (other == null || !bounds.equals(other.bounds))
+      return false;
+
+    for (int line = 0; line < buffer.size(); line++) {
+      GString a = buffer.get(line),
+        b = other.buffer.get(line);
+      if (a != b && !a.equals(b))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Counts the glyphs in this buffer which differ from those in the same location
+   * of another buffer.
+   *
+   * @param previous The buffer to compare with this one, such as the previous frame.
+   *
+   * @return The number of glyphs which changed, or the number of glyphs in this
+   *   buffer if the other buffer is null or has different bounds.
+   */
+  public int countChangedCells(GlyphBuffer previous) {
+    if (previous == null || !bounds.equals(previous.bounds))
+      return bounds.getWidth() * bounds.getHeight();
+
+    int changed = 0;
+    for (int line = 0; line < buffer.size(); line++) {
+      GString a = buffer.get(line),
+        b = previous.buffer.get(line);
+      if (a == b)
+        continue;
+
+      int length = Math.min(a.length(), b.length());
+      for (int p = 0; p < length; p++) {
+        if (!a.get(p).equals(b.get(p)))
+          changed++;
+      }
+      changed += Math.abs(a.length() - b.length());
+    }
+
+    return changed;
+  }
+
   public Region getBounds() {
     return bounds;
   }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts non-negative values in a fixed set of buckets, so that recording a value
+ * never allocates and takes constant time. Values below 16 each have a bucket of
+ * their own; above that, every power of two is split into 16 buckets, so a
+ * percentile is accurate to within about 6% of the true value. The maximum is kept
+ * exactly.
+ *
+ * <p>
+ * Values may only be recorded by one thread at a time, but may be read from any
+ * thread.
+ * </p>
+ */
+public final class Histogram {
+  private static final int SUB_BITS = 4,
+    SUB_BUCKETS = 1 << SUB_BITS;
+
+  /**
+   * Enough buckets for every non-negative long.
+   */
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts;
+  private volatile long count,
+    max;
+
+  public Histogram() {
+    counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Records a value in this histogram. Negative values are recorded as zero.
+   *
+   * @param value The value to record.
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+
+    int bucket = bucketOf(value);
+    counts.lazySet(
+      bucket,
+      counts.get(bucket) + 1);
+    if (value > max)
+      max = value;
+    count++;
+  }
+
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS)
+      return (int)value;
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value),
+      shift = exponent - SUB_BITS;
+
+    return (shift + 1) * SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Gets the largest value which falls within the given bucket.
+   */
+  private static long highestValueIn(int bucket) {
+    if (bucket < SUB_BUCKETS)
+      return bucket;
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Estimates the value below which the given fraction of the recorded values fall.
+   *
+   * @param fraction A fraction between 0 and 1; for example, 0.99 for the 99th
+   *   percentile.
+   *
+   * @return The estimated percentile (which is never more than the maximum), or zero
+   *   if nothing has been recorded.
+   */
+  public long getPercentile(double fraction) {
+    long total = count;
+    if (total == 0)
+      return 0;
+
+    long rank = Math.max((long)Math.ceil(fraction * total), 1),
+      seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts.get(b);
+      if (seen >= rank)
+        return Math.min(
+          highestValueIn(b),
+          max);
+    }
+
+    return max;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Clears every value which has been recorded.
+   */
+  public void reset() {
+    for (int b = 0; b < BUCKETS; b++)
+      counts.set(
+        b,
+        0);
+    count = 0;
+    max = 0;
+  }
+}
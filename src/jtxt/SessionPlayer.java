@@ -0,0 +1,306 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
+import jtxt.emulator.Region;
+
+/**
+ * Replays a session log which was written by a {@code SessionRecorder}, either into a
+ * {@code Terminal} or as an <a href="https://docs.asciinema.org/manual/asciicast/v2/">
+ * asciicast</a> which can be played back with asciinema.
+ *
+ * @see SessionRecorder
+ */
+public class SessionPlayer {
+  private final Path log;
+
+  /**
+   * Opens the session log at the given path.
+   *
+   * @param log The location of a session log.
+   *
+   * @throws IOException if the file can't be read, or isn't a session log.
+   */
+  public SessionPlayer(Path log) throws IOException {
+    this.log = log;
+
+    /*
+     * Check the header now, so that a bad file is reported here rather than
+     * when the session is first played.
+     */
+    open().close();
+  }
+
+  private DataInputStream open() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+      Files.newInputStream(log)));
+
+    if (in.readInt() != SessionRecorder.MAGIC) {
+      in.close();
+      throw new IOException(log + " is not a session log.");
+    }
+    int version = in.readInt();
+    if (version != SessionRecorder.VERSION) {
+      in.close();
+      throw new IOException("Unsupported session log version " + version + ".");
+    }
+
+    return in;
+  }
+
+  /**
+   * Replays the session into the given terminal, drawing each recorded frame to its
+   * surface.
+   *
+   * @param terminal The terminal to replay the session into.
+   * @param speed How many times faster than real time the session should be
+   *   replayed; for example, <code>1.0</code> replays the session at the speed it
+   *   was recorded. A speed of zero (or less) replays the session as fast as
+   *   possible.
+   *
+   * @throws IOException if the log can't be read.
+   * @throws InterruptedException if the thread is interrupted while waiting for the
+   *   next frame.
+   */
+  public void play(
+    Terminal terminal,
+    double speed) throws IOException, InterruptedException
+  {
+    try (DataInputStream in = open()) {
+      Frame frame = new Frame();
+      long begin = System.nanoTime();
+
+      while (frame.read(in)) {
+        if (speed > 0) {
+          long due = begin + (long)(frame.time * 1000 / speed),
+            wait = due - System.nanoTime();
+          if (wait > 0)
+            Thread.sleep(
+              wait / 1_000_000,
+              (int)(wait % 1_000_000));
+        }
+
+        /*
+         * A surface may hold on to the buffer it has been given, so each
+         * frame is drawn with its own buffer. (The lines themselves are
+         * immutable and can be shared.)
+         */
+        terminal.surface.draw(new GlyphBuffer(
+          frame.bounds,
+          frame.lines.clone()));
+      }
+    }
+  }
+
+  /**
+   * Writes the session as an asciicast (version 2), where each frame becomes an
+   * output event which redraws the glyphs that changed with ANSI escape sequences.
+   *
+   * @param out The writer to write the asciicast to.
+   *
+   * @throws IOException if the log can't be read, or the asciicast can't be written.
+   */
+  public void exportAsciicast(Writer out) throws IOException {
+    try (DataInputStream in = open()) {
+      Frame frame = new Frame();
+      boolean header = false;
+
+      while (frame.read(in)) {
+        if (!header) {
+          out.write(String.format(
+            "{\"version\": 2, \"width\": %d, \"height\": %d}%n",
+            frame.bounds.getWidth(),
+            frame.bounds.getHeight()));
+          header = true;
+        }
+
+        out.write(String.format(
+          "[%.6f, \"o\", \"%s\"]%n",
+          frame.time / 1e6,
+          escape(frame.ansi.toString())));
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Escapes a string so it can be embedded within a JSON string.
+   */
+  private static String escape(String s) {
+    StringBuilder escaped = new StringBuilder(s.length() + 16);
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':
+        escaped.append("\\\"");
+        break;
+      case '\\':
+        escaped.append("\\\\");
+        break;
+      default:
+        if (c < 0x20)
+          escaped.append(String.format(
+            "\\u%04x",
+            (int)c));
+        else
+          escaped.append(c);
+      }
+    }
+
+    return escaped.toString();
+  }
+
+  /**
+   * The state of the screen as the log is read, one frame at a time.
+   */
+  private static class Frame {
+    Region bounds;
+    GString[] lines;
+    long time;
+
+    /**
+     * The ANSI escape sequences which redraw the runs of the latest frame.
+     */
+    final StringBuilder ansi = new StringBuilder();
+
+    /**
+     * Reads the next frame from the log and applies it to the lines.
+     *
+     * @return Whether a frame was read; false when the end of the log is reached
+     *   (including when the last frame was only partially written).
+     */
+    boolean read(DataInputStream in) throws IOException {
+      try {
+        int type = in.read();
+        if (type < 0)
+          return false;
+
+        time = readVarLong(in);
+        int width = (int)readVarLong(in),
+          height = (int)readVarLong(in),
+          runs = (int)readVarLong(in);
+
+        if (type == SessionRecorder.KEYFRAME
+            || bounds == null
+            || bounds.getWidth() != width
+            || bounds.getHeight() != height)
+        {
+          bounds = new Region(
+            0,
+            0,
+            height,
+            width);
+          lines = new GString[height];
+          for (int l = 0; l < height; l++)
+            lines[l] = GString.blank(width);
+        }
+
+        ansi.setLength(0);
+        for (int r = 0; r < runs; r++)
+          readRun(in);
+
+        return true;
+      } catch (EOFException eof) {
+        return false;
+      }
+    }
+
+    private void readRun(DataInputStream in) throws IOException {
+      int line = (int)readVarLong(in),
+        position = (int)readVarLong(in),
+        length = (int)readVarLong(in);
+
+      Glyph[] glyphs = new Glyph[lines[line].length()];
+      for (int p = 0; p < glyphs.length; p++)
+        glyphs[p] = lines[line].get(p);
+
+      ansi.append(String.format(
+        "\u001B[%d;%dH",
+        line + 1,
+        position + 1));
+
+      Color fg = null,
+        bg = null;
+      for (int p = position; p < position + length; p++) {
+        char character = (char)readVarLong(in);
+        int flags = in.readUnsignedByte();
+
+        if ((flags & SessionRecorder.FG) != 0) {
+          fg = new Color(
+            in.readInt(),
+            true);
+          ansi.append(String.format(
+            "\u001B[38;2;%d;%d;%dm",
+            fg.getRed(),
+            fg.getGreen(),
+            fg.getBlue()));
+        }
+        if ((flags & SessionRecorder.BG) != 0) {
+          bg = new Color(
+            in.readInt(),
+            true);
+          if (bg.getAlpha() == 0)
+            ansi.append("\u001B[49m");
+          else
+            ansi.append(String.format(
+              "\u001B[48;2;%d;%d;%dm",
+              bg.getRed(),
+              bg.getGreen(),
+              bg.getBlue()));
+        }
+
+        if (p < glyphs.length)
+          glyphs[p] = new Glyph(
+            character,
+            fg,
+            bg);
+        ansi.append(character == '\0'
+          ? ' '
+          : character);
+      }
+      ansi.append("\u001B[0m");
+
+      lines[line] = new GString(glyphs);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = in.read();
+        if (b < 0)
+          throw new EOFException();
+
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0)
+          return value;
+      }
+
+      throw new IOException("Malformed varint in session log.");
+    }
+  }
+}
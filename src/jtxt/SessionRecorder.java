@@ -0,0 +1,470 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
+import jtxt.emulator.Region;
+
+/**
+ * Decorates a {@code DrawableSurface} so that every frame drawn to it is also
+ * appended to a session log, which can later be replayed with a {@code
+ * SessionPlayer}. Only the glyphs which changed since the previous frame are
+ * recorded.
+ *
+ * <p>
+ * Recording is meant to be cheap enough to leave on in production. The thread which
+ * draws the frame only diffs it against the previous frame and encodes the changes
+ * into a preallocated ring buffer; a background thread drains the ring to the log.
+ * If the writer falls so far behind that the ring fills, the frame is dropped (rather
+ * than blocking the caller) and the next frame is recorded in full.
+ * </p>
+ *
+ * <p>
+ * A session log begins with the magic number "JTSR" and the version of the format,
+ * followed by a sequence of frames. Each frame is encoded as:
+ * </p>
+ * <pre>
+ *   byte   type         KEYFRAME or DIFF
+ *   varint time         microseconds since recording started
+ *   varint width
+ *   varint height
+ *   varint runs
+ *   runs {
+ *     varint line
+ *     varint position
+ *     varint length
+ *     glyphs {
+ *       varint character
+ *       byte   flags    which colors differ from the previous glyph of the run
+ *       int    color    (when flags &amp; FG)
+ *       int    background (when flags &amp; BG)
+ *     }
+ *   }
+ * </pre>
+ * A keyframe contains every line of the frame, and a diff contains only the runs of
+ * glyphs which changed.
+ *
+ * @see Terminal#record(Path)
+ * @see SessionPlayer
+ */
+public class SessionRecorder implements DrawableSurface, Closeable {
+  static final int MAGIC = 0x4A545352,
+    VERSION = 1;
+
+  static final byte KEYFRAME = 1,
+    DIFF = 2;
+
+  static final int FG = 0x1,
+    BG = 0x2;
+
+  /**
+   * The default capacity of the ring buffer; this must be a power of two.
+   */
+  private static final int RING_CAPACITY = 1 << 22;
+
+  private final DrawableSurface surface;
+  private final FileChannel channel;
+
+  /**
+   * The ring buffer which encoded frames are placed in until they are written. The
+   * head is only advanced by the drawing thread, and the tail only by the writer.
+   */
+  private final byte[] ring;
+  private volatile long head,
+    tail;
+
+  /**
+   * The frame currently being encoded. This is reused (and only grown) from one
+   * frame to the next.
+   */
+  private byte[] scratch;
+  private int length;
+  private final byte[] varint;
+
+  /**
+   * The lines of the previous frame. As {@code GString}s are immutable, lines which
+   * haven't been redrawn can be skipped by comparing references.
+   */
+  private GString[] previous;
+  private Region previousBounds;
+
+  private boolean keyframe;
+  private long dropped;
+  private volatile long recorded;
+
+  private final long start;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * Run once this recorder has been closed. A terminal uses this to stop drawing
+   * through the recorder.
+   */
+  Runnable onClose;
+
+  /**
+   * Begins recording the frames drawn to the given surface.
+   *
+   * @param surface The surface which frames are drawn to.
+   * @param log The file to append the session log to.
+   *
+   * @throws IOException if the log can't be opened.
+   */
+  public SessionRecorder(
+    DrawableSurface surface,
+    Path log) throws IOException
+  {
+    this.surface = surface;
+    channel = FileChannel.open(
+      log,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING);
+
+    ByteBuffer header = ByteBuffer.allocate(8);
+    header.putInt(MAGIC)
+      .putInt(VERSION)
+      .flip();
+    while (header.hasRemaining())
+      channel.write(header);
+
+    ring = new byte[RING_CAPACITY];
+    scratch = new byte[1 << 16];
+    varint = new byte[5];
+    keyframe = true;
+    start = System.nanoTime();
+
+    writer = new Thread(
+      this::drain,
+      "jtxt-session-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    if (!closed)
+      record(buffer);
+
+    if (surface != null)
+      surface.draw(buffer);
+  }
+
+  private void record(GlyphBuffer buffer) {
+    Region bounds = buffer.getBounds();
+    int nl = bounds.getHeight(),
+      ls = bounds.getWidth();
+
+    if (!bounds.equals(previousBounds)) {
+      previous = new GString[nl];
+      previousBounds = bounds;
+      keyframe = true;
+    }
+
+    length = 0;
+    putByte(keyframe
+      ? KEYFRAME
+      : DIFF);
+    putVarLong((System.nanoTime() - start) / 1000);
+    putVarInt(ls);
+    putVarInt(nl);
+
+    /*
+     * The number of runs isn't known until the frame has been diffed, so
+     * the runs are encoded first, and moved to make room for the count.
+     */
+    int countAt = length,
+      runs = 0;
+
+    for (int l = 0; l < nl; l++) {
+      GString line = buffer.getString(l),
+        last = previous[l];
+
+      if (keyframe) {
+        putRun(
+          line,
+          l,
+          0,
+          line.length());
+        runs++;
+      }
+      else if (line != last) {
+        int p = 0,
+          n = Math.min(line.length(), last.length());
+
+        while (p < n) {
+          if (line.get(p).equals(last.get(p))) {
+            p++;
+            continue;
+          }
+
+          int end = p + 1;
+          while (end < n && !line.get(end).equals(last.get(end)))
+            end++;
+
+          putRun(
+            line,
+            l,
+            p,
+            end);
+          runs++;
+          p = end;
+        }
+      }
+
+      previous[l] = line;
+    }
+
+    if (runs == 0 && !keyframe)
+      return;
+
+    insertVarInt(
+      countAt,
+      runs);
+    keyframe = !publish();
+  }
+
+  private void putRun(
+    GString line,
+    int l,
+    int start,
+    int end)
+  {
+    putVarInt(l);
+    putVarInt(start);
+    putVarInt(end - start);
+
+    int fg = 0,
+      bg = 0;
+    for (int p = start; p < end; p++) {
+      Glyph glyph = line.get(p);
+      int c = glyph.color.getRGB(),
+        b = glyph.background.getRGB(),
+        flags = (p == start || c != fg ? FG : 0)
+                | (p == start || b != bg ? BG : 0);
+
+      putVarInt(glyph.character);
+      putByte(flags);
+      if ((flags & FG) != 0)
+        putInt(c);
+      if ((flags & BG) != 0)
+        putInt(b);
+
+      fg = c;
+      bg = b;
+    }
+  }
+
+  /**
+   * Copies the encoded frame into the ring buffer, if there is room for it.
+   *
+   * @return Whether the frame was published; if it wasn't, it has been dropped.
+   */
+  private boolean publish() {
+    long h = head;
+    if (length > ring.length - (h - tail)) {
+      dropped++;
+      return false;
+    }
+
+    int offset = (int)(h & (ring.length - 1)),
+      first = Math.min(length, ring.length - offset);
+    System.arraycopy(
+      scratch,
+      0,
+      ring,
+      offset,
+      first);
+    System.arraycopy(
+      scratch,
+      first,
+      ring,
+      0,
+      length - first);
+
+    head = h + length;
+    recorded += length;
+    LockSupport.unpark(writer);
+
+    return true;
+  }
+
+  /**
+   * The body of the writer thread, which writes the contents of the ring buffer to
+   * the log until this recorder is closed.
+   */
+  private void drain() {
+    try {
+      while (true) {
+        long h = head,
+          t = tail;
+
+        if (h == t) {
+          if (closed)
+            break;
+
+          LockSupport.parkNanos(
+            this,
+            50_000_000L);
+          continue;
+        }
+
+        int offset = (int)(t & (ring.length - 1)),
+          n = (int)Math.min(h - t, ring.length - offset);
+        ByteBuffer out = ByteBuffer.wrap(
+          ring,
+          offset,
+          n);
+        while (out.hasRemaining())
+          channel.write(out);
+
+        tail = t + n;
+      }
+    } catch (IOException ie) {
+      /*
+       * The log can no longer be written to; stop recording, but let the
+       * terminal carry on as normal.
+       */
+      closed = true;
+    } finally {
+      try {
+        channel.close();
+      } catch (IOException ie) { }
+    }
+  }
+
+  /**
+   * Stops recording, and waits for every recorded frame to be written to the log.
+   * Frames drawn after this recorder has been closed are still passed to the
+   * underlying surface.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+    LockSupport.unpark(writer);
+
+    if (onClose != null)
+      onClose.run();
+
+    try {
+      writer.join();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Gets the number of frames which were dropped because the writer could not keep
+   * up. (Each dropped frame causes the following frame to be recorded in full, so
+   * the session can still be replayed.)
+   *
+   * @return The number of dropped frames.
+   */
+  public long getDroppedFrames() {
+    return dropped;
+  }
+
+  /**
+   * Gets the number of bytes recorded to the log, as well as any written by the
+   * underlying surface.
+   */
+  @Override
+  public long getBytesWritten() {
+    return recorded + (surface == null
+      ? 0
+      : surface.getBytesWritten());
+  }
+
+  public DrawableSurface getSurface() {
+    return surface;
+  }
+
+  private void ensureCapacity(int n) {
+    if (length + n > scratch.length)
+      scratch = Arrays.copyOf(
+        scratch,
+        Math.max(scratch.length * 2, length + n));
+  }
+
+  private void putByte(int b) {
+    ensureCapacity(1);
+    scratch[length++] = (byte)b;
+  }
+
+  private void putInt(int v) {
+    ensureCapacity(4);
+    scratch[length++] = (byte)(v >>> 24);
+    scratch[length++] = (byte)(v >>> 16);
+    scratch[length++] = (byte)(v >>> 8);
+    scratch[length++] = (byte)v;
+  }
+
+  private void putVarInt(int v) {
+    putVarLong(v & 0xFFFFFFFFL);
+  }
+
+  private void putVarLong(long v) {
+    ensureCapacity(10);
+    while ((v & ~0x7FL) != 0) {
+      scratch[length++] = (byte)((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    scratch[length++] = (byte)v;
+  }
+
+  /**
+   * Inserts a varint at the given offset of the frame being encoded, shifting
+   * everything after it to make room.
+   */
+  private void insertVarInt(
+    int offset,
+    int v)
+  {
+    int n = 0;
+    while ((v & ~0x7F) != 0) {
+      varint[n++] = (byte)((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    varint[n++] = (byte)v;
+
+    ensureCapacity(n);
+    System.arraycopy(
+      scratch,
+      offset,
+      scratch,
+      offset + n,
+      length - offset);
+    System.arraycopy(
+      varint,
+      0,
+      scratch,
+      offset,
+      n);
+    length += n;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import jtxt.emulator.tui.Component;
+
+/**
+ * A piece of blocking work, such as loading data or scaling an image, which a
+ * {@code Component} has handed off to a background thread. The work runs on a
+ * virtual thread when the runtime supports them (and on a pooled daemon thread
+ * otherwise), and its result is handed back to the terminal's UI thread, where it
+ * is delivered before the next frame is drawn.
+ *
+ * @param <T> The type of the result of the work.
+ *
+ * @see Terminal#submit(Component, Callable, Consumer, Consumer)
+ */
+public final class Task<T> {
+  private static final ExecutorService executor = createExecutor();
+
+  private final Terminal terminal;
+  private final Component owner;
+  private final Callable<T> work;
+  private final Consumer<? super T> onSuccess;
+  private final Consumer<? super Exception> onFailure;
+
+  /**
+   * The thread running the work, so that it can be interrupted if the task is
+   * cancelled.
+   */
+  private volatile Thread thread;
+  private volatile boolean cancelled,
+    done;
+
+  Task(
+    Terminal terminal,
+    Component owner,
+    Callable<T> work,
+    Consumer<? super T> onSuccess,
+    Consumer<? super Exception> onFailure)
+  {
+    this.terminal = terminal;
+    this.owner = owner;
+    this.work = work;
+    this.onSuccess = onSuccess;
+    this.onFailure = onFailure;
+  }
+
+  /**
+   * Creates an executor which starts a virtual thread for each task, or, on a
+   * runtime which doesn't have virtual threads, a pool of daemon threads.
+   */
+  private static ExecutorService createExecutor() {
+    try {
+      Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+      return (ExecutorService)virtual.invoke(null);
+    } catch (ReflectiveOperationException roe) {
+      AtomicInteger count = new AtomicInteger();
+
+      return Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(
+          r,
+          "jtxt-task-" + count.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+      });
+    }
+  }
+
+  void start() {
+    executor.execute(this::run);
+  }
+
+  private void run() {
+    if (cancelled)
+      return;
+
+    thread = Thread.currentThread();
+    try {
+      T result = work.call();
+      terminal.post(
+        this,
+        () -> onSuccess.accept(result));
+    } catch (Throwable t) {
+      /*
+       * Errors are delivered as well, wrapped as a Future would wrap them, so
+       * that the task still completes and its owner learns that it failed.
+       */
+      Exception e = t instanceof Exception
+        ? (Exception)t
+        : new ExecutionException(t);
+      if (!cancelled)
+        terminal.post(
+          this,
+          () -> onFailure.accept(e));
+    } finally {
+      /*
+       * Don't leave the interrupt of a late cancellation behind on a pooled
+       * thread.
+       */
+      synchronized (this) {
+        thread = null;
+        Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * Delivers the result of this task on the UI thread, unless the task has been
+   * cancelled in the meantime.
+   */
+  void complete(Runnable delivery) {
+    if (cancelled)
+      return;
+
+    done = true;
+    delivery.run();
+  }
+
+  /**
+   * Cancels this task. If the work is running, its thread is interrupted; the result
+   * of a cancelled task is never delivered, even if the work had already finished.
+   * This may be called from any thread.
+   */
+  public void cancel() {
+    cancelled = true;
+
+    synchronized (this) {
+      if (thread != null)
+        thread.interrupt();
+    }
+    terminal.forget(this);
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Determines whether the result of this task has been delivered.
+   *
+   * @return Whether the work finished, and its result (or failure) was delivered.
+   */
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * Gets the component which submitted this task. The task is cancelled if this
+   * component is removed from the terminal.
+   */
+  public Component getOwner() {
+    return owner;
+  }
+}
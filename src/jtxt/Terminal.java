@@ -15,11 +15,23 @@
  */
 package jtxt;
 
-import jtxt.emulator.Location;
+import jtxt.emulator.Context;
 import jtxt.emulator.Region;
 import jtxt.emulator.tui.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  *
@@ -51,6 +63,43 @@ public abstract class Terminal implements ComponentObserver {
    */
   private KeyboardTarget focusedComponent;
 
+  /**
+   * The results of background tasks (and other actions) which are waiting to be
+   * run on the UI thread. Any thread may post to the mailbox, but it's only drained by the thread
+   * which draws frames, once per frame.
+   *
+   * @see #submit(Component, Callable, Consumer, Consumer)
+   */
+  private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The tasks which haven't yet completed, by the component which submitted them.
+   */
+  private final Map<Component, Set<Task<?>>> tasks = new ConcurrentHashMap<>();
+
+  /**
+   * The ticks and animations which components have scheduled.
+   *
+   * @see #schedule(Component, long, TimeUnit, Runnable)
+   */
+  private final TimerWheel timers = new TimerWheel();
+
+  private boolean draining;
+
+  /**
+   * The measurements of this terminal's frames, or null if they aren't being
+   * measured.
+   */
+  private volatile FrameMetrics metrics;
+
+  /**
+   * The last frame drawn while frames are being measured, which the next frame is
+   * compared with to count the cells which changed.
+   */
+  private GlyphBuffer previousFrame;
+
+  private volatile int targetUpdatesPerSecond = Context.DEFAULT_UPDATES_PER_SECOND;
+
   protected Terminal(
     int width,
     int height)
@@ -108,15 +157,472 @@ public abstract class Terminal implements ComponentObserver {
     focusedComponent = target;
   }
 
-  @Override
-  public void update() {
-    surface.draw(root.drawToBuffer());
+  /**
+   * Delivers a key press to the focused component. If no component is focused, the
+   * key press is discarded.
+   *
+   * @param character The character of the key which was pressed; keys which don't
+   *   produce text are given by the character of their {@code KeyboardTarget.Key}.
+   */
+  public void generateKeyPress(char character) {
+    KeyboardTarget target = focusedComponent;
+    if (target != null)
+      target.keyPressed(character);
+  }
 
+  /**
+   * Runs blocking work for a component on a background thread, and delivers the
+   * result to the component on the thread which draws this terminal's frames, before
+   * the next frame is drawn. The task is cancelled automatically if the component is
+   * removed from the terminal.
+   *
+   * @param owner The component which the work is being done for.
+   * @param work The work to run in the background.
+   * @param onSuccess Receives the result of the work on the UI thread.
+   * @param onFailure Receives the exception thrown by the work on the UI thread. An
+   *   {@code Error} thrown by the work is wrapped in an
+   *   {@code ExecutionException}.
+   *
+   * @return The task, which may be used to cancel the work.
+   */
+  public <T> Task<T> submit(
+    Component owner,
+    Callable<T> work,
+    Consumer<? super T> onSuccess,
+    Consumer<? super Exception> onFailure)
+  {
+    Task<T> task = new Task<>(
+      this,
+      owner,
+      work,
+      onSuccess,
+      onFailure);
     /*
-     * TODO: I need to separate the updates coming from the EventDispatcher
-     *       and updates which Components generate (which means that a new
-     *       frame needs to be rasterized).
+     * The task is added within the same atomic step which finds the owner's set,
+     * since forget() drops the set as soon as it's empty; a task added to a set
+     * which had just been dropped would never be cancelled with its owner.
      */
+    tasks.compute(
+      owner,
+      (c, owned) -> {
+        if (owned == null)
+          owned = ConcurrentHashMap.newKeySet();
+        owned.add(task);
+
+        return owned;
+      });
+    task.start();
+
+    return task;
+  }
+
+  /**
+   * Runs blocking work for a component on a background thread. Any exception thrown
+   * by the work is printed, rather than delivered to the component.
+   *
+   * @see #submit(Component, Callable, Consumer, Consumer)
+   */
+  public <T> Task<T> submit(
+    Component owner,
+    Callable<T> work,
+    Consumer<? super T> onSuccess)
+  {
+    return submit(
+      owner,
+      work,
+      onSuccess,
+      Exception::printStackTrace);
+  }
+
+  /**
+   * Places the delivery of a task's result in the mailbox. This is called on the
+   * thread which ran the task.
+   */
+  void post(
+    Task<?> task,
+    Runnable delivery)
+  {
+    mailbox.add(() -> {
+      forget(task);
+      task.complete(delivery);
+    });
+    mailboxPosted();
+  }
+
+  /**
+   * Runs the action on the thread which draws this terminal's frames, before the next
+   * frame is drawn. This may be called from any thread, and is how other threads
+   * should change the tree of components once the terminal draws frames on a thread
+   * of its own.
+   *
+   * @param action The action to run on the UI thread.
+   */
+  public void invokeLater(Runnable action) {
+    mailbox.add(action);
+    mailboxPosted();
+  }
+
+  void forget(Task<?> task) {
+    tasks.computeIfPresent(
+      task.getOwner(),
+      (owner, owned) -> {
+        owned.remove(task);
+        return owned.isEmpty()
+          ? null
+          : owned;
+      });
+  }
+
+  /**
+   * Called whenever a result has been posted to the mailbox. Terminals which draw
+   * their frames on a thread of their own should schedule a frame, so that the
+   * result is delivered promptly; by default, the result waits for the next update.
+   */
+  protected void mailboxPosted() { }
+
+  /**
+   * Determines whether the results of tasks or the actions of ticks are being run.
+   * They're run just before a frame is drawn, so updates made by components in the
+   * meantime are already part of that frame, and shouldn't request another one.
+   *
+   * @return Whether the mailbox is being drained or ticks are being run.
+   */
+  protected boolean isDraining() {
+    return draining;
+  }
+
+  /**
+   * Delivers each of the results waiting in the mailbox. Components which update
+   * themselves in response don't cause a frame to be drawn for each result, as the
+   * frame is drawn once the mailbox has been drained.
+   */
+  protected void drainMailbox() {
+    draining = true;
+    try {
+      Runnable delivery;
+      while ((delivery = mailbox.poll()) != null)
+        delivery.run();
+    } finally {
+      draining = false;
+    }
+  }
+
+  /**
+   * Runs an action for a component once, on the thread which draws this terminal's
+   * frames, just before the first frame after the delay has elapsed. The tick is
+   * cancelled automatically if the component is removed from the terminal.
+   *
+   * @param owner The component which the action is run for.
+   * @param delay The time to wait before running the action.
+   * @param unit The unit of the delay.
+   * @param action The action to run.
+   *
+   * @return The tick, which may be used to cancel the action.
+   */
+  public Tick schedule(
+    Component owner,
+    long delay,
+    TimeUnit unit,
+    Runnable action)
+  {
+    return schedule(new Tick(
+      owner,
+      now -> action.run(),
+      System.nanoTime() + unit.toNanos(delay),
+      0));
+  }
+
+  /**
+   * Runs an action for a component repeatedly, on the thread which draws this
+   * terminal's frames. Every tick which is due when a frame is drawn runs before that
+   * frame, so however many components have repeating ticks, they cause one frame
+   * between them. A tick which falls behind (because frames were drawn less often
+   * than its period) runs once, rather than once for each period it missed.
+   *
+   * @param owner The component which the action is run for.
+   * @param period The time between each run of the action. The action first runs
+   *   once this time has elapsed.
+   * @param unit The unit of the period.
+   * @param action The action to run.
+   *
+   * @return The tick, which may be used to stop the action from repeating.
+   */
+  public Tick scheduleRepeating(
+    Component owner,
+    long period,
+    TimeUnit unit,
+    Runnable action)
+  {
+    long nanos = Math.max(
+      unit.toNanos(period),
+      1);
+
+    return schedule(new Tick(
+      owner,
+      now -> action.run(),
+      System.nanoTime() + nanos,
+      nanos));
+  }
+
+  /**
+   * Animates a component over a period of time. The animation is stepped once
+   * before each frame, at the terminal's target number of updates per second,
+   * with the fraction of the animation which is complete at the time of that frame;
+   * the last step is always given exactly 1.
+   *
+   * @param owner The component being animated.
+   * @param duration How long the animation lasts.
+   * @param unit The unit of the duration.
+   * @param easing The curve the animation follows, such as one of the {@code Easing}
+   *   curves, which is given the fraction of the duration which has elapsed.
+   * @param step Receives the eased fraction of the animation which is complete, and
+   *   should update the component accordingly.
+   *
+   * @return The tick which steps the animation, which may be used to stop it.
+   */
+  public Tick animate(
+    Component owner,
+    long duration,
+    TimeUnit unit,
+    DoubleUnaryOperator easing,
+    DoubleConsumer step)
+  {
+    long start = System.nanoTime(),
+      nanos = Math.max(
+        unit.toNanos(duration),
+        1);
+    Tick[] tick = new Tick[1];
+
+    tick[0] = new Tick(
+      owner,
+      now -> {
+        double elapsed = Math.min(
+          (double)(now - start) / nanos,
+          1.0);
+        step.accept(elapsed < 1.0
+          ? easing.applyAsDouble(elapsed)
+          : 1.0);
+        if (elapsed >= 1.0)
+          tick[0].cancel();
+      },
+      start,
+      1_000_000_000L / getTargetUpdatesPerSecond());
+
+    return schedule(tick[0]);
+  }
+
+  private Tick schedule(Tick tick) {
+    timers.add(tick);
+    tickScheduled();
+
+    return tick;
+  }
+
+  /**
+   * Called whenever a tick has been scheduled. Terminals which draw their frames on a
+   * thread of their own should make sure that thread wakes in time for the tick, by
+   * consulting {@link #getNextTickDeadline()}.
+   */
+  protected void tickScheduled() { }
+
+  /**
+   * Gets the time at which the next scheduled tick is due. This must only be called
+   * on the thread which draws this terminal's frames.
+   *
+   * @return The deadline of the next tick, as given by {@code System.nanoTime()}, or
+   *   {@code Long.MAX_VALUE} if nothing has been scheduled.
+   */
+  protected long getNextTickDeadline() {
+    return timers.nextDeadline();
+  }
+
+  /**
+   * Gets the time by which {@link #runTicks()} must next be called, even if no tick
+   * is due by then, so that ticks which are scheduled far ahead are still found in
+   * time. This must only be called on the thread which draws this terminal's frames.
+   *
+   * @return The time to wake at, as given by {@code System.nanoTime()}, or {@code
+   *   Long.MAX_VALUE} if nothing has been scheduled.
+   */
+  protected long getNextTickWakeup() {
+    return timers.nextWakeup();
+  }
+
+  /**
+   * Runs each of the ticks which are due. Components which update themselves in
+   * response don't cause a frame to be drawn for each tick, as the frame is drawn
+   * once every tick has run.
+   *
+   * @return Whether the action of any tick was run.
+   */
+  protected boolean runTicks() {
+    draining = true;
+    try {
+      return timers.advance(System.nanoTime());
+    } finally {
+      draining = false;
+    }
+  }
+
+  /**
+   * Cancels the tasks and ticks of the component which was removed, as well as those
+   * of any components it contains.
+   */
+  @Override
+  public void removed(Component component) {
+    Set<Task<?>> owned = tasks.remove(component);
+    if (owned != null)
+      owned.forEach(Task::cancel);
+    timers.cancelAll(component);
+
+    if (component instanceof Container)
+      for (Component child : ((Container<?>)component).getChildren())
+        removed(child);
+  }
+
+  /**
+   * Makes a batch of changes to the components in this terminal, such that the
+   * components are laid out once, and the terminal is drawn once, after all of the
+   * changes have been made, instead of after each one. Batches may be nested. This
+   * must be called on the thread which draws the terminal (for example, when the
+   * result of a task is delivered).
+   *
+   * @param changes The changes to make to the components in this terminal.
+   */
+  public void batch(Runnable changes) {
+    root.beginUpdate();
+    try {
+      changes.run();
+    } finally {
+      root.endUpdate();
+    }
+  }
+
+  @Override
+  public void update() {
+    if (draining || root.deferUpdate())
+      return;
+
+    FrameMetrics metrics = this.metrics;
+    if (metrics == null) {
+      runTicks();
+      drainMailbox();
+      root.validate();
+      surface.draw(root.drawToBuffer());
+      return;
+    }
+
+    metrics.beginFrame(surface.getBytesWritten());
+    runTicks();
+    drainMailbox();
+    root.validate();
+    long layout = root.takeLayoutNanos(),
+      start = System.nanoTime();
+
+    GlyphBuffer buffer = root.drawToBuffer();
+    long drawn = System.nanoTime();
+
+    int cells = buffer.countChangedCells(previousFrame);
+    previousFrame = buffer;
+    long diffed = System.nanoTime();
+
+    surface.draw(buffer);
+    long submitted = System.nanoTime();
+
+    metrics.endFrame(
+      layout,
+      drawn - start,
+      diffed - drawn,
+      submitted - diffed,
+      cells,
+      surface.getBytesWritten());
+  }
+
+  /**
+   * Gets the metrics of the frames drawn by this terminal. Frames are only measured
+   * once this method has been called for the first time.
+   *
+   * @return The frame metrics of this terminal.
+   */
+  public synchronized FrameMetrics getMetrics() {
+    if (metrics == null) {
+      metrics = new FrameMetrics(this);
+      metricsEnabled(metrics);
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Called when this terminal's frames begin to be measured, so that stages of the
+   * pipeline which run on other threads can record their timings as well.
+   *
+   * @param metrics The metrics which frames are recorded in.
+   */
+  protected void metricsEnabled(FrameMetrics metrics) { }
+
+  /**
+   * Calls the listener with the measurements of each frame drawn by this terminal.
+   *
+   * @param listener The listener to add.
+   *
+   * @see #getMetrics()
+   */
+  public void addFrameStatsListener(FrameStatsListener listener) {
+    getMetrics().addListener(listener);
+  }
+
+  public void removeFrameStatsListener(FrameStatsListener listener) {
+    getMetrics().removeListener(listener);
+  }
+
+  /**
+   * Gets the maximum number of frames per second that this terminal aims to draw.
+   * Terminals which draw frames on a thread of their own don't draw them any more
+   * often than this; the rate which is actually achieved is reported by the {@code
+   * FrameMetrics} of this terminal.
+   *
+   * @return The target number of frames per second.
+   */
+  public int getTargetUpdatesPerSecond() {
+    return targetUpdatesPerSecond;
+  }
+
+  public void setTargetUpdatesPerSecond(int updatesPerSecond) {
+    if (updatesPerSecond <= 0)
+      throw new IllegalArgumentException("The target number of updates per "
+                                         + "second must be positive.");
+
+    targetUpdatesPerSecond = updatesPerSecond;
+  }
+
+  /**
+   * Begins recording every frame drawn by this terminal to a session log, which can
+   * later be replayed with a {@code SessionPlayer}. Recording stops once the returned
+   * recorder is closed, and frames are then drawn to the previous surface again.
+   *
+   * @param log The file to write the session log to.
+   *
+   * @return The recorder, which must be closed to finish writing the log.
+   *
+   * @throws IOException if the log can't be opened.
+   */
+  public SessionRecorder record(Path log) throws IOException {
+    DrawableSurface previous = surface;
+    SessionRecorder recorder = new SessionRecorder(
+      previous,
+      log);
+    recorder.onClose = () -> {
+      /*
+       * The surface may have been replaced since recording began (for example, by
+       * another recording), in which case it is left alone.
+       */
+      if (surface == recorder)
+        surface = previous;
+    };
+    surface = recorder;
+
+    return recorder;
   }
 
   public void resize(
@@ -156,10 +662,14 @@ public abstract class Terminal implements ComponentObserver {
     int line,
     int position)
   {
-    return root.getComponentAt(Location.at(
-      root.getBounds(),
+    /*
+     * Components which were added since the last frame haven't been laid out yet.
+     */
+    root.validate();
+
+    return root.getComponentAt(
       line,
-      position));
+      position);
   }
 
   /**
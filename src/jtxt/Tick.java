@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.util.function.LongConsumer;
+
+import jtxt.emulator.tui.Component;
+
+/**
+ * An action which a {@code Component} has scheduled to run on the terminal's UI
+ * thread, either once after a delay, or repeatedly. Every tick which is due runs just
+ * before the next frame is drawn, so that any number of ticks which are due at the
+ * same time cause only one frame.
+ *
+ * @see Terminal#schedule(Component, long, java.util.concurrent.TimeUnit, Runnable)
+ * @see Terminal#scheduleRepeating(Component, long, java.util.concurrent.TimeUnit,
+ *   Runnable)
+ * @see Terminal#animate(Component, long, java.util.concurrent.TimeUnit,
+ *   java.util.function.DoubleUnaryOperator, java.util.function.DoubleConsumer)
+ */
+public final class Tick {
+  private final Component owner;
+
+  /**
+   * The action to run, which is given the time of the frame it runs before.
+   */
+  final LongConsumer action;
+
+  /**
+   * The time between runs of a repeating tick, in nanoseconds, or zero if this tick
+   * only runs once.
+   */
+  final long period;
+
+  /*
+   * These are only accessed by the UI thread, once the tick has been placed in
+   * the timer wheel.
+   */
+  long deadline,
+    deadlineTick;
+  int slot;
+  Tick previous,
+    next;
+
+  private volatile boolean cancelled;
+
+  Tick(
+    Component owner,
+    LongConsumer action,
+    long deadline,
+    long period)
+  {
+    this.owner = owner;
+    this.action = action;
+    this.deadline = deadline;
+    this.period = period;
+  }
+
+  /**
+   * Cancels this tick, so that it never runs again. This may be called from any
+   * thread, including from the tick's own action.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Gets the component which scheduled this tick. The tick is cancelled if this
+   * component is removed from the terminal.
+   */
+  public Component getOwner() {
+    return owner;
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import jtxt.emulator.tui.Component;
+
+/**
+ * Holds the ticks which have been scheduled in a terminal, and runs those which are
+ * due before each frame is drawn.
+ *
+ * <p>
+ * The wheel is a ring of slots, each of which covers a few milliseconds. A tick is
+ * placed in the slot which its deadline falls within, modulo the size of the ring,
+ * so scheduling or cancelling a tick takes constant time however many there are,
+ * and advancing the wheel only looks at the slots which have passed since it was
+ * last advanced. Ticks whose deadlines are more than one turn of the wheel away stay
+ * in their slot until the turn in which they are due.
+ * </p>
+ *
+ * <p>
+ * Ticks may be scheduled from any thread; they are handed over to the wheel the
+ * next time it is advanced. Everything else is only done on the UI thread.
+ * </p>
+ */
+final class TimerWheel {
+  private static final int SLOTS = 256,
+    MASK = SLOTS - 1;
+
+  /**
+   * The time covered by each slot. This is shorter than a frame at any reasonable
+   * frame rate, so every tick is run before the first frame after its deadline.
+   */
+  private static final long TICK = TimeUnit.MILLISECONDS.toNanos(2);
+
+  /**
+   * The first tick in each slot, each of which is linked to the others in that slot.
+   */
+  private final Tick[] slots;
+
+  /**
+   * Ticks which have been scheduled, but not yet placed in the wheel.
+   */
+  private final Queue<Tick> scheduled;
+
+  /**
+   * The ticks which are due, which is reused each time the wheel is advanced.
+   */
+  private final List<Tick> due;
+
+  private final long origin;
+
+  /**
+   * The first slot, counting from the origin, which hasn't been advanced past.
+   */
+  private long current;
+
+  /**
+   * The time the earliest tick in the wheel is due, or {@code Long.MAX_VALUE} if
+   * this must be found again.
+   */
+  private long next;
+  private boolean nextKnown;
+
+  private int size;
+
+  TimerWheel() {
+    slots = new Tick[SLOTS];
+    scheduled = new ConcurrentLinkedQueue<>();
+    due = new ArrayList<>();
+    origin = System.nanoTime();
+  }
+
+  /**
+   * Schedules a tick. This may be called from any thread.
+   */
+  void add(Tick tick) {
+    scheduled.add(tick);
+  }
+
+  /**
+   * Runs every tick which is due at the given time, in the order of their deadlines,
+   * and reschedules those which repeat.
+   *
+   * @param now The time of the frame which is about to be drawn.
+   *
+   * @return Whether the action of any tick was run.
+   */
+  boolean advance(long now) {
+    transfer();
+
+    long last = Math.floorDiv(
+      now - origin,
+      TICK);
+    for (long s = current; s <= last && s < current + SLOTS; s++) {
+      Tick tick = slots[(int)s & MASK];
+      while (tick != null) {
+        Tick next = tick.next;
+        if (tick.isCancelled())
+          unlink(tick);
+        else if (tick.deadlineTick <= last) {
+          unlink(tick);
+          due.add(tick);
+        }
+        tick = next;
+      }
+    }
+    current = Math.max(
+      current,
+      last + 1);
+    nextKnown = false;
+
+    if (due.isEmpty())
+      return false;
+
+    due.sort((a, b) -> Long.compare(
+      a.deadline - origin,
+      b.deadline - origin));
+    try {
+      for (Tick tick : due) {
+        if (tick.isCancelled())
+          continue;
+
+        /*
+         * A repeating tick is rescheduled before its action runs, so that it
+         * keeps repeating even if the action throws; an action which cancels its
+         * own tick is unlinked the next time its slot is visited.
+         */
+        if (tick.period > 0) {
+          tick.deadline += tick.period;
+          if (tick.deadline - now <= 0)
+            tick.deadline = now + tick.period;
+          insert(tick);
+        }
+
+        /*
+         * An exception thrown by one action mustn't keep the other ticks which are
+         * due from running.
+         */
+        try {
+          tick.action.accept(now);
+        } catch (RuntimeException re) {
+          re.printStackTrace();
+        }
+      }
+    } finally {
+      due.clear();
+    }
+
+    return true;
+  }
+
+  /**
+   * Gets the time at which the earliest tick is due. Only ticks within the current
+   * turn of the wheel are considered.
+   *
+   * @return The time of the earliest deadline, as given by {@code System.nanoTime()},
+   *   or {@code Long.MAX_VALUE} if no tick is due within this turn.
+   *
+   * @see #nextWakeup()
+   */
+  long nextDeadline() {
+    transfer();
+    if (nextKnown)
+      return next;
+
+    next = Long.MAX_VALUE;
+    nextKnown = true;
+    if (size == 0)
+      return next;
+
+    /*
+     * Find the first slot with a tick which is due within this turn of the
+     * wheel. Ticks in later turns are only looked at once the wheel has come
+     * round to them.
+     */
+    for (long s = current; s < current + SLOTS; s++) {
+      for (Tick tick = slots[(int)s & MASK]; tick != null; tick = tick.next) {
+        if (!tick.isCancelled() && tick.deadlineTick <= s)
+          return next = origin + s*TICK;
+      }
+    }
+
+    return next;
+  }
+
+  /**
+   * Gets the time by which the wheel must next be advanced. This is the deadline of
+   * the earliest tick if one is due within this turn; otherwise, if only ticks in
+   * later turns are scheduled, it's the end of this turn, when the wheel has to come
+   * round to them, although no tick is due then.
+   *
+   * @return The time by which {@link #advance(long)} should be called, or {@code
+   *   Long.MAX_VALUE} if nothing has been scheduled.
+   */
+  long nextWakeup() {
+    long deadline = nextDeadline();
+    if (deadline != Long.MAX_VALUE || size == 0)
+      return deadline;
+
+    return origin + (current + SLOTS)*TICK;
+  }
+
+  /**
+   * Cancels every tick which was scheduled by the given component.
+   */
+  void cancelAll(Component owner) {
+    for (Tick tick : scheduled) {
+      if (tick.getOwner() == owner)
+        tick.cancel();
+    }
+
+    for (Tick head : slots) {
+      for (Tick tick = head; tick != null; tick = tick.next) {
+        if (tick.getOwner() == owner)
+          tick.cancel();
+      }
+    }
+  }
+
+  /**
+   * Places the ticks which were scheduled since the wheel was last advanced into
+   * their slots.
+   */
+  private void transfer() {
+    Tick tick;
+    while ((tick = scheduled.poll()) != null) {
+      if (!tick.isCancelled())
+        insert(tick);
+    }
+  }
+
+  private void insert(Tick tick) {
+    /*
+     * Round the deadline up, so that a tick never runs before it is due, and
+     * place a tick which is already overdue in the next slot to be advanced.
+     */
+    tick.deadlineTick = Math.floorDiv(
+      tick.deadline - origin + TICK - 1,
+      TICK);
+    tick.slot = (int)Math.max(
+      tick.deadlineTick,
+      current) & MASK;
+
+    tick.previous = null;
+    tick.next = slots[tick.slot];
+    if (tick.next != null)
+      tick.next.previous = tick;
+    slots[tick.slot] = tick;
+
+    size++;
+    nextKnown = false;
+  }
+
+  private void unlink(Tick tick) {
+    if (tick.previous != null)
+      tick.previous.next = tick.next;
+    else
+      slots[tick.slot] = tick.next;
+    if (tick.next != null)
+      tick.next.previous = tick.previous;
+
+    tick.previous = null;
+    tick.next = null;
+    size--;
+  }
+}
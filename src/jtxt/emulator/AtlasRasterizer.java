@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import jtxt.GlyphBuffer;
+
+/**
+ * Rasterizes glyphs from a {@code FontAtlas}, blending the coverage mask of each
+ * glyph with its color directly into the pixels of the image.
+ *
+ * @see FontAtlas
+ */
+class AtlasRasterizer implements GlyphRasterizer {
+  private final FontAtlas atlas;
+
+  AtlasRasterizer(FontAtlas atlas) {
+    this.atlas = atlas;
+  }
+
+  @Override
+  public void rasterize(
+    GlyphBuffer buffer,
+    BufferedImage target)
+  {
+    int type = target.getType();
+    if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+      /*
+       * Masks can only be blended directly into packed integer pixels; draw
+       * everything else through an intermediate image.
+       */
+      BufferedImage image = (BufferedImage)rasterize(
+        buffer,
+        target.getWidth(),
+        target.getHeight());
+      Graphics2D g = target.createGraphics();
+      g.drawImage(
+        image,
+        0,
+        0,
+        null);
+      g.dispose();
+
+      return;
+    }
+
+    int[] pixels = ((DataBufferInt)target.getRaster().getDataBuffer()).getData();
+    int width = target.getWidth(),
+      height = target.getHeight(),
+      opaque = type == BufferedImage.TYPE_INT_RGB
+        ? 0xFF000000
+        : 0;
+
+    Region bounds = buffer.getBounds();
+    int cw = atlas.getWidth(),
+      ch = atlas.getHeight(),
+      nl = Math.min(bounds.getHeight(), height / ch),
+      ls = Math.min(bounds.getWidth(), width / cw);
+
+    for (int line = 0; line < nl; line++) {
+      GString string = buffer.getString(line);
+
+      for (int position = 0; position < ls; position++) {
+        Glyph glyph = string.get(position);
+        int x = position * cw,
+          y = line * ch,
+          bg = glyph.background.getRGB();
+
+        GlyphRasterizer.fill(
+          pixels,
+          width,
+          x,
+          y,
+          cw,
+          ch,
+          bg,
+          opaque);
+
+        int mask = atlas.getMaskOffset(glyph.character);
+        if (mask < 0)
+          continue;
+
+        int fg = glyph.color.getRGB(),
+          fa = fg >>> 24;
+        for (int my = 0; my < ch; my++) {
+          int row = (y+my)*width + x;
+          for (int mx = 0; mx < cw; mx++) {
+            int coverage = atlas.getCoverage(mask++);
+            if (coverage == 0)
+              continue;
+
+            pixels[row+mx] = GlyphRasterizer.blend(
+              pixels[row+mx] | opaque,
+              fg,
+              coverage * fa / 255);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "AtlasRasterizer[cell=%dx%d]",
+      atlas.getWidth(),
+      atlas.getHeight());
+  }
+}
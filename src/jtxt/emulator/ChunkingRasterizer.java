@@ -17,7 +17,6 @@ package jtxt.emulator;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.RenderedImage;
 
 import jtxt.GlyphBuffer;
 
@@ -35,17 +34,12 @@ public class ChunkingRasterizer implements GlyphRasterizer {
   }
 
   @Override
-  public RenderedImage rasterize(
+  public void rasterize(
     GlyphBuffer buffer,
-    int width,
-    int height)
+    BufferedImage target)
   {
     // TODO: Do the chunking. ;)
-    BufferedImage image = new BufferedImage(
-      width,
-      height,
-      BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g = (Graphics2D)image.getGraphics();
+    Graphics2D g = target.createGraphics();
 
     Region bounds;
     int nl, ls;
@@ -72,6 +66,6 @@ public class ChunkingRasterizer implements GlyphRasterizer {
       }
     }
 
-    return image;
+    g.dispose();
   }
 }
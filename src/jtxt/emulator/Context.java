@@ -49,10 +49,13 @@ public class Context implements ResizeSubject {
 
   /**
    * The number of times per second that the terminal should poll for updates to
-   * state in the window.
+   * state in the window, which may be set with the <code>updates_per_second</code>
+   * key of an initialization file.
    */
   final int updatesPerSecond;
 
+  public static final int DEFAULT_UPDATES_PER_SECOND = 60;
+
   /**
    * Constructs a new {@code Configuration} object with properties identical to
    * config.
@@ -87,7 +90,7 @@ public class Context implements ResizeSubject {
       0,
       numLines,
       lineSize);
-    updatesPerSecond = 60;
+    updatesPerSecond = DEFAULT_UPDATES_PER_SECOND;
   }
 
   /**
@@ -105,7 +108,9 @@ public class Context implements ResizeSubject {
     numLines = reader.getValueAsInt("num_chars_y");
 
     resizeSubscribers = new ArrayList<>();
-    this.updatesPerSecond = 60; // TODO: Replace default value.
+    this.updatesPerSecond = reader.hasKey("updates_per_second")
+      ? reader.getValueAsInt("updates_per_second")
+      : DEFAULT_UPDATES_PER_SECOND;
   }
 
   public void setDimensions(
@@ -126,6 +131,10 @@ public class Context implements ResizeSubject {
     return numLines;
   }
 
+  public int getUpdatesPerSecond() {
+    return updatesPerSecond;
+  }
+
   public int getLineSize() {
     return lineSize;
   }
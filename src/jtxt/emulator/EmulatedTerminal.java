@@ -16,26 +16,46 @@
 package jtxt.emulator;
 
 import jtxt.DrawableSurface;
+import jtxt.FrameMetrics;
 import jtxt.Terminal;
 import jtxt.emulator.tui.Component;
+import jtxt.emulator.tui.Draggable;
+import jtxt.emulator.tui.Hoverable;
 import jtxt.emulator.tui.Interactable;
+import jtxt.emulator.tui.KeyboardTarget;
 import jtxt.emulator.tui.Layout;
 import jtxt.emulator.tui.RootContainer;
+import jtxt.emulator.tui.Scrollable;
 
 import javax.swing.*;
 import java.awt.*;
 
 /**
- *
+ * A terminal which is drawn in a window of its own. Once the root container has been
+ * created, a single event dispatcher thread handles input, lays out and draws the
+ * components; from then on, the tree of components must only be changed on that
+ * thread. Components added through {@link #add(Component...)} from another thread
+ * are handed over to it automatically, and other changes can be made with {@link
+ * #invokeLater(Runnable)}.
  */
 public class EmulatedTerminal extends Terminal {
   private JFrame window;
+  private volatile Thread poller;
+  private Renderer renderer;
   private EventDispatcher dispatcher;
   private Color bg;
   private Font font;
   private int cw, ch;
   private float trans;
 
+  /*
+   * The state of the mouse, which is only accessed by the event dispatcher's
+   * thread.
+   */
+  private Hoverable hovered;
+  private Draggable dragging;
+  private Location dragStart;
+
   public EmulatedTerminal(
     String title,
     int width,
@@ -68,6 +88,7 @@ public class EmulatedTerminal extends Terminal {
       height);
     window.pack();
     window.setVisible(true);
+    renderer.requestFocusInWindow();
   }
 
   public void generateClickForComponentAt(
@@ -77,36 +98,235 @@ public class EmulatedTerminal extends Terminal {
     Component component = getComponentAt(
       line,
       position);
-    if (component == null)
+    if (!(component instanceof Interactable))
       return;
 
     Interactable interactable = (Interactable)component;
-    interactable.clicked(new Location(
+    boolean focus = interactable.clicked(new Location(
+      line,
+      position));
+    if (focus && component instanceof KeyboardTarget)
+      focus((KeyboardTarget)component);
+  }
+
+  /**
+   * Notifies the {@code Hoverable} component under the mouse that the mouse has moved,
+   * and the component which was hovered before, if it was a different one, that the
+   * mouse has left it.
+   */
+  public void generateHoverForComponentAt(
+    int line,
+    int position)
+  {
+    Component component = getComponentAt(
+      line,
+      position);
+    Hoverable target = component instanceof Hoverable
+      ? (Hoverable)component
+      : null;
+
+    if (hovered != null && hovered != target)
+      hovered.exited();
+    hovered = target;
+
+    if (target != null)
+      target.hovered(new Location(
+        line,
+        position));
+  }
+
+  /**
+   * Notifies the hovered component, if there is one, that the mouse has left the
+   * terminal.
+   */
+  public void generateMouseExit() {
+    if (hovered == null)
+      return;
+
+    hovered.exited();
+    hovered = null;
+  }
+
+  /**
+   * Begins a drag, if the component under the mouse is {@code Draggable}. The
+   * component receives each movement of the mouse until the button is released.
+   */
+  public void generatePressForComponentAt(
+    int line,
+    int position)
+  {
+    Component component = getComponentAt(
+      line,
+      position);
+    if (!(component instanceof Draggable)) {
+      dragging = null;
+      return;
+    }
+
+    dragging = (Draggable)component;
+    dragStart = new Location(
+      line,
+      position);
+  }
+
+  public void generateDrag(
+    int line,
+    int position)
+  {
+    if (dragging != null)
+      dragging.dragged(
+        dragStart,
+        new Location(
+          line,
+          position));
+  }
+
+  public void generateRelease(
+    int line,
+    int position)
+  {
+    Draggable target = dragging;
+    if (target == null)
+      return;
+
+    dragging = null;
+    target.released(new Location(
       line,
       position));
   }
 
+  public void generateScrollForComponentAt(
+    int line,
+    int position,
+    int lines)
+  {
+    Component component = getComponentAt(
+      line,
+      position);
+    if (component instanceof Scrollable)
+      ((Scrollable)component).scrolled(
+        new Location(
+          line,
+          position),
+        lines);
+  }
+
   @Override
   public RootContainer createRootContainer(Layout layout) {
     super.createRootContainer(layout);
 
-    Thread poller = new Thread(dispatcher);
+    poller = new Thread(
+      dispatcher,
+      "jtxt-events");
     poller.start();
+    dispatcher.invalidate();
 
     return root;
   }
 
+  /**
+   * Adds the components to the root container. If this is called on a thread other
+   * than the event dispatcher's after the root container has been created, the
+   * components are added by the dispatcher before its next frame, so that they're
+   * never added while the tree is being laid out or drawn.
+   */
+  @Override
+  public void add(Component... components) {
+    Thread poller = this.poller;
+    if (poller == null || Thread.currentThread() == poller)
+      super.add(components);
+    else
+      invokeLater(() -> super.add(components));
+  }
+
+  /**
+   * Schedules a new frame to be drawn by the event dispatcher, rather than drawing it
+   * immediately. Any number of updates between two frames result in only one frame,
+   * and updates made while the frame is being prepared (by the results of tasks or
+   * by ticks) are drawn in that frame.
+   */
+  @Override
+  public void update() {
+    if (!isDraining() && !root.deferUpdate())
+      dispatcher.invalidate();
+  }
+
+  /**
+   * Wakes the event dispatcher, so that it sleeps no longer than the deadline of the
+   * tick which was just scheduled.
+   */
+  @Override
+  protected void tickScheduled() {
+    dispatcher.reschedule();
+  }
+
+  long nextTickDeadline() {
+    return getNextTickDeadline();
+  }
+
+  long nextTickWakeup() {
+    return getNextTickWakeup();
+  }
+
+  /**
+   * Advances the ticks of this terminal without drawing a frame, when the dispatcher
+   * wakes only because ticks in a later turn of the timer wheel have come round.
+   *
+   * @return Whether any tick ran, in which case a frame should be drawn.
+   */
+  boolean advanceTicks() {
+    return runTicks();
+  }
+
+  /**
+   * Wakes the event dispatcher, so that the results of background tasks are
+   * delivered (and drawn) with the next frame.
+   */
+  @Override
+  protected void mailboxPosted() {
+    dispatcher.invalidate();
+  }
+
+  @Override
+  protected void metricsEnabled(FrameMetrics metrics) {
+    renderer.setMetrics(metrics);
+  }
+
+  /**
+   * Draws the components of this terminal to its surface. This is called by the
+   * event dispatcher whenever the terminal has been invalidated.
+   */
+  void render() {
+    super.update();
+  }
+
   @Override
   protected DrawableSurface createDrawableSurface(
     int width,
     int height)
   {
-    Renderer renderer = Renderer.getInstance(
-      font,
-      cw,
-      ch,
-      bg,
-      trans);
+    /*
+     * Prefer an atlas which has already been baked for this font, since it can
+     * be mapped into memory instead of rasterizing every glyph through Java2D.
+     * Baking one here would delay the window for every new font, so fall back
+     * to the Swing rasterizer when there isn't one.
+     */
+    FontAtlas atlas = FontAtlas.cached(font);
+    if (atlas != null) {
+      cw = atlas.getWidth();
+      ch = atlas.getHeight();
+      renderer = Renderer.getInstance(
+        atlas,
+        bg,
+        trans);
+    } else {
+      renderer = Renderer.getInstance(
+        font,
+        cw,
+        ch,
+        bg,
+        trans);
+    }
     renderer.setPreferredSize(new Dimension(
       cw * width,
       ch * height));
@@ -115,11 +335,26 @@ public class EmulatedTerminal extends Terminal {
     dispatcher = new EventDispatcher(
       this,
       renderer);
-    window.addMouseListener(dispatcher);
+    renderer.addMouseListener(dispatcher);
+    renderer.addMouseMotionListener(dispatcher);
+    renderer.addMouseWheelListener(dispatcher);
+    renderer.addComponentListener(dispatcher);
+    renderer.addKeyListener(dispatcher);
+    renderer.setFocusable(true);
 
     return renderer;
   }
 
+  /**
+   * Gets the layer which is painted over the terminal, and which holds the cursor,
+   * selections and hover highlights.
+   *
+   * @return The overlay of this terminal's renderer.
+   */
+  public Overlay getOverlay() {
+    return renderer.getOverlay();
+  }
+
   int getCharWidth() {
     return cw;
   }
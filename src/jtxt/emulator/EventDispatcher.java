@@ -15,18 +15,77 @@
  */
 package jtxt.emulator;
 
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jtxt.emulator.tui.KeyboardTarget.Key;
 
 /**
  * Handles events which are propagated by a user, and which must be polled for over
  * the lifetime of the program. This class serves as the foundation for asynchronous
  * notifications within the terminal, and the bridge between Swing events and
  * terminal user-interface Components.
+ *
+ * <p>
+ * The dispatcher sleeps until there is something to do: a key or mouse event, a
+ * resize of the window, or a component which has been invalidated. Input events are
+ * packed into an {@code EventRing} by the AWT threads, which never wait on the
+ * dispatcher, and are dispatched in the order they occurred to the focused {@code
+ * KeyboardTarget} or the {@code Interactable} under the mouse.
+ * </p>
+ *
+ * <p>
+ * Invalidations are coalesced, so that however many components change between two
+ * frames, only one frame is drawn, and frames are never drawn more often than the
+ * terminal's target number of updates per second. Resizes are debounced, so that
+ * dragging the edge of the window lays out the components once the window settles,
+ * rather than once per pixel.
+ * </p>
+ *
+ * <p>
+ * Movements of the mouse and turns of the wheel can arrive hundreds of times a
+ * second, so they aren't queued. Instead, the AWT thread keeps only the latest
+ * location the mouse was moved or dragged to, and the sum of the wheel's rotation,
+ * which the dispatcher takes at most once per frame. A {@code Hoverable}, {@code
+ * Draggable} or {@code Scrollable} component is therefore notified at most once per
+ * frame, however fast the mouse moves. Presses and releases of the buttons are
+ * queued like any other event, and any drag which is still pending when a button is
+ * released is queued ahead of the release, so that a drag is always delivered to
+ * the component it began on.
+ * </p>
  */
-public class EventDispatcher extends MouseAdapter implements Runnable {
+public class EventDispatcher
+  extends MouseAdapter
+  implements ComponentListener, KeyListener, Runnable
+{
+  /**
+   * The types of the events which are placed in the ring.
+   */
+  private static final int KEY = 1,
+    CLICK = 2,
+    RESIZE = 3,
+    PRESS = 4,
+    RELEASE = 5,
+    DRAG = 6,
+    EXIT = 7,
+    MOVE = 8,
+    WHEEL = 9;
+
+  /**
+   * The wheel's rotation is accumulated in fractions of a line, so that the small
+   * rotations reported by a trackpad aren't lost.
+   */
+  private static final long WHEEL_SCALE = 1000;
+
   /**
    * The instance of the terminal that this dispatcher is listening to. Keep a
    * reference here, as we may need to notify it whenever some relavent state
@@ -35,23 +94,52 @@ public class EventDispatcher extends MouseAdapter implements Runnable {
   private final EmulatedTerminal terminal;
 
   /**
-   * The instance of the {@code Renderer} that the terminal constructed. May need to
-   * be notified whenever the window is resized, or the screen needs to be refreshed.
-   * (The amount of times that this Renderer will be notified depends on the number
-   * of updates per second that the client has requested.)
+   * The instance of the {@code Renderer} that the terminal constructed. Its size is
+   * used to determine the dimensions of the terminal after the window is resized.
    */
   private final Renderer renderer;
 
   /**
-   * A Queue containing all of the mouse events that have occurred since the last
-   * update (processing event), which will be either dispatched to their respective
-   * component or discarded if the target component isn't {@code Interactable}.
+   * The input events that have occurred since they were last dispatched.
+   */
+  private final EventRing events;
+
+  /**
+   * Whether a component has requested a new frame since the last one was drawn.
+   */
+  private final AtomicBoolean invalidated;
+
+  /**
+   * The latest location the mouse was moved or dragged to, packed as a {@code MOVE}
+   * or {@code DRAG} event, or {@code EventRing.NONE} if it hasn't moved since the
+   * dispatcher last looked.
+   */
+  private final AtomicLong moved,
+    dragged;
+
+  /**
+   * The rotation of the wheel since the dispatcher last looked, in thousandths of a
+   * line, and the location of the mouse when it was last turned.
    */
-  private Deque<MouseEvent> events;
+  private final AtomicLong wheel,
+    wheelAt;
 
-  private boolean running = true;
+  private volatile boolean running = true;
 
-  private static final int UPS = 60;
+  /**
+   * How long the size of the window must be stable before the terminal is resized.
+   */
+  private static final long RESIZE_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /*
+   * These are only accessed by the dispatcher's own thread.
+   */
+  private boolean dirty,
+    resizing;
+  private long lastFrame,
+    lastPointer,
+    resizeDue,
+    wheelRemainder;
 
   public EventDispatcher(
     EmulatedTerminal terminal,
@@ -59,85 +147,426 @@ public class EventDispatcher extends MouseAdapter implements Runnable {
   {
     this.terminal = terminal;
     this.renderer = renderer;
-    events = new ArrayDeque<>();
+    events = new EventRing(1 << 12);
+    invalidated = new AtomicBoolean();
+    moved = new AtomicLong();
+    dragged = new AtomicLong();
+    wheel = new AtomicLong();
+    wheelAt = new AtomicLong();
+    lastFrame = System.nanoTime() - frameInterval();
+    lastPointer = lastFrame;
   }
 
-  private void poll(double delta) {
-    int width = renderer.getWidth(),
-      height = renderer.getHeight(),
-      numLines = height / terminal.getCharHeight(),
-      lineSize = width / terminal.getCharWidth();
+  /**
+   * Requests that a new frame be drawn. This may be called from any thread, and
+   * returns immediately; the frame is drawn by the dispatcher, no sooner than the
+   * frame rate allows.
+   */
+  public void invalidate() {
+    if (invalidated.compareAndSet(
+      false,
+      true))
+      events.wake();
+  }
 
-    /*
-     * FIXME: This process is extremely slow; we shouldn't have to redraw
-     *        the components as much as we do. There needs to be a better
-     *        way to check if the window has been resized.
-     */
-    if ((numLines != terminal.getHeight()
-        || lineSize != terminal.getWidth())
-        && delta <= 0.05)
-    {
+  /**
+   * Wakes the dispatcher so that it reconsiders how long it may sleep; for example,
+   * because a tick has been scheduled. This may be called from any thread.
+   */
+  public void reschedule() {
+    events.wake();
+  }
+
+  /**
+   * Stops the dispatcher once it has processed the events which are already queued.
+   */
+  public void stop() {
+    running = false;
+    events.wake();
+  }
+
+  private void dispatch(long event) {
+    switch (EventRing.type(event)) {
+    case KEY:
+      terminal.generateKeyPress((char)EventRing.a(event));
+      break;
+    case CLICK:
+      terminal.generateClickForComponentAt(
+        EventRing.a(event),
+        EventRing.b(event));
+      break;
+    case RESIZE:
+      resizing = true;
+      resizeDue = System.nanoTime() + RESIZE_DELAY;
+      break;
+    case PRESS:
+      terminal.generatePressForComponentAt(
+        EventRing.a(event),
+        EventRing.b(event));
+      break;
+    case RELEASE:
+      terminal.generateRelease(
+        EventRing.a(event),
+        EventRing.b(event));
+      break;
+    case DRAG:
+      terminal.generateDrag(
+        EventRing.a(event),
+        EventRing.b(event));
+      break;
+    case EXIT:
+      terminal.generateMouseExit();
+      break;
+    }
+  }
+
+  /**
+   * Whether the mouse has moved, or its wheel has turned, since the dispatcher last
+   * took the pointer's state.
+   */
+  private boolean isPointerPending() {
+    return moved.get() != EventRing.NONE
+           || dragged.get() != EventRing.NONE
+           || wheel.get() != 0;
+  }
+
+  /**
+   * Takes the latest state of the pointer and delivers it to the components under
+   * the mouse. This is done at most once per frame.
+   */
+  private void dispatchPointer() {
+    long event = dragged.getAndSet(EventRing.NONE);
+    if (event != EventRing.NONE)
+      dispatch(event);
+
+    event = moved.getAndSet(EventRing.NONE);
+    if (event != EventRing.NONE)
+      terminal.generateHoverForComponentAt(
+        EventRing.a(event),
+        EventRing.b(event));
+
+    long rotation = wheel.getAndSet(0) + wheelRemainder;
+    int lines = (int)(rotation / WHEEL_SCALE);
+    wheelRemainder = rotation - lines*WHEEL_SCALE;
+    if (lines != 0) {
+      event = wheelAt.get();
+      terminal.generateScrollForComponentAt(
+        EventRing.a(event),
+        EventRing.b(event),
+        lines);
+    }
+  }
+
+  /**
+   * Resizes the terminal to fit the renderer, if the number of lines or characters
+   * per line which fit within it have changed.
+   */
+  private void resize() {
+    int numLines = Math.max(renderer.getHeight() / terminal.getCharHeight(), 1),
+      lineSize = Math.max(renderer.getWidth() / terminal.getCharWidth(), 1);
+
+    if (numLines != terminal.getHeight() || lineSize != terminal.getWidth())
       terminal.resize(
         lineSize,
         numLines);
-    }
+  }
 
-    dispatchMouseEvents();
-    renderer.repaint();
+  /**
+   * Gets the shortest time between two frames, given the terminal's target number of
+   * updates per second.
+   */
+  private long frameInterval() {
+    return 1_000_000_000L / terminal.getTargetUpdatesPerSecond();
   }
 
   /**
-   * Removes all mouse events from the event queue, and notifies the respective
-   * {@code Component}s that should receive the events if they are {@code
-   * Interactable} (meaning they can receive and respond to mouse events). The order
-   * in which these events are dispatched is the same as the order in which they
-   * originally occurred.
+   * Calculates how long the dispatcher may sleep before it has something to do, if
+   * no further events arrive.
    *
-   * <p>
-   * Additionally, this method may change the actively focused Component within the
-   * terminal if any of the Components which received a mouse event and were
-   * Interactable requested to receive key events.
-   * </p>
+   * @return The time in nanoseconds until the next deadline, or {@code
+   *   Long.MAX_VALUE} if the dispatcher may sleep until the next event.
+   */
+  private long timeUntilDeadline(long now) {
+    long deadline = Long.MAX_VALUE;
+    if (isPointerPending())
+      deadline = Math.max(lastPointer + frameInterval() - now, 0);
+
+    /*
+     * A tick which is due is run with the next frame, so the dispatcher need not
+     * wake for it any sooner than the frame rate allows.
+     */
+    long tick = terminal.nextTickDeadline();
+    if (tick != Long.MAX_VALUE) {
+      long frame = lastFrame + frameInterval();
+      deadline = Math.min(
+        Math.max(
+          tick - frame > 0
+            ? tick - now
+            : frame - now,
+          0),
+        deadline);
+    }
+    else if ((tick = terminal.nextTickWakeup()) != Long.MAX_VALUE)
+      deadline = Math.min(
+        Math.max(
+          tick - now,
+          0),
+        deadline);
+    if (resizing)
+      return Math.min(
+        Math.max(resizeDue - now, 0),
+        deadline);
+    if (dirty)
+      return Math.min(
+        Math.max(lastFrame + frameInterval() - now, 0),
+        deadline);
+
+    return deadline;
+  }
+
+  /**
+   * Packs a mouse event, using the line and position within the terminal where the
+   * mouse was. The mouse may be outside of the terminal while it's being dragged, in
+   * which case the nearest line and position are used.
    */
-  private synchronized void dispatchMouseEvents() {
-    while (!events.isEmpty()) {
-      MouseEvent event;
-      int x, y;
+  private long pack(
+    int type,
+    MouseEvent event)
+  {
+    return EventRing.pack(
+      type,
+      event.getButton(),
+      Math.max(event.getY(), 0) / terminal.getCharHeight(),
+      Math.max(event.getX(), 0) / terminal.getCharWidth());
+  }
 
-      event = events.poll();
-      x = event.getX();
-      y = event.getY();
+  @Override
+  public void mouseClicked(MouseEvent event) {
+    events.offer(pack(
+      CLICK,
+      event));
+  }
 
-      terminal.generateClickForComponentAt(
-        y / terminal.getCharHeight(),
-        x / terminal.getCharWidth());
+  @Override
+  public void mousePressed(MouseEvent event) {
+    events.offer(pack(
+      PRESS,
+      event));
+  }
+
+  @Override
+  public void mouseReleased(MouseEvent event) {
+    long pending = dragged.getAndSet(EventRing.NONE);
+    if (pending != EventRing.NONE)
+      events.offer(pending);
+
+    events.offer(pack(
+      RELEASE,
+      event));
+  }
+
+  @Override
+  public void mouseMoved(MouseEvent event) {
+    if (moved.getAndSet(pack(
+      MOVE,
+      event)) == EventRing.NONE)
+      events.wake();
+  }
+
+  @Override
+  public void mouseDragged(MouseEvent event) {
+    if (dragged.getAndSet(pack(
+      DRAG,
+      event)) == EventRing.NONE)
+      events.wake();
+  }
+
+  @Override
+  public void mouseExited(MouseEvent event) {
+    moved.set(EventRing.NONE);
+    events.offer(pack(
+      EXIT,
+      event));
+  }
+
+  @Override
+  public void mouseWheelMoved(MouseWheelEvent event) {
+    wheelAt.set(pack(
+      WHEEL,
+      event));
+
+    long rotation = Math.round(event.getPreciseWheelRotation() * WHEEL_SCALE);
+    if (wheel.getAndAdd(rotation) == 0)
+      events.wake();
+  }
+
+  @Override
+  public void keyTyped(KeyEvent event) {
+    char character = event.getKeyChar();
+    if (character == KeyEvent.CHAR_UNDEFINED
+        || (event.getModifiersEx() & (InputEvent.CTRL_DOWN_MASK
+                                      | InputEvent.ALT_DOWN_MASK)) != 0)
+      return;
+
+    /*
+     * Enter may be typed as a carriage return on some platforms.
+     */
+    if (character == '\r')
+      character = '\n';
+
+    events.offer(EventRing.pack(
+      KEY,
+      event.getModifiersEx() >> 6,
+      character,
+      0));
+  }
+
+  /**
+   * Queues the keys which don't produce a character, and so are never typed.
+   */
+  @Override
+  public void keyPressed(KeyEvent event) {
+    Key key;
+    switch (event.getKeyCode()) {
+    case KeyEvent.VK_UP:
+      key = Key.UP;
+      break;
+    case KeyEvent.VK_DOWN:
+      key = Key.DOWN;
+      break;
+    case KeyEvent.VK_LEFT:
+      key = Key.LEFT;
+      break;
+    case KeyEvent.VK_RIGHT:
+      key = Key.RIGHT;
+      break;
+    case KeyEvent.VK_HOME:
+      key = Key.HOME;
+      break;
+    case KeyEvent.VK_END:
+      key = Key.END;
+      break;
+    case KeyEvent.VK_PAGE_UP:
+      key = Key.PAGE_UP;
+      break;
+    case KeyEvent.VK_PAGE_DOWN:
+      key = Key.PAGE_DOWN;
+      break;
+    default:
+      return;
     }
+
+    events.offer(EventRing.pack(
+      KEY,
+      event.getModifiersEx() >> 6,
+      key.character,
+      0));
+  }
+
+  @Override
+  public void keyReleased(KeyEvent event) { }
+
+  @Override
+  public void componentResized(ComponentEvent event) {
+    events.offer(EventRing.pack(
+      RESIZE,
+      0,
+      0,
+      0));
   }
 
   @Override
-  public synchronized void mouseClicked(MouseEvent event) {
-    events.offer(event);
+  public void componentShown(ComponentEvent event) {
+    invalidate();
   }
 
   @Override
-  public void run() {
-    long now,
-      last,
-      start;
-    int msPerUpdate;
+  public void componentMoved(ComponentEvent event) { }
 
-    msPerUpdate = 1000 / UPS;
-    now = 0;
+  @Override
+  public void componentHidden(ComponentEvent event) { }
+
+  @Override
+  public void run() {
     while (running) {
-      last = now;
-      now = System.currentTimeMillis();
-      poll((now - last) / 1000.0);
-
-      try {
-        start = now + msPerUpdate - System.currentTimeMillis();
-        if (start > 0)
-          Thread.sleep(start);
-      } catch (InterruptedException ie) { return; }
+      events.await(timeUntilDeadline(System.nanoTime()));
+      if (Thread.interrupted())
+        return;
+
+      /*
+       * This thread does all of the terminal's input, layout and drawing, so an
+       * exception thrown by one component is reported and the event dropped,
+       * rather than leaving the window unable to repaint or take input.
+       */
+      for (long event = events.poll();
+           event != EventRing.NONE;
+           event = events.poll())
+      {
+        try {
+          dispatch(event);
+        } catch (RuntimeException re) {
+          re.printStackTrace();
+        }
+      }
+
+      long now = System.nanoTime();
+      if (isPointerPending() && now - lastPointer >= frameInterval()) {
+        lastPointer = now;
+        try {
+          dispatchPointer();
+        } catch (RuntimeException re) {
+          re.printStackTrace();
+        }
+      }
+
+      if (invalidated.getAndSet(false))
+        dirty = true;
+
+      /*
+       * Ticks are run just before a frame is drawn, so a tick which is due
+       * is treated the same as an invalidation.
+       */
+      long tick = terminal.nextTickDeadline();
+      if (tick != Long.MAX_VALUE && tick - now <= 0)
+        dirty = true;
+      else {
+        /*
+         * Only ticks in later turns of the timer wheel are pending, and the
+         * wheel has to come round to them; a frame is only drawn if one of
+         * them turns out to be due.
+         */
+        tick = terminal.nextTickWakeup();
+        if (tick != Long.MAX_VALUE && tick - now <= 0) {
+          try {
+            if (terminal.advanceTicks())
+              dirty = true;
+          } catch (RuntimeException re) {
+            re.printStackTrace();
+          }
+        }
+      }
+
+      if (resizing) {
+        if (now - resizeDue < 0)
+          continue;
+
+        resizing = false;
+        try {
+          resize();
+        } catch (RuntimeException re) {
+          re.printStackTrace();
+        }
+      }
+
+      if (dirty && now - lastFrame >= frameInterval()) {
+        dirty = false;
+        lastFrame = now;
+        try {
+          terminal.render();
+        } catch (RuntimeException re) {
+          re.printStackTrace();
+        }
+      }
     }
   }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of events which any number of threads may offer to, and which one
+ * thread consumes, without any of them taking a lock. Each event is packed into a
+ * single {@code long}, so that queueing an event never allocates.
+ *
+ * <p>
+ * Every slot of the ring has a sequence number. A producer claims a slot by
+ * advancing the tail, writes the event into it, and then publishes the slot by
+ * setting its sequence; the consumer only reads a slot once it has been published.
+ * Producers therefore only contend with each other for the instant it takes to
+ * claim a slot, and never with the consumer.
+ * </p>
+ *
+ * <p>
+ * An event is packed as its type in the highest byte, followed by a byte of
+ * modifiers and two unsigned 24-bit arguments. (See {@link #pack(int, int, int,
+ * int)}.)
+ * </p>
+ */
+final class EventRing {
+  /**
+   * Returned by {@link #poll()} when the ring is empty. No event packs to this value,
+   * as the type of an event is never zero.
+   */
+  static final long NONE = 0L;
+
+  private final long[] events;
+  private final AtomicLongArray sequences;
+  private final int mask;
+
+  /**
+   * The position of the next slot to be claimed by a producer.
+   */
+  private final AtomicLong tail;
+
+  /**
+   * The position of the next slot to be read. This is only touched by the consumer.
+   */
+  private long head;
+
+  /**
+   * The consumer thread, and whether it is (about to be) parked waiting for events.
+   */
+  private volatile Thread consumer;
+  private volatile boolean waiting;
+
+  /**
+   * Set when the consumer has been woken without an event being offered, so that the
+   * wake-up isn't lost if the consumer was not yet waiting.
+   */
+  private volatile boolean woken;
+
+  private final AtomicLong dropped;
+
+  /**
+   * Creates a ring which can hold the given number of events.
+   *
+   * @param capacity The capacity of the ring, which must be a power of two.
+   */
+  EventRing(int capacity) {
+    if (Integer.bitCount(capacity) != 1)
+      throw new IllegalArgumentException("The capacity of the ring must be a "
+                                         + "power of two.");
+
+    events = new long[capacity];
+    sequences = new AtomicLongArray(capacity);
+    for (int s = 0; s < capacity; s++)
+      sequences.set(
+        s,
+        s);
+    mask = capacity - 1;
+    tail = new AtomicLong();
+    dropped = new AtomicLong();
+  }
+
+  /**
+   * Adds an event to the ring, and wakes the consumer if it is waiting. This may be
+   * called from any thread.
+   *
+   * @param event The packed event.
+   *
+   * @return Whether the event was added; false if the ring is full, in which case the
+   *   event is dropped.
+   */
+  boolean offer(long event) {
+    long position;
+    while (true) {
+      position = tail.get();
+      long available = sequences.get((int)position & mask) - position;
+
+      if (available == 0) {
+        if (tail.compareAndSet(
+          position,
+          position + 1))
+          break;
+      }
+      else if (available < 0) {
+        dropped.incrementAndGet();
+        return false;
+      }
+    }
+
+    int slot = (int)position & mask;
+    events[slot] = event;
+    sequences.set(
+      slot,
+      position + 1);
+
+    if (waiting)
+      LockSupport.unpark(consumer);
+
+    return true;
+  }
+
+  /**
+   * Removes the oldest event from the ring. This may only be called by the consumer.
+   *
+   * @return The oldest event, or {@link #NONE} if there are none.
+   */
+  long poll() {
+    int slot = (int)head & mask;
+    if (sequences.get(slot) != head + 1)
+      return NONE;
+
+    long event = events[slot];
+    sequences.set(
+      slot,
+      head + mask + 1);
+    head++;
+
+    return event;
+  }
+
+  boolean isEmpty() {
+    return sequences.get((int)head & mask) != head + 1;
+  }
+
+  /**
+   * Parks the consumer until an event is offered, {@link #wake()} is called, or the
+   * timeout elapses. This may only be called by the consumer.
+   *
+   * @param nanos The longest time to wait, or {@code Long.MAX_VALUE} to wait
+   *   indefinitely.
+   */
+  void await(long nanos) {
+    consumer = Thread.currentThread();
+    waiting = true;
+
+    /*
+     * An event may have been published after the ring was last polled, but
+     * before the producer could have seen that the consumer is waiting.
+     */
+    if (!woken && isEmpty()) {
+      if (nanos == Long.MAX_VALUE)
+        LockSupport.park(this);
+      else if (nanos > 0)
+        LockSupport.parkNanos(
+          this,
+          nanos);
+    }
+
+    waiting = false;
+    woken = false;
+  }
+
+  /**
+   * Wakes the consumer if it is waiting, without offering an event.
+   */
+  void wake() {
+    woken = true;
+
+    Thread consumer = this.consumer;
+    if (consumer != null)
+      LockSupport.unpark(consumer);
+  }
+
+  /**
+   * Gets the number of events which were dropped because the ring was full.
+   */
+  long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Packs an event into a single value.
+   *
+   * @param type The type of the event, from 1 to 127.
+   * @param modifiers The modifiers of the event, such as the keys which were held.
+   * @param a The first argument of the event, from 0 to 2<sup>24</sup>-1.
+   * @param b The second argument of the event, from 0 to 2<sup>24</sup>-1.
+   *
+   * @return The packed event.
+   */
+  static long pack(
+    int type,
+    int modifiers,
+    int a,
+    int b)
+  {
+    return (long)(type & 0x7F) << 56
+           | (long)(modifiers & 0xFF) << 48
+           | (long)(a & 0xFFFFFF) << 24
+           | b & 0xFFFFFF;
+  }
+
+  static int type(long event) {
+    return (int)(event >>> 56);
+  }
+
+  static int modifiers(long event) {
+    return (int)(event >>> 48) & 0xFF;
+  }
+
+  static int a(long event) {
+    return (int)(event >>> 24) & 0xFFFFFF;
+  }
+
+  static int b(long event) {
+    return (int)event & 0xFFFFFF;
+  }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A font which has been baked ahead of time into a compact file of 8-bit coverage
+ * masks, one mask per glyph. Unlike a {@code BitmapFont}, an atlas is never decoded;
+ * the file is mapped directly into memory and the coverage of each pixel is read
+ * straight out of the mapping when a glyph is rasterized.
+ *
+ * <p>
+ * An atlas file has the following layout (all values are big-endian):
+ * </p>
+ * <pre>
+ *   int magic               "JTFA"
+ *   int version             {@link #VERSION}
+ *   int cellWidth
+ *   int cellHeight
+ *   int ascent
+ *   int numRanges
+ *   int[numRanges] first    the first codepoint of each range
+ *   int[numRanges] count    the number of codepoints in each range
+ *   byte[numGlyphs][cellWidth*cellHeight] coverage
+ * </pre>
+ * Glyph masks are stored in the same order as their ranges, and each mask is a
+ * row-major array of coverage values from 0 (empty) to 255 (fully covered).
+ *
+ * @see #forFont(Font)
+ * @see AtlasRasterizer
+ */
+public final class FontAtlas {
+  /**
+   * The version of the file format. Atlases baked with a different version are
+   * discarded and baked again when they are found in the cache.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x4A544641;
+
+  /**
+   * The ranges of codepoints which are baked into an atlas by default: printable
+   * ASCII, the Latin-1 supplement, box-drawing characters and block elements. (The
+   * last two are used when drawing borders and container backgrounds.)
+   */
+  private static final int[][] DEFAULT_RANGES =
+    { { 0x0020, 0x5F }
+    , { 0x00A0, 0x60 }
+    , { 0x2500, 0x80 }
+    , { 0x2580, 0x20 } };
+
+  /**
+   * The mapping of the atlas file; coverage masks are read directly from this
+   * buffer using absolute (and therefore thread-safe) reads.
+   */
+  private final ByteBuffer data;
+
+  private final int width,
+    height,
+    ascent;
+
+  /**
+   * The first codepoint and the number of codepoints within each range that this
+   * atlas contains, as well as the index of the first glyph of that range.
+   */
+  private final int[] first,
+    count,
+    base;
+
+  /**
+   * The offset into the mapped data at which the first coverage mask begins.
+   */
+  private final int masks;
+
+  private FontAtlas(ByteBuffer data) throws IOException {
+    this.data = data;
+
+    if (data.remaining() < 24 || data.getInt(0) != MAGIC)
+      throw new IOException("The file is not a font atlas.");
+    if (data.getInt(4) != VERSION)
+      throw new IOException("Unsupported atlas version " + data.getInt(4) + ".");
+
+    width = data.getInt(8);
+    height = data.getInt(12);
+    ascent = data.getInt(16);
+
+    int nr = data.getInt(20);
+    first = new int[nr];
+    count = new int[nr];
+    base = new int[nr];
+
+    int glyphs = 0;
+    for (int r = 0; r < nr; r++) {
+      first[r] = data.getInt(24 + r*4);
+      count[r] = data.getInt(24 + (nr+r)*4);
+      base[r] = glyphs;
+      glyphs += count[r];
+    }
+
+    masks = 24 + nr*8;
+    if ((long)masks + (long)glyphs*width*height > data.limit())
+      throw new IOException("The font atlas has been truncated.");
+  }
+
+  /**
+   * Returns the atlas for the given font, baking it into the cache directory the
+   * first time it is requested. Atlases are keyed by the font name, its size and the
+   * version of the file format, so that later requests for the same font only need
+   * to map the existing file into memory.
+   *
+   * @param font The font to fetch an atlas for.
+   *
+   * @return The atlas for the given font.
+   *
+   * @throws IOException if the atlas cannot be read from or written to the cache.
+   *
+   * @see #getCacheDirectory()
+   */
+  public static FontAtlas forFont(Font font) throws IOException {
+    FontAtlas atlas = cached(font);
+    if (atlas != null)
+      return atlas;
+
+    Path path = getCachePath(font);
+    bake(
+      font,
+      path);
+
+    return load(path);
+  }
+
+  /**
+   * Returns the atlas for the given font if it has already been baked into the
+   * cache directory, without baking it otherwise.
+   *
+   * @param font The font to fetch an atlas for.
+   *
+   * @return The cached atlas for the given font, or null if there is no usable
+   *   atlas in the cache.
+   *
+   * @see #forFont(Font)
+   */
+  public static FontAtlas cached(Font font) {
+    Path path = getCachePath(font);
+    if (!Files.exists(path))
+      return null;
+
+    try {
+      return load(path);
+    } catch (IOException ie) {
+      /*
+       * The cached atlas is corrupt or was written in an older format, and has
+       * to be baked again.
+       */
+      return null;
+    }
+  }
+
+  /**
+   * Gets the location in the cache directory of the atlas for the given font. The
+   * fractional point size is part of the key, since fonts which only differ below
+   * the point rasterize to different glyphs.
+   */
+  private static Path getCachePath(Font font) {
+    String name = font.getFontName().replaceAll(
+      "[^A-Za-z0-9]+",
+      "_");
+
+    return getCacheDirectory().resolve(String.format(
+      "%s-%s-v%d.atlas",
+      name,
+      Float.toString(font.getSize2D()),
+      VERSION));
+  }
+
+  /**
+   * Gets the directory in which baked atlases are stored. This is the value of the
+   * <code>jtxt.atlas.cache</code> system property if it has been set, or
+   * <code>~/.cache/jtxt/atlas</code> otherwise.
+   *
+   * @return The directory which holds baked font atlases.
+   */
+  public static Path getCacheDirectory() {
+    String dir = System.getProperty("jtxt.atlas.cache");
+    if (dir != null)
+      return Paths.get(dir);
+
+    return Paths.get(
+      System.getProperty("user.home"),
+      ".cache",
+      "jtxt",
+      "atlas");
+  }
+
+  /**
+   * Maps the atlas at the given path into memory.
+   *
+   * @param path The location of an atlas which was created by {@link #bake(Font,
+   *   Path)}.
+   *
+   * @return The atlas which is stored in the file.
+   *
+   * @throws IOException if the file cannot be mapped or is not a valid atlas.
+   */
+  public static FontAtlas load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.READ))
+    {
+      /*
+       * The mapping remains valid after the channel has been closed.
+       */
+      return new FontAtlas(channel.map(
+        FileChannel.MapMode.READ_ONLY,
+        0,
+        channel.size()));
+    }
+  }
+
+  /**
+   * Rasterizes the default ranges of codepoints for the given font, and writes the
+   * coverage of each glyph to the file at the given path. The atlas is written to a
+   * temporary file first and moved into place once it is complete, so that other
+   * processes never map a partially written atlas.
+   *
+   * @param font The font to bake.
+   * @param path The location to write the atlas to.
+   *
+   * @throws IOException if the atlas cannot be written.
+   */
+  public static void bake(
+    Font font,
+    Path path) throws IOException
+  {
+    BufferedImage scratch = new BufferedImage(
+      1,
+      1,
+      BufferedImage.TYPE_BYTE_GRAY);
+    Graphics2D sg = scratch.createGraphics();
+    FontMetrics fm = sg.getFontMetrics(font);
+    sg.dispose();
+
+    int cw = fm.getMaxAdvance(),
+      ch = fm.getHeight() - fm.getLeading(),
+      ascent = fm.getAscent(),
+      nr = DEFAULT_RANGES.length,
+      glyphs = 0;
+
+    for (int[] range : DEFAULT_RANGES)
+      glyphs += range[1];
+
+    ByteBuffer out = ByteBuffer.allocate(24 + nr*8 + glyphs*cw*ch)
+      .order(ByteOrder.BIG_ENDIAN);
+    out.putInt(MAGIC)
+      .putInt(VERSION)
+      .putInt(cw)
+      .putInt(ch)
+      .putInt(ascent)
+      .putInt(nr);
+    for (int[] range : DEFAULT_RANGES)
+      out.putInt(range[0]);
+    for (int[] range : DEFAULT_RANGES)
+      out.putInt(range[1]);
+
+    BufferedImage cell = new BufferedImage(
+      cw,
+      ch,
+      BufferedImage.TYPE_BYTE_GRAY);
+    byte[] coverage = ((DataBufferByte)cell.getRaster().getDataBuffer()).getData();
+    Graphics2D g = cell.createGraphics();
+    g.setFont(font);
+    g.setRenderingHint(
+      RenderingHints.KEY_TEXT_ANTIALIASING,
+      RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+    for (int[] range : DEFAULT_RANGES) {
+      for (int cp = range[0]; cp < range[0] + range[1]; cp++) {
+        g.setColor(Color.BLACK);
+        g.fillRect(
+          0,
+          0,
+          cw,
+          ch);
+
+        if (font.canDisplay(cp)) {
+          g.setColor(Color.WHITE);
+          g.drawString(
+            new String(Character.toChars(cp)),
+            0,
+            ascent);
+        }
+        out.put(coverage);
+      }
+    }
+    g.dispose();
+    out.flip();
+
+    Path dir = path.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(
+      dir,
+      "atlas",
+      ".tmp");
+    try (FileChannel channel = FileChannel.open(
+      tmp,
+      StandardOpenOption.WRITE))
+    {
+      while (out.hasRemaining())
+        channel.write(out);
+    }
+    Files.move(
+      tmp,
+      path,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Finds the offset of the coverage mask for the given character within the mapped
+   * atlas.
+   *
+   * @param character The character to find the mask of.
+   *
+   * @return The offset of the first coverage value of the mask, or -1 if this
+   *   character was not baked into the atlas.
+   *
+   * @see #getCoverage(int)
+   */
+  int getMaskOffset(char character) {
+    for (int r = 0; r < first.length; r++) {
+      int index = character - first[r];
+      if (index >= 0 && index < count[r])
+        return masks + (base[r] + index)*width*height;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Reads the coverage value at the given offset within the atlas.
+   *
+   * @param offset An offset returned by {@link #getMaskOffset(char)}, plus the
+   *   row-major index of a pixel within the glyph's cell.
+   *
+   * @return The coverage of the pixel, from 0 to 255.
+   */
+  int getCoverage(int offset) {
+    return data.get(offset) & 0xFF;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getAscent() {
+    return ascent;
+  }
+}
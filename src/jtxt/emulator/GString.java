@@ -180,6 +180,65 @@ public final class GString implements Iterable<Glyph> {
     return new GString(glyphs);
   }
 
+  /**
+   * Replaces the glyphs in this string, starting at the index, with those of the
+   * other string. Glyphs of the other string which would fall past the end of this
+   * one are dropped, so the length of this string is unchanged.
+   *
+   * @param index The index within this string of the first glyph to replace.
+   * @param other The glyphs to place in this string.
+   *
+   * @return A new string, with the glyphs from the index replaced.
+   */
+  public GString replace(
+    int index,
+    GString other)
+  {
+    return replace(
+      index,
+      other,
+      0,
+      other.glyphs.length);
+  }
+
+  /**
+   * Replaces the glyphs in this string, starting at the index, with a range of the
+   * glyphs of the other string, without copying that range out of it first.
+   *
+   * @param index The index within this string of the first glyph to replace.
+   * @param other The string which contains the glyphs to place in this string.
+   * @param from The index of the first glyph of the other string to place.
+   * @param to The index just past the last glyph of the other string to place.
+   *
+   * @return A new string, with the glyphs from the index replaced.
+   *
+   * @see #replace(int, GString)
+   */
+  public GString replace(
+    int index,
+    GString other,
+    int from,
+    int to)
+  {
+    int count = Math.min(
+      to - from,
+      this.glyphs.length - index);
+    if (count <= 0)
+      return this;
+
+    Glyph[] glyphs = Arrays.copyOf(
+      this.glyphs,
+      this.glyphs.length);
+    System.arraycopy(
+      other.glyphs,
+      from,
+      glyphs,
+      index,
+      count);
+
+    return new GString(glyphs);
+  }
+
   public GString substring(
     int start,
     int end)
@@ -241,6 +300,23 @@ public final class GString implements Iterable<Glyph> {
     return getStringFromArray(data);
   }
 
+  @Override
+  public boolean equals(Object other) {
+    if (other == this)
+      return true;
+    if (!(other instanceof GString))
+      return false;
+
+    return Arrays.equals(
+      glyphs,
+      ((GString)other).glyphs);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(glyphs);
+  }
+
   private String getStringFromArray(int[] string) {
     char[] chars = new char[string.length];
     for (int i = 0; i < chars.length; i++) {
@@ -338,7 +414,8 @@ public final class GString implements Iterable<Glyph> {
 
   /**
    * Wraps this string to the given <code>length</code>. This method (rather
-   * primitively) breaks the string on the spaces between individual words.
+   * primitively) breaks the string on the spaces between individual words; a word
+   * which is longer than a line is broken wherever the line ends.
    *
    * <p>
    * <i>Implementation Note</i>: This algorithm is greedy and makes no
@@ -346,48 +423,71 @@ public final class GString implements Iterable<Glyph> {
    * </p>
    *
    * @param length The maximum number of Glyphs that can appear on a line before
-   *   being wrapped.
+   *   being wrapped, which must be at least one.
    *
    * @return An array of {@code GString}s, where each line's length is guaranteed to
    *   be no greater than the given length, and spaces between words at the rightmost
    *   bound of a line are discarded.
+   *
+   * @see TextLayout
    */
   public GString[] wrap(int length) {
-    if (glyphs.length > length) {
-      /*
-       * Keeps track of the index of the first character in the line that
-       * still needs to be wrapped.
-       */
-      int index = 0;
-
-      /*
-       * The number of characters that still need to be wrapped.
-       */
-      int delta = glyphs.length;
-
-      ArrayList<GString> lines = new ArrayList<>();
-
-      while (delta > length) {
-        for (int i = index + length; i > index; i--) {
-          if (glyphs[i].character == ' ') {
-            lines.add(substring(
-              index,
-              i));
-            delta -= ++i - index;
-            index = i;
-
-            break;
-          }
-        }
-      }
+    if (length < 1)
+      throw new IllegalArgumentException("Lines must be at least one glyph "
+                                         + "long.");
+    if (glyphs.length <= length)
+      return new GString[] { this };
+
+    ArrayList<GString> lines = new ArrayList<>();
+    for (int index = 0; index < glyphs.length; ) {
+      int end = findBreak(
+        index,
+        length);
       lines.add(substring(
         index,
-        glyphs.length));
+        end));
+      index = skipBreak(end);
+    }
 
-      return lines.toArray(new GString[0]);
+    return lines.toArray(new GString[0]);
+  }
+
+  /**
+   * Finds where the line which begins at the index ends, when this string is
+   * wrapped to the given length. The line ends at the last space which would fit
+   * within it, or, if there is no such space, wherever the line is full.
+   *
+   * @param index The index of the first glyph of the line.
+   * @param length The maximum length of the line.
+   *
+   * @return The index just past the last glyph of the line.
+   */
+  int findBreak(
+    int index,
+    int length)
+  {
+    if (glyphs.length - index <= length)
+      return glyphs.length;
+
+    for (int i = index + length; i > index; i--) {
+      if (glyphs[i].character == ' ')
+        return i;
     }
 
-    return new GString[] { this };
+    return index + length;
+  }
+
+  /**
+   * Gets the index of the first glyph of the line after a break, which skips the
+   * space that the line was broken at, if there was one.
+   *
+   * @param end The end of the previous line, as found by {@link #findBreak(int,
+   *   int)}.
+   */
+  int skipBreak(int end) {
+    return end < glyphs.length && glyphs[end].character == ' '
+      ? end + 1
+      : end;
   }
 
   public Iterator<Glyph> iterator() {
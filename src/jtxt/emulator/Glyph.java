@@ -77,6 +77,28 @@ public class Glyph {
              TRANSPARENT);
     }
     
+    /**
+     * Two glyphs are equal when they have the same character and the same
+     * foreground and background colors.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof Glyph))
+            return false;
+        
+        Glyph glyph = (Glyph)other;
+        return character == glyph.character
+               && color.getRGB() == glyph.color.getRGB()
+               && background.getRGB() == glyph.background.getRGB();
+    }
+    
+    @Override
+    public int hashCode() {
+        return (character * 31 + color.getRGB()) * 31 + background.getRGB();
+    }
+    
     @Override
     public String toString() {
         return String.format("Glyph: [char='%c', color=%s, background=%s]%n", 
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds pre-rasterized, antialiased coverage masks for the glyphs of a font, so that
+ * Java2D only needs to shape and rasterize a character the first time it is drawn.
+ * Each mask is the size of a character cell, and holds the coverage of each pixel
+ * from 0 (empty) to 255 (fully covered); the mask is blended with the color of the
+ * glyph when it is drawn.
+ *
+ * <p>
+ * Masks for the first 256 codepoints are never evicted. All other masks are kept in
+ * a least-recently-used cache with a fixed capacity, so that drawing text from a
+ * large character set (such as CJK) does not grow the cache without bound.
+ * </p>
+ *
+ * @see SwingRasterizer
+ */
+final class GlyphMaskCache {
+  /**
+   * The number of masks outside of the first 256 codepoints which are kept. This may
+   * be changed with the <code>jtxt.glyphcache.capacity</code> system property.
+   */
+  private static final int CAPACITY = Integer.getInteger(
+    "jtxt.glyphcache.capacity",
+    4096);
+
+  /**
+   * Returned for glyphs which have no visible pixels, so that they can be skipped
+   * entirely when drawing.
+   */
+  static final byte[] EMPTY = new byte[0];
+
+  /**
+   * The number of fonts whose caches are kept for later renderers. A renderer holds
+   * on to its own cache, so evicting one only means that the next renderer for the
+   * same font rasterizes its glyphs again.
+   */
+  private static final int FONTS = 16;
+
+  private static final Map<Font, GlyphMaskCache> caches =
+    new LinkedHashMap<Font, GlyphMaskCache>(
+      16,
+      0.75f,
+      true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Font, GlyphMaskCache> eldest) {
+        return size() > FONTS;
+      }
+    };
+
+  private final Font font;
+  private final FontRenderContext frc;
+  private final int width,
+    height,
+    ascent;
+
+  private final AtomicReferenceArray<byte[]> latin;
+  private final Map<Character, byte[]> others;
+
+  private final AtomicBoolean warming;
+
+  private GlyphMaskCache(Font font) {
+    this.font = font;
+
+    BufferedImage scratch = new BufferedImage(
+      1,
+      1,
+      BufferedImage.TYPE_BYTE_GRAY);
+    Graphics2D g = scratch.createGraphics();
+    configure(g);
+    FontMetrics fm = g.getFontMetrics(font);
+    frc = g.getFontRenderContext();
+    g.dispose();
+
+    width = fm.getMaxAdvance();
+    height = fm.getHeight() - fm.getLeading();
+    ascent = fm.getAscent();
+
+    warming = new AtomicBoolean();
+    latin = new AtomicReferenceArray<>(256);
+    others = new LinkedHashMap<Character, byte[]>(
+      64,
+      0.75f,
+      true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Character, byte[]> eldest) {
+        return size() > CAPACITY;
+      }
+    };
+  }
+
+  /**
+   * Gets the cache for the given font, creating it if this is the first time it has
+   * been requested.
+   *
+   * @param font The font which masks will be rasterized from.
+   *
+   * @return The mask cache for the font.
+   */
+  static GlyphMaskCache forFont(Font font) {
+    synchronized (caches) {
+      return caches.computeIfAbsent(
+        font,
+        GlyphMaskCache::new);
+    }
+  }
+
+  /**
+   * Rasterizes the most commonly drawn glyphs (printable ASCII, Latin-1, box-drawing
+   * characters and block elements) on a background thread, so that the first frames
+   * do not pay the cost of rasterizing them. This only does anything the first time
+   * it is called.
+   */
+  void warm() {
+    if (!warming.compareAndSet(
+      false,
+      true))
+      return;
+
+    Thread warmer = new Thread(
+      () -> {
+        for (char c = 0x20; c < 0x100; c++)
+          getMask(c);
+        for (char c = 0x2500; c < 0x25A0; c++)
+          getMask(c);
+      },
+      "jtxt-glyph-warmer");
+    warmer.setDaemon(true);
+    warmer.setPriority(Thread.MIN_PRIORITY);
+    warmer.start();
+  }
+
+  /**
+   * Gets the coverage mask for the character, rasterizing it if it is not already in
+   * the cache.
+   *
+   * @param c The character to get the mask of.
+   *
+   * @return The coverage of each pixel of the character's cell in row-major order,
+   *   or {@link #EMPTY} if the character has no visible pixels.
+   */
+  byte[] getMask(char c) {
+    if (c < 256) {
+      byte[] mask = latin.get(c);
+      if (mask == null) {
+        mask = rasterize(c);
+        latin.set(
+          c,
+          mask);
+      }
+
+      return mask;
+    }
+
+    byte[] mask;
+    synchronized (others) {
+      mask = others.get(c);
+    }
+
+    if (mask == null) {
+      mask = rasterize(c);
+      synchronized (others) {
+        others.put(
+          c,
+          mask);
+      }
+    }
+
+    return mask;
+  }
+
+  private byte[] rasterize(char c) {
+    if (c == '\0' || Character.isWhitespace(c) || !font.canDisplay(c))
+      return EMPTY;
+
+    GlyphVector gv = font.createGlyphVector(
+      frc,
+      new char[] { c });
+    BufferedImage cell = new BufferedImage(
+      width,
+      height,
+      BufferedImage.TYPE_BYTE_GRAY);
+    Graphics2D g = cell.createGraphics();
+    configure(g);
+    g.setColor(Color.WHITE);
+    g.drawGlyphVector(
+      gv,
+      0,
+      ascent);
+    g.dispose();
+
+    byte[] mask = ((DataBufferByte)cell.getRaster().getDataBuffer()).getData();
+    for (byte coverage : mask) {
+      if (coverage != 0)
+        return mask;
+    }
+
+    return EMPTY;
+  }
+
+  private static void configure(Graphics2D g) {
+    g.setRenderingHint(
+      RenderingHints.KEY_TEXT_ANTIALIASING,
+      RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setRenderingHint(
+      RenderingHints.KEY_FRACTIONALMETRICS,
+      RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+}
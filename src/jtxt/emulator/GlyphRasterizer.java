@@ -15,6 +15,7 @@
  */
 package jtxt.emulator;
 
+import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 
 import jtxt.GlyphBuffer;
@@ -33,8 +34,103 @@ interface GlyphRasterizer {
    *   is the same width and height set in the context the frame has been constructed
    *   with, so that this image can be rendered directly to the window.
    */
-  RenderedImage rasterize(
+  default RenderedImage rasterize(
     GlyphBuffer buffer,
     int width,
-    int height);
+    int height)
+  {
+    BufferedImage image = new BufferedImage(
+      width,
+      height,
+      BufferedImage.TYPE_INT_ARGB);
+    rasterize(
+      buffer,
+      image);
+
+    return image;
+  }
+
+  /**
+   * Rasterizes the glyphs in the buffer onto an existing image. Glyphs are drawn
+   * over whatever the image already contains, so the caller is responsible for
+   * clearing (or filling) the image beforehand. This allows the same images to be
+   * reused from one frame to the next.
+   *
+   * @param buffer The buffer of glyphs to rasterize.
+   * @param target The image to draw the glyphs onto.
+   */
+  void rasterize(
+    GlyphBuffer buffer,
+    BufferedImage target);
+
+  /**
+   * Fills one cell of an image with the background color of a glyph. Translucent
+   * backgrounds are composited over the pixels which are already in the image, as
+   * Java2D would do, rather than replacing them.
+   *
+   * @param pixels The pixels of the image, one ARGB value per pixel.
+   * @param width The width of the image.
+   * @param x The column of the left edge of the cell, in pixels.
+   * @param y The row of the top edge of the cell, in pixels.
+   * @param cw The width of a cell.
+   * @param ch The height of a cell.
+   * @param bg The background color, as a non-premultiplied ARGB value.
+   * @param opaque The alpha to combine with pixels in images which have none.
+   */
+  static void fill(
+    int[] pixels,
+    int width,
+    int x,
+    int y,
+    int cw,
+    int ch,
+    int bg,
+    int opaque)
+  {
+    int alpha = bg >>> 24;
+    if (alpha == 0)
+      return;
+
+    for (int row = y; row < y + ch; row++) {
+      int start = row*width + x;
+      for (int px = start; px < start + cw; px++)
+        pixels[px] = alpha == 255
+          ? bg
+          : blend(
+            pixels[px] | opaque,
+            bg,
+            alpha);
+    }
+  }
+
+  /**
+   * Composites the source color over the destination pixel with the given alpha,
+   * where both colors are non-premultiplied ARGB values.
+   *
+   * @param dst The pixel which is already in the image.
+   * @param src The color to draw over the pixel. (Its alpha is ignored.)
+   * @param alpha The opacity of the source color, from 0 to 255.
+   *
+   * @return The blended ARGB value.
+   */
+  static int blend(
+    int dst,
+    int src,
+    int alpha)
+  {
+    if (alpha >= 255)
+      return src | 0xFF000000;
+
+    int da = dst >>> 24,
+      inv = 255 - alpha,
+      oa = alpha + da*inv / 255;
+    if (oa == 0)
+      return 0;
+
+    int r = (((src >> 16) & 0xFF)*alpha + ((dst >> 16) & 0xFF)*da*inv / 255) / oa,
+      g = (((src >> 8) & 0xFF)*alpha + ((dst >> 8) & 0xFF)*da*inv / 255) / oa,
+      b = ((src & 0xFF)*alpha + (dst & 0xFF)*da*inv / 255) / oa;
+
+    return oa << 24 | r << 16 | g << 8 | b;
+  }
 }
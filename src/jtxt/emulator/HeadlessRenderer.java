@@ -0,0 +1,304 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.AlphaComposite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+
+import jtxt.DrawableSurface;
+import jtxt.GlyphBuffer;
+
+/**
+ * Rasterizes frames into images without a window, a {@code Robot} or a display. This
+ * surface runs the same rasterizers as the emulator's {@code Renderer}, but does so
+ * synchronously on the thread which draws the buffer, and keeps track of how long
+ * rasterization takes so that the throughput of a rasterizer can be measured on a
+ * machine which has no display server (with <code>java.awt.headless=true</code>).
+ *
+ * <p>
+ * Frames can be collected by registering a consumer, or written to a directory as a
+ * sequence of numbered PNG images.
+ * </p>
+ *
+ * @see HeadlessTerminal
+ */
+public class HeadlessRenderer implements DrawableSurface {
+  private final GlyphRasterizer rasterizer;
+  private final int cw, ch;
+
+  /**
+   * The image which frames are rasterized into. This is reused from one frame to
+   * the next unless the dimensions of the buffer change.
+   */
+  private BufferedImage frame;
+
+  /**
+   * Receives each frame after it has been rasterized. Consumers which keep a
+   * reference to the image must copy it, as the image is reused.
+   */
+  private Consumer<BufferedImage> consumer;
+
+  /**
+   * The directory to write each frame to, or null if frames aren't being exported.
+   */
+  private Path exportDirectory;
+
+  /**
+   * The number of frames which have been exported, which names the file of each
+   * frame. This isn't reset with the statistics, so that frames exported after a
+   * reset don't overwrite those exported before.
+   */
+  private long exported;
+
+  private long frames,
+    pixels,
+    nanos;
+
+  private HeadlessRenderer(
+    GlyphRasterizer rasterizer,
+    int cw,
+    int ch)
+  {
+    this.rasterizer = rasterizer;
+    this.cw = cw;
+    this.ch = ch;
+  }
+
+  /**
+   * Creates a headless renderer which draws TrueType glyphs with Java2D.
+   *
+   * @param font The font to draw glyphs with.
+   *
+   * @return A renderer which uses a {@code SwingRasterizer}.
+   */
+  public static HeadlessRenderer forFont(Font font) {
+    BufferedImage scratch = new BufferedImage(
+      1,
+      1,
+      BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = scratch.createGraphics();
+    FontMetrics fm = g.getFontMetrics(font);
+    g.dispose();
+
+    return new HeadlessRenderer(
+      new SwingRasterizer(font),
+      fm.getMaxAdvance(),
+      fm.getHeight() - fm.getLeading());
+  }
+
+  /**
+   * Creates a headless renderer which draws glyphs from a bitmap font.
+   *
+   * @param fontPath The image which contains the glyphs of the font.
+   * @param charWidth The width of each glyph in the image.
+   * @param charHeight The height of each glyph in the image.
+   * @param minCode The codepoint of the first glyph in the image.
+   * @param numGlyphs The number of glyphs in the image.
+   *
+   * @return A renderer which uses a {@code ChunkingRasterizer}.
+   */
+  public static HeadlessRenderer forBitmapFont(
+    Path fontPath,
+    int charWidth,
+    int charHeight,
+    int minCode,
+    int numGlyphs)
+  {
+    BitmapFont font = new BitmapFont(
+      fontPath,
+      charWidth,
+      charHeight,
+      minCode,
+      numGlyphs);
+
+    return new HeadlessRenderer(
+      new ChunkingRasterizer(
+        font,
+        16),
+      charWidth,
+      charHeight);
+  }
+
+  /**
+   * Creates a headless renderer which draws glyphs from a baked font atlas.
+   *
+   * @param atlas The atlas to draw glyphs from.
+   *
+   * @return A renderer which uses an {@code AtlasRasterizer}.
+   */
+  public static HeadlessRenderer forAtlas(FontAtlas atlas) {
+    return new HeadlessRenderer(
+      new AtlasRasterizer(atlas),
+      atlas.getWidth(),
+      atlas.getHeight());
+  }
+
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    Region bounds = buffer.getBounds();
+    int width = Math.max(cw*bounds.getWidth(), 1),
+      height = Math.max(ch*bounds.getHeight(), 1);
+
+    if (frame == null
+        || frame.getWidth() != width
+        || frame.getHeight() != height)
+    {
+      frame = new BufferedImage(
+        width,
+        height,
+        BufferedImage.TYPE_INT_ARGB);
+    }
+
+    long start = System.nanoTime();
+    Graphics2D g = frame.createGraphics();
+    g.setComposite(AlphaComposite.Clear);
+    g.fillRect(
+      0,
+      0,
+      width,
+      height);
+    g.dispose();
+    rasterizer.rasterize(
+      buffer,
+      frame);
+    nanos += System.nanoTime() - start;
+
+    frames++;
+    pixels += (long)width * height;
+
+    if (consumer != null)
+      consumer.accept(frame);
+    if (exportDirectory != null)
+      writeFrame();
+  }
+
+  private void writeFrame() {
+    Path file = exportDirectory.resolve(String.format(
+      "frame-%06d.png",
+      ++exported));
+
+    try {
+      ImageIO.write(
+        frame,
+        "png",
+        file.toFile());
+    } catch (IOException ie) {
+      throw new UncheckedIOException(
+        "Could not write the frame " + file + ".",
+        ie);
+    }
+  }
+
+  /**
+   * Passes each frame to the consumer once it has been rasterized.
+   *
+   * @param consumer The consumer to receive frames, or null to stop receiving them.
+   */
+  public void setFrameConsumer(Consumer<BufferedImage> consumer) {
+    this.consumer = consumer;
+  }
+
+  /**
+   * Writes each subsequent frame to the given directory as a PNG image, where the
+   * files are named in the order the frames were drawn. (The time spent encoding the
+   * images is not counted in the statistics of this renderer.)
+   *
+   * @param directory The directory to write frames to, or null to stop exporting
+   *   frames.
+   *
+   * @throws IOException if the directory cannot be created.
+   */
+  public void exportTo(Path directory) throws IOException {
+    if (directory != null)
+      Files.createDirectories(directory);
+    exportDirectory = directory;
+  }
+
+  /**
+   * Gets the most recently rasterized frame.
+   *
+   * @return The last frame, or null if nothing has been drawn yet.
+   */
+  public BufferedImage getFrame() {
+    return frame;
+  }
+
+  public long getFrameCount() {
+    return frames;
+  }
+
+  public int getCharWidth() {
+    return cw;
+  }
+
+  public int getCharHeight() {
+    return ch;
+  }
+
+  /**
+   * Calculates the number of frames rasterized per second, counting only the time
+   * spent within the rasterizer.
+   *
+   * @return The rasterizer's throughput in frames per second.
+   */
+  public double getFramesPerSecond() {
+    return nanos == 0
+      ? 0.0
+      : frames * 1e9 / nanos;
+  }
+
+  /**
+   * Calculates the number of pixels rasterized per second, counting only the time
+   * spent within the rasterizer.
+   *
+   * @return The rasterizer's throughput in pixels per second.
+   */
+  public double getPixelsPerSecond() {
+    return nanos == 0
+      ? 0.0
+      : pixels * 1e9 / nanos;
+  }
+
+  /**
+   * Clears the statistics which have been collected so far; for example, after the
+   * rasterizer has been warmed up.
+   */
+  public void resetStatistics() {
+    frames = 0;
+    pixels = 0;
+    nanos = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "HeadlessRenderer[rasterizer=%s, %n\tframes=%d, %n\tfps=%.1f, %n\tpps=%.3e]",
+      rasterizer,
+      frames,
+      getFramesPerSecond(),
+      getPixelsPerSecond());
+  }
+}
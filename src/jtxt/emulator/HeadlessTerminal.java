@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.Font;
+
+import jtxt.DrawableSurface;
+import jtxt.Terminal;
+
+/**
+ * A terminal which rasterizes its frames the same way the emulator does, but which
+ * doesn't open a window. This makes it possible to exercise (and benchmark) the
+ * pixel pipeline on machines without a display server.
+ *
+ * @see HeadlessRenderer
+ */
+public class HeadlessTerminal extends Terminal {
+  private final HeadlessRenderer renderer;
+
+  public HeadlessTerminal(
+    int width,
+    int height,
+    HeadlessRenderer renderer)
+  {
+    super(
+      width,
+      height);
+
+    this.renderer = renderer;
+    surface = createDrawableSurface(
+      width,
+      height);
+  }
+
+  public HeadlessTerminal(
+    int width,
+    int height,
+    String fontName,
+    int size)
+  {
+    this(
+      width,
+      height,
+      HeadlessRenderer.forFont(new Font(
+        fontName,
+        Font.PLAIN,
+        size)));
+  }
+
+  @Override
+  protected DrawableSurface createDrawableSurface(
+    int width,
+    int height)
+  {
+    return renderer;
+  }
+
+  public HeadlessRenderer getRenderer() {
+    return renderer;
+  }
+}
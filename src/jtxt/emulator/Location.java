@@ -162,6 +162,11 @@ public class Location {
     return false;
   }
 
+  @Override
+  public int hashCode() {
+    return 31 * line + position;
+  }
+
   @Override
   public String toString() {
     return String.format(
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * A layer which is painted over the retained frame of a {@code Renderer}, and which
+ * holds transient decorations such as the cursor, selections and hover highlights.
+ * Changing the overlay never redraws the components in the terminal or rasterizes a
+ * new frame; only the cells which the change affects are repainted, so blinking or
+ * moving the cursor costs no more than a blit of one or two cells.
+ *
+ * @see Renderer#getOverlay()
+ */
+public class Overlay {
+  /**
+   * The shape the cursor is drawn with.
+   */
+  public enum CursorStyle
+    { BLOCK
+    , UNDERLINE
+    , BAR }
+
+  /**
+   * The time between the cursor being shown and hidden while it blinks.
+   */
+  private static final int BLINK_RATE = 530;
+
+  private final Renderer renderer;
+  private final int cw, ch;
+
+  /**
+   * The cursor that this overlay draws, or null if no cursor is shown.
+   */
+  private volatile Cursor cursor;
+  private volatile CursorStyle style;
+  private volatile Color cursorColor;
+
+  /**
+   * The cell the cursor was last painted in, so that the cell can be repainted
+   * when the cursor moves away from it.
+   */
+  private volatile int line,
+    position;
+
+  /**
+   * Whether the cursor is in the visible phase of its blink.
+   */
+  private volatile boolean on;
+
+  private final Timer blink;
+
+  private final List<Highlight> highlights;
+
+  /**
+   * The highlight which follows the mouse, or null if nothing is hovered. This is set
+   * by the event dispatcher while the overlay is painted on the EDT.
+   */
+  private volatile Highlight hover;
+
+  Overlay(
+    Renderer renderer,
+    int cw,
+    int ch)
+  {
+    this.renderer = renderer;
+    this.cw = cw;
+    this.ch = ch;
+    style = CursorStyle.BLOCK;
+    cursorColor = new Color(
+      255,
+      255,
+      255,
+      160);
+    on = true;
+    highlights = new CopyOnWriteArrayList<>();
+
+    blink = new Timer(
+      BLINK_RATE,
+      e -> {
+        on = !on;
+        repaintCursor();
+      });
+  }
+
+  /**
+   * Shows the given cursor within the terminal. After the location of the cursor is
+   * changed, {@link #cursorMoved()} must be called for the cursor to be repainted
+   * in its new location.
+   *
+   * @param cursor The cursor to show, or null to hide the cursor.
+   * @param blinks Whether the cursor should blink.
+   */
+  public void setCursor(
+    Cursor cursor,
+    boolean blinks)
+  {
+    repaintCursor();
+    this.cursor = cursor;
+    on = true;
+    cursorMoved();
+
+    if (cursor != null && blinks)
+      blink.restart();
+    else
+      blink.stop();
+  }
+
+  public void setCursorStyle(
+    CursorStyle style,
+    Color color)
+  {
+    this.style = style;
+    cursorColor = color;
+    repaintCursor();
+  }
+
+  /**
+   * Moves the cursor to the given cell, and repaints the cells it moved between.
+   *
+   * @param line The line to move the cursor to.
+   * @param position The position within the line to move the cursor to.
+   */
+  public void moveCursor(
+    int line,
+    int position)
+  {
+    Cursor cursor = this.cursor;
+    if (cursor == null)
+      return;
+
+    cursor.setLocation(
+      line,
+      position);
+    cursorMoved();
+  }
+
+  /**
+   * Repaints the cursor in its current location, as well as the cell it previously
+   * occupied. The cursor is shown immediately, even if it was in the hidden phase of
+   * its blink, so that it is not lost from sight while it is being moved.
+   */
+  public void cursorMoved() {
+    repaintCursor();
+
+    Cursor cursor = this.cursor;
+    if (cursor == null)
+      return;
+
+    line = cursor.getLine();
+    position = cursor.getPosition();
+    on = true;
+    if (blink.isRunning())
+      blink.restart();
+    repaintCursor();
+  }
+
+  private void repaintCursor() {
+    if (cursor == null)
+      return;
+
+    renderer.repaint(
+      position * cw,
+      line * ch,
+      cw,
+      ch);
+  }
+
+  /**
+   * Highlights the given region of cells (for example, a selection) until the
+   * highlight is removed.
+   *
+   * @param region The cells to highlight.
+   * @param color The color to paint over the cells. This should usually be
+   *   translucent, so that the text beneath it remains visible.
+   *
+   * @return The highlight, which can later be moved or removed.
+   */
+  public Highlight addHighlight(
+    Region region,
+    Color color)
+  {
+    Highlight highlight = new Highlight(
+      region,
+      color);
+    highlights.add(highlight);
+    repaint(region);
+
+    return highlight;
+  }
+
+  public void removeHighlight(Highlight highlight) {
+    if (highlights.remove(highlight))
+      repaint(highlight.region);
+  }
+
+  /**
+   * Highlights the region under the mouse, replacing any region which was hovered
+   * previously.
+   *
+   * @param region The region being hovered, or null if nothing is hovered.
+   * @param color The color to paint over the region.
+   */
+  public void setHover(
+    Region region,
+    Color color)
+  {
+    Highlight previous = hover;
+    if (previous != null) {
+      if (region != null && previous.region.equals(region))
+        return;
+
+      removeHighlight(previous);
+    }
+
+    hover = region == null
+      ? null
+      : addHighlight(
+        region,
+        color);
+  }
+
+  private void repaint(Region region) {
+    renderer.repaint(
+      region.start.position * cw,
+      region.start.line * ch,
+      region.getWidth() * cw,
+      region.getHeight() * ch);
+  }
+
+  /**
+   * Paints the highlights, and then the cursor, over the frame. This is called by
+   * the renderer after the frame has been drawn.
+   *
+   * @param g The graphics of the renderer.
+   */
+  void paint(Graphics g) {
+    for (Highlight highlight : highlights) {
+      Region region = highlight.region;
+      g.setColor(highlight.color);
+      g.fillRect(
+        region.start.position * cw,
+        region.start.line * ch,
+        region.getWidth() * cw,
+        region.getHeight() * ch);
+    }
+
+    if (cursor == null || !on)
+      return;
+
+    int x = position * cw,
+      y = line * ch;
+    g.setColor(cursorColor);
+    switch (style) {
+    case UNDERLINE:
+      g.fillRect(
+        x,
+        y + ch - 2,
+        cw,
+        2);
+      break;
+    case BAR:
+      g.fillRect(
+        x,
+        y,
+        2,
+        ch);
+      break;
+    default:
+      g.fillRect(
+        x,
+        y,
+        cw,
+        ch);
+      break;
+    }
+  }
+
+  /**
+   * A region of cells which is painted over with a color.
+   */
+  public class Highlight {
+    private volatile Region region;
+    private final Color color;
+
+    private Highlight(
+      Region region,
+      Color color)
+    {
+      this.region = region;
+      this.color = color;
+    }
+
+    /**
+     * Moves this highlight to cover a different region; for example, when a
+     * selection is extended.
+     *
+     * @param region The new region for this highlight to cover.
+     */
+    public void moveTo(Region region) {
+      Region old = this.region;
+      this.region = region;
+      repaint(old);
+      repaint(region);
+    }
+
+    public Region getRegion() {
+      return region;
+    }
+  }
+}
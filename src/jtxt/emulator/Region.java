@@ -104,6 +104,25 @@ public class Region {
            && end.position <= other.end.position;
   }
 
+  /**
+   * Determines whether the given location is inside of this region, without the
+   * location needing to be allocated.
+   *
+   * @param line The line of the location.
+   * @param position The position of the location within the line.
+   *
+   * @return Whether the location is inside of this region.
+   */
+  public boolean contains(
+    int line,
+    int position)
+  {
+    return line >= start.line
+           && position >= start.position
+           && line < end.line
+           && position < end.position;
+  }
+
   /**
    * Gets the location that represents the upper-left corner of this region.
    *
@@ -142,6 +161,23 @@ public class Region {
     return end.line - start.line;
   }
 
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof Region) {
+      Region region = (Region)other;
+
+      return start.equals(region.start)
+             && end.equals(region.end);
+    }
+
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * start.hashCode() + end.hashCode();
+  }
+
   @Override
   public String toString() {
     return String.format(
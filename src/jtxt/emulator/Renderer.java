@@ -16,22 +16,85 @@
 package jtxt.emulator;
 
 import jtxt.DrawableSurface;
+import jtxt.FrameMetrics;
+import jtxt.FrameStats;
 import jtxt.GlyphBuffer;
 
 import javax.swing.JComponent;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.RenderedImage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Paints rasterized frames of glyphs within the emulator's window. Rasterization
+ * happens on a dedicated render thread: {@link #draw(GlyphBuffer)} only hands the
+ * buffer to that thread and returns immediately, so a slow frame never holds up the
+ * thread which produced it. Finished frames are handed to the event dispatch thread
+ * through a {@code TripleBuffer}, so painting never waits on the render thread, and
+ * never sees a frame which is still being drawn.
+ */
 @SuppressWarnings("Serial")
 public final class Renderer extends JComponent implements DrawableSurface {
+  /**
+   * A capture of the screen, taken when this renderer is created, which appears
+   * behind the frame when the renderer is translucent. This is null when the
+   * renderer is opaque.
+   */
   private final BufferedImage screen;
   private Color bg;
   private float trans;
   private GlyphRasterizer rasterizer;
-  private RenderedImage rasterizedFrame;
+
+  /**
+   * The images which the render thread rasterizes frames into. The front image is
+   * the most recent complete frame, ready to be drawn as-is; when this renderer is
+   * opaque, the background color has already been composited into it.
+   */
+  private final TripleBuffer<BufferedImage> frames;
+
+  /**
+   * The latest buffer which has been drawn, but not yet rasterized. If more than one
+   * buffer is drawn while the render thread is busy, only the latest is kept.
+   */
+  private final AtomicReference<GlyphBuffer> pending;
+
+  private Thread renderThread;
+
+  /**
+   * The buffer which was most recently rasterized. This is only accessed by the
+   * render thread.
+   */
+  private GlyphBuffer rendered;
+
+  /**
+   * Decorations, such as the cursor, which are painted over the frame without it
+   * needing to be rasterized again.
+   */
+  private final Overlay overlay;
+
+  /**
+   * The region of the screen capture blended with the background color. Blending
+   * this once, rather than on every paint, means that paint only needs to blit the
+   * composite until the window is moved or resized.
+   *
+   * @see #getBackgroundComposite()
+   */
+  private BufferedImage composite;
+
+  /**
+   * The bounds on the screen of this renderer when the composite was created.
+   */
+  private final Rectangle compositeBounds;
+
   private int cw, ch;
 
+  /**
+   * The metrics which the time spent rasterizing and painting frames is recorded
+   * in, or null if they aren't being measured.
+   */
+  private volatile FrameMetrics metrics;
+
   private Renderer(
     Color bg,
     float trans,
@@ -40,7 +103,7 @@ public final class Renderer extends JComponent implements DrawableSurface {
     int ch)
   {
     BufferedImage scr = null;
-    if (trans <= 1.0f) {
+    if (trans < 1.0f) {
       try {
         Robot r = new Robot();
         Toolkit tk = Toolkit.getDefaultToolkit();
@@ -59,6 +122,14 @@ public final class Renderer extends JComponent implements DrawableSurface {
     this.rasterizer = rasterizer;
     this.cw = cw;
     this.ch = ch;
+    compositeBounds = new Rectangle();
+    frames = new TripleBuffer<>();
+    pending = new AtomicReference<>();
+    overlay = new Overlay(
+      this,
+      cw,
+      ch);
+    setOpaque(screen == null);
   }
 
   static Renderer getInstance(
@@ -97,64 +168,299 @@ public final class Renderer extends JComponent implements DrawableSurface {
       charHeight);
   }
 
+  /**
+   * Creates a renderer which draws glyphs from a baked {@code FontAtlas}. The
+   * dimensions of each character are those of the cells within the atlas.
+   *
+   * @see FontAtlas#forFont(Font)
+   */
+  public static Renderer getInstance(
+    FontAtlas atlas,
+    Color background,
+    float transparency)
+  {
+    GlyphRasterizer rasterizer = new AtlasRasterizer(atlas);
+
+    return new Renderer(
+      background,
+      transparency,
+      rasterizer,
+      atlas.getWidth(),
+      atlas.getHeight());
+  }
+
+  /**
+   * Queues the buffer to be rasterized by the render thread. The buffer must not be
+   * modified after it has been passed to this method.
+   */
   @Override
   public void draw(GlyphBuffer buffer) {
+    pending.set(buffer);
+
+    synchronized (this) {
+      if (renderThread == null) {
+        renderThread = new Thread(
+          this::render,
+          "jtxt-render");
+        renderThread.setDaemon(true);
+        renderThread.start();
+      }
+    }
+    LockSupport.unpark(renderThread);
+  }
+
+  /**
+   * The body of the render thread. Waits for a buffer to be drawn, rasterizes it
+   * into the back image and publishes that image to be painted.
+   */
+  private void render() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        GlyphBuffer buffer = pending.getAndSet(null);
+        if (buffer == null) {
+          LockSupport.park(this);
+          continue;
+        }
+
+        /*
+         * A frame which can't be drawn is reported and skipped, rather than
+         * ending this thread and leaving the window on its last frame; it's
+         * drawn again in full the next time it's requested.
+         */
+        try {
+          render(buffer);
+        } catch (RuntimeException re) {
+          rendered = null;
+          re.printStackTrace();
+        }
+      }
+    } finally {
+      /*
+       * If this thread dies anyway (for example, because an image couldn't be
+       * allocated), the next frame starts another one.
+       */
+      synchronized (this) {
+        if (renderThread == Thread.currentThread())
+          renderThread = null;
+      }
+      rendered = null;
+    }
+  }
+
+  /**
+   * Rasterizes a frame into the back image and publishes that image to be painted.
+   */
+  private void render(GlyphBuffer buffer) {
+    /*
+     * Nothing needs to be rasterized or repainted if the frame is the same
+     * as the one already on screen.
+     */
+    if (buffer.contentEquals(rendered))
+      return;
+    rendered = buffer;
+
+    long start = System.nanoTime();
     Region bounds = buffer.getBounds();
-    rasterizedFrame = rasterizer.rasterize(
+    int width = Math.max(cw*bounds.getWidth(), 1),
+      height = Math.max(ch*bounds.getHeight(), 1);
+
+    BufferedImage image = frames.getBack();
+    if (image == null
+        || image.getWidth() != width
+        || image.getHeight() != height)
+    {
+      image = createCompatibleImage(
+        width,
+        height,
+        isOpaque()
+          ? Transparency.OPAQUE
+          : Transparency.TRANSLUCENT);
+      frames.setBack(image);
+    }
+
+    /*
+     * Flatten the frame onto the background color when this renderer is
+     * opaque, so that painting it is a single blit.
+     */
+    Graphics2D g = image.createGraphics();
+    if (isOpaque()) {
+      g.setColor(bg);
+    }
+    else {
+      g.setComposite(AlphaComposite.Clear);
+    }
+    g.fillRect(
+      0,
+      0,
+      width,
+      height);
+    g.dispose();
+
+    rasterizer.rasterize(
       buffer,
-      cw*bounds.getWidth(),
-      ch*bounds.getHeight());
+      image);
+    frames.publish();
+    repaint();
+
+    FrameMetrics metrics = this.metrics;
+    if (metrics != null)
+      metrics.record(
+        FrameStats.Stage.RASTERIZE,
+        System.nanoTime() - start);
   }
 
   @Override
   public void paint(Graphics g) {
-    super.paint(g);
-
-    Graphics2D graphics = (Graphics2D)g;
+    /*
+     * This component has no children or border, so there is no need to
+     * call the super implementation.
+     */
+    long start = System.nanoTime();
+    BufferedImage frame = frames.getFront();
     int width = getWidth(),
       height = getHeight();
 
-    int sx,
-      sy,
-      ex,
-      ey;
+    if (isOpaque()) {
+      if (frame == null
+          || frame.getWidth() < width
+          || frame.getHeight() < height)
+      {
+        g.setColor(bg);
+        g.fillRect(
+          0,
+          0,
+          width,
+          height);
+      }
+    }
+    else {
+      g.drawImage(
+        getBackgroundComposite(),
+        0,
+        0,
+        null);
+    }
+
+    if (frame != null)
+      g.drawImage(
+        frame,
+        0,
+        0,
+        null);
+    overlay.paint(g);
+
+    FrameMetrics metrics = this.metrics;
+    if (metrics != null)
+      metrics.record(
+        FrameStats.Stage.PAINT,
+        System.nanoTime() - start);
+  }
+
+  /**
+   * Records the time spent rasterizing and painting each frame in the given metrics.
+   *
+   * @param metrics The metrics to record timings in, or null to stop recording them.
+   */
+  public void setMetrics(FrameMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Gets the layer which is painted over each frame, and which holds the cursor and
+   * any highlighted regions.
+   *
+   * @return The overlay of this renderer.
+   */
+  public Overlay getOverlay() {
+    return overlay;
+  }
+
+  /**
+   * Returns the area of the screen capture behind this renderer, blended with the
+   * background color at the transparency of this renderer. The composite is only
+   * recreated when this renderer has been moved or resized since it was last
+   * requested.
+   *
+   * @return An image the size of this renderer which contains the translucent
+   *   background.
+   */
+  private BufferedImage getBackgroundComposite() {
     Point location = getLocationOnScreen();
+    int width = getWidth(),
+      height = getHeight();
 
-    sx = location.x;
-    sy = location.y;
-    ex = sx + width;
-    ey = sy + height;
-    /*
-     * Draw the screenshot within the bounds of this renderer. If this
-     * component is opaque, the image won't be visible anyway.
-     */
-    graphics.drawImage(
-      screen,
-      0,
-      0,
+    if (composite != null
+        && compositeBounds.x == location.x
+        && compositeBounds.y == location.y
+        && compositeBounds.width == width
+        && compositeBounds.height == height)
+      return composite;
+
+    compositeBounds.setBounds(
+      location.x,
+      location.y,
       width,
-      height,
-      sx,
-      sy,
-      ex,
-      ey,
-      null);
+      height);
+    composite = createCompatibleImage(
+      Math.max(width, 1),
+      Math.max(height, 1),
+      Transparency.OPAQUE);
 
-    Composite comp = AlphaComposite.getInstance(
+    Graphics2D g = composite.createGraphics();
+    if (screen != null) {
+      g.drawImage(
+        screen,
+        0,
+        0,
+        width,
+        height,
+        location.x,
+        location.y,
+        location.x + width,
+        location.y + height,
+        null);
+    }
+    g.setComposite(AlphaComposite.getInstance(
       AlphaComposite.SRC_OVER,
-      trans);
-    graphics.setComposite(comp);
-    graphics.setColor(bg);
-    graphics.fillRect(
+      trans));
+    g.setColor(bg);
+    g.fillRect(
       0,
       0,
       width,
       height);
+    g.dispose();
 
-    if (rasterizedFrame == null) return;
-    graphics.drawRenderedImage(
-      rasterizedFrame,
-      null);
+    return composite;
+  }
+
+  /**
+   * Creates an image which is compatible with the screen that this renderer is
+   * displayed on, so that drawing it does not require any conversion.
+   */
+  private BufferedImage createCompatibleImage(
+    int width,
+    int height,
+    int transparency)
+  {
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    if (gc == null && !GraphicsEnvironment.isHeadless())
+      gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+        .getDefaultScreenDevice()
+        .getDefaultConfiguration();
+
+    if (gc == null)
+      return new BufferedImage(
+        width,
+        height,
+        transparency == Transparency.OPAQUE
+          ? BufferedImage.TYPE_INT_RGB
+          : BufferedImage.TYPE_INT_ARGB);
+
+    return gc.createCompatibleImage(
+      width,
+      height,
+      transparency);
   }
 
   @Override
@@ -20,30 +20,108 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.RenderedImage;
+import java.awt.image.DataBufferInt;
 
 import jtxt.GlyphBuffer;
 
+/**
+ * Rasterizes glyphs from a TrueType font. Each character is rasterized by Java2D
+ * once, into an antialiased coverage mask which is kept in a {@code
+ * GlyphMaskCache}; drawing a glyph after that only blends its mask with the glyph's
+ * color. (When the pixels of the target image can't be addressed directly, glyphs
+ * are drawn through Java2D instead.)
+ *
+ * @see GlyphMaskCache
+ */
 class SwingRasterizer implements GlyphRasterizer {
   protected Font font;
 
+  private final GlyphMaskCache masks;
+
   SwingRasterizer(Font font) {
     this.font = font;
+    masks = GlyphMaskCache.forFont(font);
+    masks.warm();
   }
 
   @Override
-  public RenderedImage rasterize(
+  public void rasterize(
     GlyphBuffer buffer,
-    int width,
-    int height)
+    BufferedImage target)
   {
+    int type = target.getType();
+    if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+      drawGlyphs(
+        buffer,
+        target);
+      return;
+    }
+
+    int[] pixels = ((DataBufferInt)target.getRaster().getDataBuffer()).getData();
+    int width = target.getWidth(),
+      opaque = type == BufferedImage.TYPE_INT_RGB
+        ? 0xFF000000
+        : 0;
+
     Region bounds = buffer.getBounds();
-    BufferedImage image = new BufferedImage(
-      width,
-      height,
-      BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g = image.createGraphics();
+    int cw = masks.getWidth(),
+      ch = masks.getHeight(),
+      numLines = Math.min(bounds.getHeight(), target.getHeight() / ch),
+      lineSize = Math.min(bounds.getWidth(), width / cw);
+
+    for (int l = 0; l < numLines; l++) {
+      GString line = buffer.getString(l);
+
+      for (int p = 0; p < lineSize; p++) {
+        Glyph glyph = line.get(p);
+        int x = p * cw,
+          y = l * ch,
+          bg = glyph.background.getRGB();
+
+        GlyphRasterizer.fill(
+          pixels,
+          width,
+          x,
+          y,
+          cw,
+          ch,
+          bg,
+          opaque);
+
+        byte[] mask = masks.getMask(glyph.character);
+        if (mask == GlyphMaskCache.EMPTY)
+          continue;
+
+        int fg = glyph.color.getRGB(),
+          fa = fg >>> 24,
+          m = 0;
+        for (int my = 0; my < ch; my++) {
+          int row = (y+my)*width + x;
+          for (int mx = 0; mx < cw; mx++) {
+            int coverage = mask[m++] & 0xFF;
+            if (coverage == 0)
+              continue;
 
+            pixels[row+mx] = GlyphRasterizer.blend(
+              pixels[row+mx] | opaque,
+              fg,
+              coverage * fa / 255);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Draws each glyph with Java2D, for images whose pixels can't be blended with the
+   * cached masks directly.
+   */
+  private void drawGlyphs(
+    GlyphBuffer buffer,
+    BufferedImage target)
+  {
+    Region bounds = buffer.getBounds();
+    Graphics2D g = target.createGraphics();
     g.setRenderingHint(
       RenderingHints.KEY_ANTIALIASING,
       RenderingHints.VALUE_ANTIALIAS_OFF);
@@ -76,8 +154,8 @@ class SwingRasterizer implements GlyphRasterizer {
         g.fillRect(
           x,
           l*charHeight,
-          x+charWidth,
-          l*charHeight*2);
+          charWidth,
+          charHeight);
 
         g.setColor(glyph.color);
         g.drawString(
@@ -88,7 +166,5 @@ class SwingRasterizer implements GlyphRasterizer {
     }
 
     g.dispose();
-
-    return image;
   }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.util.Arrays;
+
+/**
+ * Remembers where a {@code GString} breaks into lines when it's wrapped to a given
+ * width, so that text which is drawn every frame isn't wrapped every frame. The
+ * breaks are kept as offsets into the string, rather than as copies of each line,
+ * and are found with the same rules as {@link GString#wrap(int)}.
+ *
+ * <p>
+ * The breaks are found lazily: asking for the first lines of the text only wraps
+ * the text as far as those lines, and wrapping resumes from there if later lines
+ * are asked for. When the width changes, a paragraph which is too long to be seen
+ * in full is therefore only wrapped as far as is visible. The breaks for the last
+ * few widths are kept, so that a window which is resized back and forth doesn't
+ * wrap its text again each time.
+ * </p>
+ */
+public final class TextLayout {
+  /**
+   * The number of widths which the breaks are kept for.
+   */
+  private static final int CACHED_WIDTHS = 4;
+
+  private final GString text;
+
+  /**
+   * The breaks for each width, with the most recently used first.
+   */
+  private final Lines[] cache;
+
+  public TextLayout(GString text) {
+    this.text = text;
+    cache = new Lines[CACHED_WIDTHS];
+  }
+
+  public GString getText() {
+    return text;
+  }
+
+  /**
+   * Counts the lines of the text when it's wrapped to the given width, up to a
+   * limit. The text is only wrapped as far as the limit.
+   *
+   * @param width The width to wrap the text to.
+   * @param limit The greatest number of lines to count.
+   *
+   * @return The number of lines, or the limit if there are more lines than that.
+   *   There are no lines if the width is less than one.
+   */
+  public int getLineCount(
+    int width,
+    int limit)
+  {
+    if (width < 1 || limit < 1)
+      return 0;
+
+    Lines lines = getLines(width);
+    lines.wrapTo(limit);
+
+    return Math.min(
+      lines.count,
+      limit);
+  }
+
+  /**
+   * Gets the offset of the first glyph of a line of the text.
+   *
+   * @param width The width which the text is wrapped to.
+   * @param line The index of the line, which must be less than the number of lines
+   *   counted at this width.
+   *
+   * @return The offset of the line within the text.
+   *
+   * @see #getLineCount(int, int)
+   */
+  public int getLineStart(
+    int width,
+    int line)
+  {
+    return getLine(
+      width,
+      line).starts[line];
+  }
+
+  /**
+   * Gets the offset just past the last glyph of a line of the text.
+   *
+   * @param width The width which the text is wrapped to.
+   * @param line The index of the line, which must be less than the number of lines
+   *   counted at this width.
+   *
+   * @return The offset of the end of the line within the text.
+   */
+  public int getLineEnd(
+    int width,
+    int line)
+  {
+    return getLine(
+      width,
+      line).ends[line];
+  }
+
+  private Lines getLine(
+    int width,
+    int line)
+  {
+    Lines lines = getLines(width);
+    lines.wrapTo(line + 1);
+    if (line >= lines.count)
+      throw new IndexOutOfBoundsException("The text only has " + lines.count
+                                          + " lines at a width of " + width
+                                          + ".");
+
+    return lines;
+  }
+
+  /**
+   * Finds the breaks for the given width, moving them to the front of the cache, or
+   * begins finding them in place of the least recently used width.
+   */
+  private Lines getLines(int width) {
+    int found = CACHED_WIDTHS - 1;
+    for (int c = 0; c < CACHED_WIDTHS; c++) {
+      if (cache[c] == null || cache[c].width == width) {
+        found = c;
+        break;
+      }
+    }
+
+    Lines lines = cache[found];
+    if (lines == null || lines.width != width)
+      lines = new Lines(width);
+    System.arraycopy(
+      cache,
+      0,
+      cache,
+      1,
+      found);
+    cache[0] = lines;
+
+    return lines;
+  }
+
+  /**
+   * The lines of the text at one width, as far as it has been wrapped.
+   */
+  private final class Lines {
+    private final int width;
+
+    private int[] starts,
+      ends;
+    private int count;
+
+    /**
+     * The offset of the first glyph which hasn't been wrapped yet.
+     */
+    private int next;
+
+    private Lines(int width) {
+      this.width = width;
+      starts = new int[8];
+      ends = new int[8];
+    }
+
+    /**
+     * Wraps the text until there are at least the given number of lines, or the
+     * whole of the text has been wrapped. An empty text still has one (empty) line.
+     */
+    private void wrapTo(int lines) {
+      int length = text.length();
+      while (count < lines && (next < length || count == 0)) {
+        int end = text.findBreak(
+          next,
+          width);
+        if (count == starts.length) {
+          starts = Arrays.copyOf(
+            starts,
+            count * 2);
+          ends = Arrays.copyOf(
+            ends,
+            count * 2);
+        }
+        starts[count] = next;
+        ends[count++] = end;
+        next = text.skipBreak(end);
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands objects from a single producer to a single consumer without either of them
+ * ever waiting on the other. The producer owns the <i>back</i> slot, the consumer
+ * owns the <i>front</i> slot, and the <i>middle</i> slot holds the most recently
+ * published object. Publishing and acquiring are both a single atomic swap with the
+ * middle slot, so the consumer always sees a complete object and the producer never
+ * writes to an object the consumer may be reading.
+ *
+ * @param <T> The type of object which is handed off.
+ */
+final class TripleBuffer<T> {
+  /**
+   * Set on the middle index when it holds an object which the consumer has not yet
+   * acquired.
+   */
+  private static final int FRESH = 0x4;
+
+  private static final int INDEX = 0x3;
+
+  private final Object[] slots;
+
+  /**
+   * The index of the middle slot, and whether it has been published since the
+   * consumer last acquired it.
+   */
+  private final AtomicInteger middle;
+
+  /**
+   * These indices are each only touched by one side of the hand-off.
+   */
+  private int back,
+    front;
+
+  TripleBuffer() {
+    slots = new Object[3];
+    back = 0;
+    middle = new AtomicInteger(1);
+    front = 2;
+  }
+
+  /**
+   * Gets the object which the producer should write into next. (This may only be
+   * called by the producer.)
+   *
+   * @return The object in the back slot, or null if one has not been set.
+   */
+  @SuppressWarnings("unchecked")
+  T getBack() {
+    return (T)slots[back];
+  }
+
+  /**
+   * Replaces the object in the back slot; for example, when the object must be
+   * reallocated because it is no longer large enough. (This may only be called by
+   * the producer.)
+   *
+   * @param value The object to place in the back slot.
+   */
+  void setBack(T value) {
+    slots[back] = value;
+  }
+
+  /**
+   * Publishes the object in the back slot, making it available to the consumer, and
+   * takes the previous middle slot as the new back slot.
+   */
+  void publish() {
+    back = middle.getAndSet(back | FRESH) & INDEX;
+  }
+
+  /**
+   * Gets the most recently published object. (This may only be called by the
+   * consumer.) The same object is returned until something new is published.
+   *
+   * @return The most recently published object, or null if nothing has been
+   *   published.
+   */
+  @SuppressWarnings("unchecked")
+  T getFront() {
+    if ((middle.get() & FRESH) != 0)
+      front = middle.getAndSet(front) & INDEX;
+
+    return (T)slots[front];
+  }
+}
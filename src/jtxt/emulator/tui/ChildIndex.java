@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import java.util.List;
+
+import jtxt.emulator.Region;
+
+/**
+ * Indexes the children of a {@code Container} by where they are, so that the child
+ * at a location can be found without checking every child. The bounds of the
+ * container are divided into a uniform grid of buckets (about one for each child),
+ * and each bucket lists the children which overlap it, in the order they appear
+ * within the container. Finding the child at a location only checks the children
+ * in that location's bucket, and never allocates.
+ *
+ * <p>
+ * The buckets are stored as two flat arrays: the children of bucket <i>b</i> are
+ * the indices from {@code starts[b]} up to {@code starts[b + 1]} in {@code
+ * entries}.
+ * </p>
+ */
+final class ChildIndex {
+  private final int line,
+    position,
+    columns,
+    rows,
+    bucketWidth,
+    bucketHeight;
+
+  private final int[] starts,
+    entries;
+
+  ChildIndex(
+    Region bounds,
+    List<? extends Component> children)
+  {
+    int n = children.size(),
+      side = Math.max((int)Math.ceil(Math.sqrt(n)), 1),
+      width = Math.max(bounds.getWidth(), 1),
+      height = Math.max(bounds.getHeight(), 1);
+
+    line = bounds.start.line;
+    position = bounds.start.position;
+    bucketWidth = (width + side - 1) / side;
+    bucketHeight = (height + side - 1) / side;
+    columns = (width + bucketWidth - 1) / bucketWidth;
+    rows = (height + bucketHeight - 1) / bucketHeight;
+
+    /*
+     * Count the children in each bucket, turn the counts into offsets, and
+     * then fill in the entries. Children are visited in order, so each
+     * bucket lists its children in the order they appear in the container.
+     */
+    starts = new int[columns*rows + 1];
+    for (Component child : children)
+      visit(
+        child.getBounds(),
+        -1,
+        null);
+
+    for (int b = 0, offset = 0; b <= columns*rows; b++) {
+      int count = starts[b];
+      starts[b] = offset;
+      offset += count;
+    }
+
+    entries = new int[starts[columns*rows]];
+    int[] filled = new int[columns*rows];
+    for (int c = 0; c < n; c++)
+      visit(
+        children.get(c).getBounds(),
+        c,
+        filled);
+  }
+
+  /**
+   * Visits each bucket which the region overlaps, either counting the region
+   * (during the first pass) or adding the child to the bucket (during the second).
+   */
+  private void visit(
+    Region region,
+    int child,
+    int[] filled)
+  {
+    if (region == null)
+      return;
+
+    int firstColumn = Math.max(Math.floorDiv(region.start.position - position,
+                                             bucketWidth), 0),
+      lastColumn = Math.min(Math.floorDiv(region.end.position - 1 - position,
+                                          bucketWidth), columns - 1),
+      firstRow = Math.max(Math.floorDiv(region.start.line - line,
+                                        bucketHeight), 0),
+      lastRow = Math.min(Math.floorDiv(region.end.line - 1 - line,
+                                       bucketHeight), rows - 1);
+
+    for (int r = firstRow; r <= lastRow; r++) {
+      for (int c = firstColumn; c <= lastColumn; c++) {
+        int bucket = r*columns + c;
+        if (filled == null)
+          starts[bucket]++;
+        else
+          entries[starts[bucket] + filled[bucket]++] = child;
+      }
+    }
+  }
+
+  /**
+   * Finds the first child which contains the given location.
+   *
+   * @param line The line of the location.
+   * @param position The position of the location within the line.
+   * @param children The children of the container, which must not have changed
+   *   since this index was built.
+   *
+   * @return The index of the child, or -1 if no child contains the location.
+   */
+  int find(
+    int line,
+    int position,
+    List<? extends Component> children)
+  {
+    if (position < this.position || line < this.line)
+      return -1;
+
+    int column = (position - this.position) / bucketWidth,
+      row = (line - this.line) / bucketHeight;
+    if (column >= columns || row >= rows)
+      return -1;
+
+    int bucket = row*columns + column;
+    for (int e = starts[bucket]; e < starts[bucket + 1]; e++) {
+      Region bounds = children.get(entries[e]).getBounds();
+      if (bounds.contains(
+        line,
+        position))
+        return entries[e];
+    }
+
+    return -1;
+  }
+}
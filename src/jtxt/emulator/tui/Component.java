@@ -56,6 +56,19 @@ public abstract class Component {
 
   protected List<ComponentObserver> observers;
 
+  /**
+   * The container which this component has been added to, or null if it hasn't been
+   * added to one.
+   */
+  Container<?> parent;
+
+  /**
+   * Whether this component must be laid out again, even if its bounds haven't
+   * changed. When a component is invalid, so are all of its ancestors, so that a
+   * layout pass can skip any subtree which is still valid.
+   */
+  boolean layoutInvalid = true;
+
   protected Color foreground,
     background;
 
@@ -106,6 +119,38 @@ public abstract class Component {
     this.bounds = bounds;
     width = bounds.getWidth();
     height = bounds.getHeight();
+    layoutInvalid = false;
+  }
+
+  /**
+   * Marks this component, and each of the containers it belongs to, as needing to be
+   * laid out again. The layout is done before the next frame is drawn; only the
+   * containers which lead to this component are visited, and only the children whose
+   * bounds change (or which are invalid themselves) are given new bounds.
+   */
+  public void invalidateLayout() {
+    for (Component c = this; c != null && !c.layoutInvalid; c = c.parent)
+      c.layoutInvalid = true;
+  }
+
+  /**
+   * Determines whether this component has been laid out since it, or any component
+   * within it, was last invalidated.
+   *
+   * @see #invalidateLayout()
+   */
+  public boolean isLayoutValid() {
+    return !layoutInvalid;
+  }
+
+  /**
+   * Gets the container which this component has been added to.
+   *
+   * @return The parent of this component, or null if it hasn't been added to a
+   *   container.
+   */
+  public Container<?> getParent() {
+    return parent;
   }
 
   public void setBackground(
@@ -136,6 +181,33 @@ public abstract class Component {
     return parameters;
   }
 
+  /**
+   * Gets the size this component would like to have along the given axis, which a
+   * layout may use when it hasn't been told how large the component should be. By
+   * default, a component has no preferred size.
+   *
+   * @param axis The axis to measure along; the width is measured along {@code
+   *   Axis.X}, and the height along {@code Axis.Y}.
+   *
+   * @return The preferred size, in characters or lines.
+   */
+  public int getPreferredSize(Axis axis) {
+    return 0;
+  }
+
+  /**
+   * Changes the parameters that define how this component is placed within its
+   * parent container. The component is laid out again before the next frame.
+   *
+   * @param parameters The new layout parameters, which must be of the type that the
+   *   layout of this component's parent expects.
+   */
+  public void setLayoutParameters(Object parameters) {
+    this.parameters = parameters;
+    invalidateLayout();
+    update();
+  }
+
   public void registerObserver(ComponentObserver observer) {
     observers.add(observer);
   }
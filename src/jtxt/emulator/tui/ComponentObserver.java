@@ -20,4 +20,11 @@ package jtxt.emulator.tui;
  */
 public interface ComponentObserver {
   void update();
+
+  /**
+   * Called when a component is removed from the container which it belonged to.
+   *
+   * @param component The component which was removed.
+   */
+  default void removed(Component component) { }
 }
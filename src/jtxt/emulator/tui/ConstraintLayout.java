@@ -0,0 +1,218 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import jtxt.emulator.Region;
+import jtxt.emulator.tui.constraint.Constraint;
+import jtxt.emulator.tui.constraint.Expression;
+import jtxt.emulator.tui.constraint.Solver;
+import jtxt.emulator.tui.constraint.Strength;
+import jtxt.emulator.tui.constraint.Variable;
+
+/**
+ * A {@code Layout} which places components according to linear constraints between
+ * their edges and the edges of the container; for example, that one panel's right
+ * edge is one character left of another's left edge, or that a sidebar is at least
+ * twenty characters wide.
+ *
+ * <p>
+ * Each component is given a {@link Box} as its layout parameters, whose edges are
+ * variables that can be used in constraints, along with the edges of the {@link
+ * #getParentBox() parent}. The constraints are kept in an incremental {@code
+ * Solver}, and the edges of the parent are its edit variables, so when the
+ * container is resized the previous solution is repaired, rather than the system
+ * being solved again; likewise, adding or removing a constraint only updates the
+ * solution. Constraints which are added or removed after the container has been
+ * laid out take effect once the container is invalidated.
+ * </p>
+ *
+ * @see jtxt.emulator.tui.constraint.Solver
+ * @see Component#invalidateLayout()
+ */
+public class ConstraintLayout implements Layout {
+  private final Solver solver;
+  private final Box parent;
+
+  private Region parentBounds;
+
+  /**
+   * Whether the values of the variables are up to date with the solver.
+   */
+  private boolean solved;
+
+  public ConstraintLayout() {
+    solver = new Solver();
+    parent = new Box("parent");
+
+    solver.addEditVariable(
+      parent.left,
+      Strength.STRONG);
+    solver.addEditVariable(
+      parent.top,
+      Strength.STRONG);
+    solver.addEditVariable(
+      parent.width,
+      Strength.STRONG);
+    solver.addEditVariable(
+      parent.height,
+      Strength.STRONG);
+  }
+
+  /**
+   * Gets the box which stands for the bounds of the container. Its edges are set by
+   * the layout, so they should only be read in constraints.
+   */
+  public Box getParentBox() {
+    return parent;
+  }
+
+  /**
+   * Creates a box for a component within the container, which should be given to
+   * the component as its layout parameters. The box's width and height are
+   * constrained not to be negative.
+   *
+   * @param name The name of the box, which is used to name its variables.
+   */
+  public Box createBox(String name) {
+    Box box = new Box(name);
+    add(
+      box.width.atLeast(0),
+      box.height.atLeast(0));
+
+    return box;
+  }
+
+  /**
+   * Adds constraints to this layout.
+   *
+   * @throws jtxt.emulator.tui.constraint.UnsatisfiableConstraintException if a
+   *   required constraint conflicts with the required constraints already added.
+   */
+  public void add(Constraint... constraints) {
+    for (Constraint constraint : constraints)
+      solver.addConstraint(constraint);
+    solved = false;
+  }
+
+  public void remove(Constraint... constraints) {
+    for (Constraint constraint : constraints)
+      solver.removeConstraint(constraint);
+    solved = false;
+  }
+
+  @Override
+  public void setParentBounds(Region parentBounds) {
+    if (!parentBounds.equals(this.parentBounds)) {
+      this.parentBounds = parentBounds;
+
+      solver.suggestValue(
+        parent.left,
+        parentBounds.start.position);
+      solver.suggestValue(
+        parent.top,
+        parentBounds.start.line);
+      solver.suggestValue(
+        parent.width,
+        parentBounds.getWidth());
+      solver.suggestValue(
+        parent.height,
+        parentBounds.getHeight());
+      solved = false;
+    }
+
+    if (!solved) {
+      solver.updateVariables();
+      solved = true;
+    }
+  }
+
+  @Override
+  public Region getBounds(Object params) {
+    if (!(params instanceof Box))
+      throw new IllegalArgumentException("Layout parameters must be " +
+                                         "of an appropriate type.");
+
+    return ((Box)params).toRegion();
+  }
+
+  /**
+   * The edges of a rectangle within the container, whose positions are found by the
+   * layout's solver. Each edge is rounded to the nearest character, so boxes which
+   * share an edge never overlap.
+   */
+  public static final class Box {
+    private final Variable left,
+      top,
+      width,
+      height;
+
+    private Box(String name) {
+      left = new Variable(name + ".left");
+      top = new Variable(name + ".top");
+      width = new Variable(name + ".width");
+      height = new Variable(name + ".height");
+    }
+
+    public Variable left() {
+      return left;
+    }
+
+    public Variable top() {
+      return top;
+    }
+
+    public Variable width() {
+      return width;
+    }
+
+    public Variable height() {
+      return height;
+    }
+
+    public Expression right() {
+      return left.plus(width);
+    }
+
+    public Expression bottom() {
+      return top.plus(height);
+    }
+
+    public Expression centerX() {
+      return left.plus(width.times(0.5));
+    }
+
+    public Expression centerY() {
+      return top.plus(height.times(0.5));
+    }
+
+    private Region toRegion() {
+      int startPosition = (int)Math.round(left.getValue()),
+        startLine = (int)Math.round(top.getValue()),
+        endPosition = (int)Math.round(left.getValue() + width.getValue()),
+        endLine = (int)Math.round(top.getValue() + height.getValue());
+
+      return new Region(
+        startLine,
+        startPosition,
+        Math.max(
+          endLine,
+          startLine),
+        Math.max(
+          endPosition,
+          startPosition));
+    }
+  }
+}
@@ -56,6 +56,17 @@ public class Container<T extends Component>
    */
   protected Layout layout;
 
+  /**
+   * The number of children a container must have before hit-testing uses an index,
+   * rather than checking each child in turn.
+   */
+  private static final int INDEX_THRESHOLD = 16;
+
+  /**
+   * The index of the children by their bounds, or null if it must be rebuilt.
+   */
+  private ChildIndex index;
+
   @SafeVarargs
   public Container(
     Object parameters,
@@ -87,41 +98,156 @@ public class Container<T extends Component>
    * Adds the component to this container, using the inflated properties of that
    * component to determine the bounds it may occupy within this container.
    *
+   * <p>
+   * The children aren't laid out as they're added; the layout of this container is
+   * invalidated instead, and done once before the next frame is drawn (or when this
+   * container's bounds are next set). Adding many children one at a time therefore
+   * only lays this container out once.
+   * </p>
+   *
    * @param children The components to add to this container.
    */
   @SuppressWarnings("unchecked")
   public void add(T... children) {
+    index = null;
     for (T child : children) {
       this.children.add(child);
-      layout.setComponentBounds(child);
+      child.parent = this;
       child.setBackground(background);
 
       for (ComponentObserver co : observers)
         child.registerObserver(co);
     }
 
+    /*
+     * Adding or removing a child may move its siblings (for example, in a
+     * FlexLayout or GridLayout), so the container is laid out again before it's
+     * next drawn; siblings whose bounds don't change are left alone.
+     */
+    invalidateLayout();
+    update();
+  }
+
+  /**
+   * Removes the components from this container, and notifies the observers of this
+   * container that they have been removed. The remaining children are laid out
+   * again before the next frame, as they are when children are added.
+   *
+   * @param children The components to remove from this container.
+   */
+  @SuppressWarnings("unchecked")
+  public void remove(T... children) {
+    index = null;
+    for (T child : children) {
+      if (!this.children.remove(child))
+        continue;
+      child.parent = null;
+
+      for (ComponentObserver co : observers)
+        co.removed(child);
+    }
+
+    invalidateLayout();
     update();
   }
 
+  /**
+   * Registers the observer with this container and each of its children, so that
+   * components which were added before this container was given to a terminal are
+   * observed as well.
+   */
+  @Override
+  public void registerObserver(ComponentObserver observer) {
+    super.registerObserver(observer);
+
+    for (T child : children)
+      child.registerObserver(observer);
+  }
+
   T getChild(int index) {
     return children.get(index);
   }
 
   public Component getComponentAt(Location location) {
-    for (Component child : children) {
-      if (location.inside(child.getBounds())) {
-        if (child instanceof Container)
-          return ((Container<?>)child).getComponentAt(location);
+    return getComponentAt(
+      location.line,
+      location.position);
+  }
 
-        return child;
-      }
-    }
+  /**
+   * Finds the innermost component which contains the given location. This doesn't
+   * allocate, so it may be called for every mouse event.
+   *
+   * @param line The line of the location.
+   * @param position The position of the location within the line.
+   *
+   * @return The component at the location, this container if none of its children
+   *   are at the location, or null if the location is outside of this container.
+   */
+  public Component getComponentAt(
+    int line,
+    int position)
+  {
+    Component child = getChildAt(
+      line,
+      position);
+    if (child instanceof Container)
+      return ((Container<?>)child).getComponentAt(
+        line,
+        position);
+    if (child != null)
+      return child;
 
-    return location.inside(bounds)
+    return bounds != null && bounds.contains(
+      line,
+      position)
       ? this
       : null;
   }
 
+  /**
+   * Finds the first child of this container which contains the given location.
+   * Containers with many children use a {@code ChildIndex}, which is rebuilt the
+   * first time it's needed after the children or their bounds have changed. The
+   * index only covers this container's bounds, so a location outside of them is
+   * checked against each child, in case a child overflows this container.
+   */
+  private T getChildAt(
+    int line,
+    int position)
+  {
+    if (children.size() < INDEX_THRESHOLD
+        || bounds == null
+        || !bounds.contains(
+          line,
+          position))
+    {
+      for (T child : children) {
+        Region bounds = child.getBounds();
+        if (bounds != null && bounds.contains(
+          line,
+          position))
+          return child;
+      }
+
+      return null;
+    }
+
+    if (index == null)
+      index = new ChildIndex(
+        bounds,
+        children);
+
+    int found = index.find(
+      line,
+      position,
+      children);
+
+    return found < 0
+      ? null
+      : children.get(found);
+  }
+
   /**
    * Returns the components in this container in the order defined by the layout that
    * has been set.
@@ -205,11 +331,22 @@ public class Container<T extends Component>
       child.draw(buffer);
   }
 
+  /**
+   * Sets the bounds of this container, and lays out its children within them. The
+   * layout is skipped entirely if the bounds are the same as those it was last done
+   * against, and nothing within this container has been invalidated since.
+   */
   @Override
   public void setBounds(Region bounds) {
+    if (!layoutInvalid && bounds.equals(this.bounds))
+      return;
+
     super.setBounds(bounds);
+    index = null;
 
     layout.setParentBounds(bounds);
-    children.stream().forEach(layout::setComponentBounds);
+    layout.measure(children);
+    for (T child : children)
+      layout.setComponentBounds(child);
   }
 }
@@ -0,0 +1,34 @@
+package jtxt.emulator.tui;
+
+import jtxt.emulator.Location;
+
+/**
+ * A {@code Component} which implements this interface receives the movements of the
+ * mouse while a button is held, when the button was pressed within its bounds. The
+ * component continues to receive these movements until the button is released,
+ * even if the mouse leaves its bounds. Movements are coalesced, so a component
+ * receives at most one notification per frame, for the latest location of the
+ * mouse.
+ *
+ * @see Interactable
+ */
+public interface Draggable {
+  /**
+   * Called whenever the mouse is dragged to a new location.
+   *
+   * @param start The location at which the button was pressed.
+   * @param location The location within the terminal which the mouse is now over.
+   *   This may be outside of the bounds of this component.
+   */
+  void dragged(
+    Location start,
+    Location location);
+
+  /**
+   * Called once the button is released, after the last movement of the drag has
+   * been delivered.
+   *
+   * @param location The location at which the button was released.
+   */
+  default void released(Location location) { }
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jtxt.emulator.Region;
+
+/**
+ * A {@code Layout} which places components in a single row or column, and divides
+ * the space along that axis between them in the manner of CSS's flexbox: each
+ * component starts from its basis size, and then grows (or shrinks) by its share of
+ * the space which is left over (or lacking), within its minimum and maximum sizes.
+ * The components may be separated by a gap, spread along the main axis, and aligned
+ * or stretched along the cross axis.
+ *
+ * <p>
+ * The layout is done in two passes. When the container is laid out, every child is
+ * first measured, and the sizes along the main axis are resolved; the bounds which
+ * were resolved are then handed to each child in turn. The basis and preferred
+ * cross size of each child are cached between passes, and only measured again when
+ * the child is replaced, its parameters change, or it has been invalidated, so a
+ * pass over a container with thousands of children is just a few walks of a set of
+ * arrays. Fractional sizes are rounded so that the edges of adjacent components
+ * never overlap, and the space which is divided is never more or less than the
+ * space available.
+ * </p>
+ *
+ * @see FlexParameters
+ */
+public class FlexLayout implements Layout {
+  /**
+   * How the components are spread along the main axis when they don't fill it.
+   */
+  public enum Justify
+    { START
+    , END
+    , CENTER
+    , SPACE_BETWEEN
+    , SPACE_AROUND
+    , SPACE_EVENLY };
+
+  /**
+   * How a component is placed along the cross axis.
+   */
+  public enum Align
+    { START
+    , END
+    , CENTER
+    , STRETCH };
+
+  /**
+   * The axis along which the components are placed, one after another.
+   */
+  private final Axis direction;
+
+  private final int gap;
+  private final Justify justify;
+  private final Align align;
+
+  private Region parentBounds;
+
+  /*
+   * The state of each child, by its index within the container. These arrays
+   * are reused between passes, and only grow.
+   */
+  private Component[] measured;
+  private FlexParameters[] parameters;
+  private int[] bases,
+    crossSizes;
+  private double[] sizes;
+  private boolean[] frozen;
+  private Region[] regions;
+
+  /**
+   * The number of children which were measured, and the index of the child which
+   * will be given its bounds next.
+   */
+  private int count,
+    next;
+
+  /**
+   * Creates a layout which places components along the given axis, at the start of
+   * the container, and stretches them to fill the cross axis.
+   *
+   * @param direction The axis along which components are placed.
+   */
+  public FlexLayout(Axis direction) {
+    this(
+      direction,
+      0,
+      Justify.START,
+      Align.STRETCH);
+  }
+
+  /**
+   * @param direction The axis along which components are placed.
+   * @param gap The number of characters (or lines) between adjacent components.
+   * @param justify How the components are spread along the main axis.
+   * @param align How components are placed along the cross axis, unless they
+   *   specify otherwise.
+   */
+  public FlexLayout(
+    Axis direction,
+    int gap,
+    Justify justify,
+    Align align)
+  {
+    if (gap < 0)
+      throw new IllegalArgumentException("The gap must not be negative.");
+
+    this.direction = direction;
+    this.gap = gap;
+    this.justify = justify;
+    this.align = align;
+
+    measured = new Component[0];
+    parameters = new FlexParameters[0];
+    bases = new int[0];
+    crossSizes = new int[0];
+    sizes = new double[0];
+    frozen = new boolean[0];
+    regions = new Region[0];
+  }
+
+  @Override
+  public void setParentBounds(Region parentBounds) {
+    this.parentBounds = parentBounds;
+  }
+
+  @Override
+  public void measure(List<? extends Component> children) {
+    count = children.size();
+    next = 0;
+    ensureCapacity(count);
+
+    Axis cross = direction == Axis.X
+      ? Axis.Y
+      : Axis.X;
+    for (int c = 0; c < count; c++) {
+      Component child = children.get(c);
+      Object params = child.getLayoutParameters();
+      if (!(params instanceof FlexParameters))
+        throw new IllegalArgumentException("Layout parameters must be " +
+                                           "of an appropriate type.");
+
+      FlexParameters fp = (FlexParameters)params;
+      if (measured[c] == child && parameters[c] == fp && child.isLayoutValid())
+        continue;
+
+      measured[c] = child;
+      parameters[c] = fp;
+      bases[c] = (int)fp.clamp(fp.basis == FlexParameters.AUTO
+        ? child.getPreferredSize(direction)
+        : fp.basis);
+      crossSizes[c] = fp.crossSize == FlexParameters.AUTO
+        ? child.getPreferredSize(cross)
+        : fp.crossSize;
+    }
+
+    /*
+     * Forget the children which were removed, so that they can be collected.
+     */
+    Arrays.fill(
+      measured,
+      count,
+      measured.length,
+      null);
+
+    resolve();
+    arrange();
+  }
+
+  /**
+   * Resolves the size of each child along the main axis. Every child which can flex
+   * is given its share of the free space; any which would then be smaller than its
+   * minimum or larger than its maximum are clamped and frozen, and the space is
+   * shared again between the rest. Almost every container is resolved in one or two
+   * rounds.
+   */
+  private void resolve() {
+    int available = mainSize(parentBounds) - gap*Math.max(count - 1, 0);
+
+    long used = 0;
+    for (int c = 0; c < count; c++)
+      used += bases[c];
+    boolean growing = used < available;
+
+    for (int c = 0; c < count; c++) {
+      FlexParameters fp = parameters[c];
+      sizes[c] = bases[c];
+      frozen[c] = growing
+        ? fp.grow == 0 || bases[c] >= fp.max
+        : fp.shrink == 0 || bases[c] <= fp.min;
+    }
+
+    while (true) {
+      double remaining = available,
+        factors = 0;
+      for (int c = 0; c < count; c++) {
+        if (frozen[c]) {
+          remaining -= sizes[c];
+          continue;
+        }
+
+        remaining -= bases[c];
+        factors += growing
+          ? parameters[c].grow
+          : parameters[c].shrink * bases[c];
+      }
+      if (factors == 0)
+        return;
+
+      double violation = 0;
+      for (int c = 0; c < count; c++) {
+        if (frozen[c])
+          continue;
+
+        FlexParameters fp = parameters[c];
+        double share = growing
+          ? fp.grow / factors
+          : fp.shrink * bases[c] / factors,
+          target = bases[c] + remaining*share;
+
+        sizes[c] = fp.clamp(target);
+        violation += sizes[c] - target;
+      }
+      if (violation == 0)
+        return;
+
+      /*
+       * If the clamped sizes add up to more than the space, the children which
+       * were held at their minimums keep them, and the rest share what's left;
+       * if they add up to less, it's the children held at their maximums.
+       */
+      for (int c = 0; c < count; c++) {
+        if (frozen[c])
+          continue;
+
+        FlexParameters fp = parameters[c];
+        if (violation > 0
+            ? sizes[c] == fp.min
+            : sizes[c] == fp.max)
+          frozen[c] = true;
+      }
+    }
+  }
+
+  /**
+   * Places each child along both axes, rounding the edges of the children so that
+   * adjacent children never overlap.
+   */
+  private void arrange() {
+    double total = gap*Math.max(count - 1, 0);
+    for (int c = 0; c < count; c++)
+      total += sizes[c];
+
+    double free = Math.max(
+      mainSize(parentBounds) - total,
+      0),
+      offset = 0,
+      between = 0;
+    switch (justify) {
+    case END:
+      offset = free;
+      break;
+    case CENTER:
+      offset = free / 2;
+      break;
+    case SPACE_BETWEEN:
+      between = count > 1
+        ? free / (count - 1)
+        : 0;
+      break;
+    case SPACE_AROUND:
+      between = count > 0
+        ? free / count
+        : 0;
+      offset = between / 2;
+      break;
+    case SPACE_EVENLY:
+      between = free / (count + 1);
+      offset = between;
+      break;
+    default:
+      break;
+    }
+
+    boolean horizontal = direction == Axis.X;
+    int line = parentBounds.start.line,
+      position = parentBounds.start.position,
+      crossSpace = horizontal
+        ? parentBounds.getHeight()
+        : parentBounds.getWidth();
+
+    double cursor = offset;
+    for (int c = 0; c < count; c++) {
+      int start = (int)Math.round(cursor);
+      cursor += sizes[c];
+      int end = (int)Math.round(cursor);
+      cursor += gap + between;
+
+      FlexParameters fp = parameters[c];
+      Align self = fp.alignSelf == null
+        ? align
+        : fp.alignSelf;
+      int crossSize = self == Align.STRETCH && fp.crossSize == FlexParameters.AUTO
+        ? crossSpace
+        : Math.min(
+          crossSizes[c],
+          crossSpace),
+        crossStart;
+      switch (self) {
+      case END:
+        crossStart = crossSpace - crossSize;
+        break;
+      case CENTER:
+        crossStart = (crossSpace - crossSize) / 2;
+        break;
+      default:
+        crossStart = 0;
+        break;
+      }
+
+      regions[c] = horizontal
+        ? new Region(
+          line + crossStart,
+          position + start,
+          line + crossStart + crossSize,
+          position + end)
+        : new Region(
+          line + start,
+          position + crossStart,
+          line + end,
+          position + crossStart + crossSize);
+    }
+  }
+
+  /**
+   * Gets the bounds which were resolved for the next child. This must be called for
+   * each child in turn, after the children have been measured.
+   */
+  @Override
+  public Region getBounds(Object params) {
+    if (!(params instanceof FlexParameters))
+      throw new IllegalArgumentException("Layout parameters must be " +
+                                         "of an appropriate type.");
+    if (next >= count)
+      throw new IllegalStateException("The children of the container " +
+                                      "haven't been measured.");
+
+    return regions[next++];
+  }
+
+  private int mainSize(Region bounds) {
+    return direction == Axis.X
+      ? bounds.getWidth()
+      : bounds.getHeight();
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= measured.length)
+      return;
+
+    int length = Math.max(
+      capacity,
+      measured.length*2);
+    measured = Arrays.copyOf(
+      measured,
+      length);
+    parameters = Arrays.copyOf(
+      parameters,
+      length);
+    bases = Arrays.copyOf(
+      bases,
+      length);
+    crossSizes = Arrays.copyOf(
+      crossSizes,
+      length);
+    sizes = new double[length];
+    frozen = new boolean[length];
+    regions = new Region[length];
+  }
+
+  /**
+   * The parameters which describe how a component flexes within a {@code
+   * FlexLayout}. Sizes are along the layout's main axis, except for the cross size.
+   */
+  public static class FlexParameters {
+    /**
+     * Indicates that a size should be taken from the component's preferred size.
+     *
+     * @see Component#getPreferredSize(Axis)
+     */
+    public static final int AUTO = -1;
+
+    protected final double grow,
+      shrink;
+    protected final int basis,
+      min,
+      max,
+      crossSize;
+    protected final Align alignSelf;
+
+    /**
+     * @param grow The share of any free space which this component takes, relative
+     *   to the other components; zero if it shouldn't grow.
+     * @param shrink How much this component gives up when there isn't enough space,
+     *   relative to the other components (and weighted by its basis); zero if it
+     *   shouldn't shrink.
+     * @param basis The size of this component before it grows or shrinks, or {@link
+     *   #AUTO} to use its preferred size.
+     */
+    public FlexParameters(
+      double grow,
+      double shrink,
+      int basis)
+    {
+      this(
+        grow,
+        shrink,
+        basis,
+        0,
+        Integer.MAX_VALUE,
+        AUTO,
+        null);
+    }
+
+    /**
+     * @param grow The share of any free space which this component takes.
+     * @param shrink How much this component gives up when there isn't enough space.
+     * @param basis The size of this component before it grows or shrinks, or {@link
+     *   #AUTO}.
+     * @param min The smallest size this component may be given.
+     * @param max The largest size this component may be given.
+     * @param crossSize The size of this component along the cross axis, or {@link
+     *   #AUTO} to stretch it (or use its preferred size, if it isn't stretched).
+     * @param alignSelf How to place this component along the cross axis, or null to
+     *   use the layout's alignment.
+     */
+    public FlexParameters(
+      double grow,
+      double shrink,
+      int basis,
+      int min,
+      int max,
+      int crossSize,
+      Align alignSelf)
+    {
+      if (grow < 0 || shrink < 0)
+        throw new IllegalArgumentException("The grow and shrink factors " +
+                                           "must not be negative.");
+      if (min < 0 || max < min)
+        throw new IllegalArgumentException("The minimum size must not be " +
+                                           "negative, or larger than the " +
+                                           "maximum size.");
+
+      this.grow = grow;
+      this.shrink = shrink;
+      this.basis = basis;
+      this.min = min;
+      this.max = max;
+      this.crossSize = crossSize;
+      this.alignSelf = alignSelf;
+    }
+
+    /**
+     * Creates parameters for a component which is always the given size.
+     */
+    public static FlexParameters fixed(int size) {
+      return new FlexParameters(
+        0,
+        0,
+        size);
+    }
+
+    /**
+     * Creates parameters for a component which takes the given share of the space,
+     * starting from nothing.
+     */
+    public static FlexParameters flex(double grow) {
+      return new FlexParameters(
+        grow,
+        1,
+        0);
+    }
+
+    private double clamp(double size) {
+      return Math.max(
+        Math.min(
+          size,
+          max),
+        min);
+    }
+  }
+}
@@ -20,13 +20,54 @@ import java.util.Arrays;
 import jtxt.emulator.Location;
 import jtxt.emulator.Region;
 
+/**
+ * A {@code Layout} which divides its container into rows, and each row into cells.
+ * Each row may have a different number of cells, and a component may occupy a
+ * single cell or a rectangular range of them.
+ *
+ * <p>
+ * The rows, and the cells within each row, are tracks which are either a fixed
+ * size, or share the space which the fixed tracks leave over in proportion to their
+ * weights. (By default, every track has a weight of one, so the space is split
+ * evenly.) The edges of the tracks are calculated once for each size of the
+ * container, and kept as running totals, so that the bounds of any range of cells
+ * are found in constant time, and the cell at a location is found with a binary
+ * search. The edges are rounded from their exact positions, so the space left over
+ * by a division which isn't exact is spread across the tracks rather than lost at
+ * the end. Tracks which are changed after the container has been laid out take
+ * effect once the container is invalidated.
+ * </p>
+ *
+ * @see Component#invalidateLayout()
+ */
 public class GridLayout implements Layout {
   /**
-   * All of the {@code Cell}s which {@code Component}s can occupy within this
-   * instance of the layout. See the constructor for more details about how the
-   * dimensions of this array are calculated.
+   * The tracks of each row, and of the cells within each row.
+   */
+  private final Track[] rows;
+  private final Track[][] columns;
+
+  /**
+   * The line on which each row starts, followed by the line on which the last row
+   * ends; and for each row, the position at which each cell starts, followed by the
+   * position at which the last cell ends.
+   */
+  private final int[] rowEdges;
+  private final int[][] columnEdges;
+
+  /**
+   * The pass in which each cell was last claimed by a component. A cell is free if
+   * it hasn't been claimed in the current pass, so the cells don't need to be
+   * cleared at the start of each pass.
+   */
+  private final int[][] claims;
+  private int pass;
+
+  /**
+   * The bounds which the edges were last calculated for, or null if they must be
+   * calculated again.
    */
-  private Cell[][] cells;
+  private Region bounds;
 
   /**
    * Construct a new {@code GridLayout} with the given dimensions for each of the
@@ -36,38 +77,163 @@ public class GridLayout implements Layout {
    *   and where the number of rows is determined by the length of this array.
    */
   public GridLayout(int... dimensions) {
-    cells = new Cell[dimensions.length][];
-    for (int i = 0; i < cells.length; i++) {
-      cells[i] = new Cell[dimensions[i]];
+    rows = new Track[dimensions.length];
+    Arrays.fill(
+      rows,
+      Track.DEFAULT);
+    rowEdges = new int[rows.length + 1];
 
-      for (int j = 0; j < dimensions[i]; j++)
-        cells[i][j] = new Cell();
+    columns = new Track[rows.length][];
+    columnEdges = new int[rows.length][];
+    claims = new int[rows.length][];
+    for (int r = 0; r < rows.length; r++) {
+      columns[r] = new Track[dimensions[r]];
+      Arrays.fill(
+        columns[r],
+        Track.DEFAULT);
+      columnEdges[r] = new int[dimensions[r] + 1];
+      claims[r] = new int[dimensions[r]];
     }
   }
 
+  /**
+   * Sets the sizes of the rows of this layout. The layout doesn't know which
+   * container it belongs to, so if that container has already been laid out, its
+   * {@link Component#invalidateLayout()} must be called for the new rows to apply.
+   *
+   * @param tracks The track of each row, from the top.
+   *
+   * @throws IllegalArgumentException if the number of tracks doesn't match the
+   *   number of rows.
+   */
+  public void setRows(Track... tracks) {
+    if (tracks.length != rows.length)
+      throw new IllegalArgumentException("There must be a track for " +
+                                         "each row.");
+
+    System.arraycopy(
+      tracks,
+      0,
+      rows,
+      0,
+      tracks.length);
+    bounds = null;
+  }
+
+  /**
+   * Sets the sizes of the cells within a row of this layout. As with {@link
+   * #setRows(Track...)}, the container must be invalidated for the new cells to
+   * apply if it has already been laid out.
+   *
+   * @param row The row whose cells are being sized.
+   * @param tracks The track of each cell within the row, from the left.
+   *
+   * @throws IllegalArgumentException if the number of tracks doesn't match the
+   *   number of cells in the row.
+   */
+  public void setColumns(
+    int row,
+    Track... tracks)
+  {
+    if (tracks.length != columns[row].length)
+      throw new IllegalArgumentException("There must be a track for " +
+                                         "each cell in the row.");
+
+    System.arraycopy(
+      tracks,
+      0,
+      columns[row],
+      0,
+      tracks.length);
+    bounds = null;
+  }
+
+  /**
+   * Sets the sizes of the cells within every row of this layout, which must each
+   * have the same number of cells.
+   *
+   * @param tracks The track of each cell within a row, from the left.
+   */
+  public void setColumns(Track... tracks) {
+    for (int r = 0; r < rows.length; r++)
+      setColumns(
+        r,
+        tracks);
+  }
+
+  /**
+   * Calculates the edges of the rows and cells within the parent's bounds. The edges
+   * are only calculated again when the parent's bounds (or the tracks) have changed;
+   * otherwise, the cells are just freed, so that they can be claimed again by the
+   * components being laid out.
+   */
   @Override
   public void setParentBounds(Region bounds) {
-    Location current = bounds.getStart();
-    int height = bounds.getHeight() / cells.length;
+    pass++;
+    if (bounds.equals(this.bounds))
+      return;
 
-    for (int r = 0; r < cells.length; r++) {
-      int width = bounds.getWidth() / cells[r].length;
+    this.bounds = bounds;
+    distribute(
+      rows,
+      bounds.start.line,
+      bounds.getHeight(),
+      rowEdges);
+    for (int r = 0; r < rows.length; r++)
+      distribute(
+        columns[r],
+        bounds.start.position,
+        bounds.getWidth(),
+        columnEdges[r]);
+  }
 
-      for (int c = 0; c < cells[r].length; c++) {
-        Cell cell = cells[r][c];
-        cell.setBounds(Region.fromLocation(
-          current,
-          width,
-          height));
-        cell.occupied = false;
+  /**
+   * Calculates the edges of a sequence of tracks. The fixed tracks are given their
+   * sizes first, and the space which remains is shared between the weighted tracks.
+   * Each edge is rounded from the exact running total, so the tracks never add up to
+   * more or less than the space available (unless the fixed tracks alone don't
+   * fit, in which case the tracks are cut off at the end of the space).
+   *
+   * @param tracks The tracks to lay out.
+   * @param start The line or position at which the first track starts.
+   * @param length The space available to the tracks.
+   * @param edges Receives the start of each track, followed by the end of the last.
+   */
+  private static void distribute(
+    Track[] tracks,
+    int start,
+    int length,
+    int[] edges)
+  {
+    long fixed = 0;
+    double weights = 0;
+    for (Track track : tracks) {
+      if (track.size >= 0)
+        fixed += track.size;
+      else
+        weights += track.weight;
+    }
 
-        current.advanceForward(width);
-      }
+    double flexible = Math.max(
+      length - fixed,
+      0),
+      exact = 0;
+    int end = start + length;
+    for (int t = 0; t < tracks.length; t++) {
+      edges[t] = (int)Math.min(
+        start + Math.round(exact),
+        end);
 
-      current = new Location(
-        current.line+height,
-        bounds.start.position);
+      Track track = tracks[t];
+      exact += track.size >= 0
+        ? track.size
+        : weights == 0
+          ? 0
+          : flexible * track.weight / weights;
     }
+    edges[tracks.length] = (int)Math.min(
+      start + Math.round(exact),
+      end);
   }
 
   /**
@@ -120,11 +286,98 @@ public class GridLayout implements Layout {
   }
 
   /**
-   * The parameters which describe the {@code Cell}s which a {@code Component} should
-   * occupy within this layout.
+   * Finds the row which contains the given line.
+   *
+   * @param line A line within the parent container.
+   *
+   * @return The index of the row, or -1 if the line is outside of the container (or
+   *   the container hasn't been laid out).
+   */
+  public int getRowAt(int line) {
+    return bounds == null
+      ? -1
+      : search(
+        rowEdges,
+        line);
+  }
+
+  /**
+   * Finds the cell within a row which contains the given position.
+   *
+   * @param row The index of the row.
+   * @param position A position within the parent container.
+   *
+   * @return The index of the cell within the row, or -1 if the position is outside
+   *   of the container (or the container hasn't been laid out).
+   */
+  public int getColumnAt(
+    int row,
+    int position)
+  {
+    return bounds == null
+      ? -1
+      : search(
+        columnEdges[row],
+        position);
+  }
+
+  /**
+   * Creates the parameters for the single cell which contains the given location.
+   *
+   * @param location A location within the parent container.
+   *
+   * @return The parameters of the cell at the location, or null if there is no cell
+   *   there.
+   */
+  public GridParameters getParametersForCellAt(Location location) {
+    int row = getRowAt(location.line);
+    if (row < 0)
+      return null;
+
+    int column = getColumnAt(
+      row,
+      location.position);
+    if (column < 0)
+      return null;
+
+    return getParametersForCell(
+      row,
+      column);
+  }
+
+  /**
+   * Finds the track which contains a value, given the edges of the tracks. Tracks
+   * which are empty are skipped, as they can't contain anything.
+   *
+   * @return The index of the last track which starts at or before the value, or -1
+   *   if the value is outside of every track.
+   */
+  private static int search(
+    int[] edges,
+    int value)
+  {
+    int last = edges.length - 1;
+    if (last == 0 || value < edges[0] || value >= edges[last])
+      return -1;
+
+    int low = 0,
+      high = last - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (edges[middle] <= value)
+        low = middle;
+      else
+        high = middle - 1;
+    }
+
+    return low;
+  }
+
+  /**
+   * The parameters which describe the cells which a {@code Component} should occupy
+   * within this layout.
    */
   public class GridParameters {
-    protected final Cell first, last;
     private final int sr,
       sc,
       er,
@@ -136,25 +389,34 @@ public class GridLayout implements Layout {
       int er,
       int ec)
     {
+      if (sr < 0 || sr > er || er >= rows.length
+          || sc < 0 || sc >= columns[sr].length
+          || ec < 0 || ec >= columns[er].length)
+        throw new IllegalArgumentException("The range of cells is outside " +
+                                           "of the layout.");
+
       this.sr = sr;
       this.sc = sc;
       this.er = er;
       this.ec = ec;
-
-      first = cells[sr][sc];
-      last = cells[er][ec];
     }
   }
 
-  private void enableCells(GridParameters params) {
-    for (int r = params.sr; r < cells.length && r < params.er; r++) {
-      for (int c = params.sc; c < cells[r].length && c < params.ec; c++) {
-        Cell cell = cells[r][c];
-        if (cell.occupied)
+  /**
+   * Claims the cells within a range for a component, for the current pass.
+   *
+   * @throws IllegalArgumentException if any of the cells have already been claimed
+   *   by another component.
+   */
+  private void claimCells(GridParameters params) {
+    for (int r = params.sr; r <= params.er; r++) {
+      int[] row = claims[r];
+      for (int c = params.sc; c <= params.ec && c < row.length; c++) {
+        if (row[c] == pass)
           throw new IllegalArgumentException("Cells are already " +
                                              "occupied.");
 
-        cell.occupied = true;
+        row[c] = pass;
       }
     }
   }
@@ -165,17 +427,14 @@ public class GridLayout implements Layout {
       throw new IllegalArgumentException("Layout parameters must be " +
                                          "of an appropriate type.");
 
-    GridParameters gp;
-    Cell f, l;
-
-    gp = (GridParameters)params;
-    enableCells(gp);
-    f = gp.first;
-    l = gp.last;
+    GridParameters gp = (GridParameters)params;
+    claimCells(gp);
 
     return new Region(
-      f.bounds.start,
-      l.bounds.end);
+      rowEdges[gp.sr],
+      columnEdges[gp.sr][gp.sc],
+      rowEdges[gp.er + 1],
+      columnEdges[gp.er][gp.ec + 1]);
   }
 
   public static GridLayout initializeForDimensions(
@@ -191,23 +450,54 @@ public class GridLayout implements Layout {
   }
 
   /**
-   * A region within this layout which a given component can request to occupy,
-   * unless the {@code Cell} is already occupied by another component.
+   * The size of a row, or of a cell within a row, which is either fixed or a share
+   * of the space which the fixed tracks leave over.
    */
-  protected static class Cell {
+  public static final class Track {
     /**
-     * The bounds within this layout's parent container that this cell occupies.
+     * The track which every row and cell has until it's given another.
      */
-    Region bounds;
+    static final Track DEFAULT = weight(1);
+
+    /**
+     * The size of this track, or -1 if this track is weighted.
+     */
+    private final int size;
+    private final double weight;
+
+    private Track(
+      int size,
+      double weight)
+    {
+      this.size = size;
+      this.weight = weight;
+    }
+
+    /**
+     * Creates a track which is always the given number of characters (or lines).
+     */
+    public static Track fixed(int size) {
+      if (size < 0)
+        throw new IllegalArgumentException("The size of a track must not " +
+                                           "be negative.");
+
+      return new Track(
+        size,
+        0);
+    }
 
     /**
-     * Whether this {@code Cell} is already occupied by another component within this
-     * layout.
+     * Creates a track which takes a share of the space left over by the fixed tracks,
+     * in proportion to its weight relative to the other weighted tracks.
      */
-    boolean occupied;
+    public static Track weight(double weight) {
+      if (weight < 0)
+        throw new IllegalArgumentException("The weight of a track must not " +
+                                           "be negative.");
 
-    private void setBounds(Region bounds) {
-      this.bounds = bounds;
+      return new Track(
+        -1,
+        weight);
     }
   }
 }
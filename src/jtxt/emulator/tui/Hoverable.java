@@ -0,0 +1,26 @@
+package jtxt.emulator.tui;
+
+import jtxt.emulator.Location;
+
+/**
+ * A {@code Component} which implements this interface is notified as the mouse moves
+ * over it. Movements are coalesced, so a component receives at most one
+ * notification per frame, for the latest location of the mouse.
+ *
+ * @see Interactable
+ */
+public interface Hoverable {
+  /**
+   * Called whenever the mouse moves to a new location within the bounds of this
+   * component.
+   *
+   * @param location The location within the terminal which the mouse is over.
+   */
+  void hovered(Location location);
+
+  /**
+   * Called when the mouse moves off of this component, either onto another
+   * component or out of the terminal.
+   */
+  default void exited() { }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+/**
+ * Supplies the items shown by a {@code ListView}. The list only asks for the items
+ * which are visible, so an item provider may describe any number of items without
+ * creating a component for each one; instead, the list creates a component for
+ * each row it can show, and binds those rows to whichever items are visible as it's
+ * scrolled.
+ *
+ * @param <T> The type of component which draws each item.
+ *
+ * @see ListView
+ */
+public interface ItemProvider<T extends Component> {
+  /**
+   * Gets the number of items in the list.
+   *
+   * @return The number of items.
+   */
+  int getItemCount();
+
+  /**
+   * Creates a component which can draw any item in the list. This is called once
+   * for each row that the list can show at a time, and the rows are then reused for
+   * other items as the list is scrolled.
+   *
+   * @return A new row.
+   */
+  T createRow();
+
+  /**
+   * Prepares a row to draw the item at the given index. The row may have drawn any
+   * other item before, so everything which differs between items must be set.
+   *
+   * @param row A row which was created by {@link #createRow()}.
+   * @param index The index of the item which the row will draw.
+   * @param selected Whether the item is selected in the list.
+   */
+  void bindRow(
+    T row,
+    int index,
+    boolean selected);
+}
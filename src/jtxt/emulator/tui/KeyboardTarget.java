@@ -72,10 +72,28 @@ public interface KeyboardTarget {
     }
   }
 
+  /**
+   * Keys which are delivered to a {@code KeyboardTarget} as a character, but which
+   * don't produce a glyph. Keys that have no control character of their own (such as
+   * the arrow keys) are assigned a character from the Private Use Area, so that they
+   * can never be confused with text.
+   */
   enum Key {
     BACKSPACE('\b'),
+    TAB('\t'),
+    ENTER('\n'),
     ESCAPE('\u001B'),
-    DELETE('\u007F');
+    DELETE('\u007F'),
+    UP('\uF700'),
+    DOWN('\uF701'),
+    LEFT('\uF702'),
+    RIGHT('\uF703'),
+    HOME('\uF729'),
+    END('\uF72B'),
+    PAGE_UP('\uF72C'),
+    PAGE_DOWN('\uF72D');
+
+    private static final Key[] KEYS = values();
 
     public final char character;
 
@@ -83,11 +101,20 @@ public interface KeyboardTarget {
       this.character = character;
     }
 
+    /**
+     * Gets the key which is represented by the given character.
+     *
+     * @param character A character which was passed to {@link
+     *   KeyboardTarget#keyPressed(char)}.
+     *
+     * @return The key for the character, or null if the character is printable
+     *   text.
+     */
     public static Key forCharacter(char character) {
-      /*
-       * TODO: Somehow traverse the keys that are defined in this enum,
-       * and return a key reference for the character if it exists.
-       */
+      for (Key key : KEYS) {
+        if (key.character == character)
+          return key;
+      }
 
       return null;
     }
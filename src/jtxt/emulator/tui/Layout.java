@@ -15,6 +15,8 @@
  */
 package jtxt.emulator.tui;
 
+import java.util.List;
+
 import jtxt.emulator.Region;
 
 /**
@@ -46,15 +48,28 @@ public interface Layout {
    */
   void setParentBounds(Region parentBounds);
 
+  /**
+   * Measures the children of the container before any of them are given bounds. This
+   * is called after {@link #setParentBounds(Region)}, and before the bounds of each
+   * child are set (in the order the children appear in the container), so that a
+   * layout which must know about every child to place any one of them can do so.
+   * By default, nothing is measured.
+   *
+   * @param children The children of the container, in order.
+   */
+  default void measure(List<? extends Component> children) { }
+
   /**
    * Sets the bounds of a Component, using the parameter object that the component
-   * has defined.
+   * has defined. If the component would be given the bounds it already has, and
+   * nothing within it needs to be laid out again, its bounds are left alone, so that
+   * the layout of the component (and of any children it has) isn't redone.
    *
    * @param child The Component to allocate bounds to.
    */
   default void setComponentBounds(Component child) {
-    child.setBounds(
-      getBounds(child.getLayoutParameters())
-    );
+    Region bounds = getBounds(child.getLayoutParameters());
+    if (!child.isLayoutValid() || !bounds.equals(child.getBounds()))
+      child.setBounds(bounds);
   }
 }
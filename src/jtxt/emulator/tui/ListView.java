@@ -0,0 +1,427 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jtxt.GlyphBuffer;
+import jtxt.emulator.GString;
+import jtxt.emulator.Location;
+import jtxt.emulator.Region;
+
+/**
+ * A {@code ListView} shows a scrolling list of items, which are described by an
+ * {@link ItemProvider}. Only the items which are visible are ever laid out or drawn;
+ * the list creates one row component for each row it can show, and binds those rows
+ * to different items as it's scrolled. The memory a list uses, and the time it
+ * takes to draw one, depend on the size of the list on the screen rather than the
+ * number of items within it.
+ *
+ * <p>
+ * The rows are drawn into a buffer which belongs to the list, and which is kept
+ * between frames, so their bounds are relative to the list rather than the
+ * terminal. When the list is scrolled, the lines of this buffer are shifted along
+ * with it, and only the rows which have come into view are drawn. If an item
+ * changes while it's visible, the list must be told with {@link #itemsChanged(int,
+ * int)}; changes to the number of items are noticed when the list is next drawn.
+ * </p>
+ *
+ * @param <T> The type of component which draws each item.
+ */
+public class ListView<T extends Component>
+  extends Component
+  implements Scrollable, Interactable
+{
+  private final ItemProvider<T> provider;
+
+  /**
+   * The number of lines which each item occupies.
+   */
+  private final int itemHeight;
+
+  /**
+   * The rows which have been created by the provider, one for each slot in the
+   * list. Rows are created as they are first needed.
+   */
+  private final List<T> rows;
+
+  /**
+   * The lines of each row, as they were last drawn, relative to the bounds of this
+   * list.
+   */
+  private GlyphBuffer viewport;
+
+  /**
+   * The index of the item which was last drawn into each slot, or -1 if the slot
+   * must be drawn again.
+   */
+  private int[] drawn;
+
+  /**
+   * The index of the first visible item, the index of the selected item (or -1 if
+   * no item is selected), and the number of items when the list was last drawn.
+   */
+  private int first,
+    selected = -1,
+    count;
+
+  public ListView(
+    Object params,
+    ItemProvider<T> provider)
+  {
+    this(
+      params,
+      provider,
+      1);
+  }
+
+  /**
+   * Creates a new list of the items from the provider.
+   *
+   * @param params The parameters for the layout of this list's parent container.
+   * @param provider The provider of the items in this list.
+   * @param itemHeight The number of lines which each item occupies.
+   */
+  public ListView(
+    Object params,
+    ItemProvider<T> provider,
+    int itemHeight)
+  {
+    if (itemHeight < 1)
+      throw new IllegalArgumentException("The height of each item must be at "
+                                         + "least one line.");
+
+    this.parameters = params;
+    this.provider = provider;
+    this.itemHeight = itemHeight;
+    this.rows = new ArrayList<>();
+    this.drawn = new int[0];
+    this.count = provider.getItemCount();
+  }
+
+  /**
+   * Scrolls this list by the given number of items.
+   *
+   * @param items The number of items to scroll by; positive to scroll down, and
+   *   negative to scroll up.
+   */
+  public void scrollBy(int items) {
+    setFirstVisibleIndex(first + items);
+  }
+
+  /**
+   * Scrolls this list as little as possible so that the item at the given index is
+   * entirely visible.
+   *
+   * @param index The index of the item to show.
+   */
+  public void scrollTo(int index) {
+    int visible = getVisibleItemCount();
+    if (index < first)
+      setFirstVisibleIndex(index);
+    else if (index >= first + visible)
+      setFirstVisibleIndex(index - visible + 1);
+  }
+
+  /**
+   * Scrolls this list so that the item at the given index is the first one which is
+   * visible, or as close to it as the number of items allows.
+   *
+   * @param index The index of the item to show at the top of this list.
+   */
+  public void setFirstVisibleIndex(int index) {
+    if (moveTo(index))
+      update();
+  }
+
+  public int getFirstVisibleIndex() {
+    return first;
+  }
+
+  /**
+   * Moves the first visible item to the given index, clamped to the items which
+   * exist, without drawing this list again.
+   *
+   * @return Whether this list moved.
+   */
+  private boolean moveTo(int index) {
+    int last = Math.max(
+      provider.getItemCount() - getVisibleItemCount(),
+      0);
+    index = Math.max(
+      Math.min(
+        index,
+        last),
+      0);
+
+    int delta = index - first;
+    if (delta == 0)
+      return false;
+
+    first = index;
+    shift(delta);
+
+    return true;
+  }
+
+  /**
+   * Selects the item at the given index, so that it's drawn as being selected.
+   *
+   * @param index The index of the item to select, or -1 to select no item.
+   */
+  public void setSelectedIndex(int index) {
+    if (index == selected)
+      return;
+
+    int previous = selected;
+    selected = index;
+    invalidate(
+      previous,
+      previous);
+    invalidate(
+      index,
+      index);
+    update();
+  }
+
+  public int getSelectedIndex() {
+    return selected;
+  }
+
+  /**
+   * Notifies this list that the items within the given range have changed, so that
+   * any of them which are visible are drawn again.
+   *
+   * @param from The index of the first item which changed.
+   * @param to The index of the last item which changed.
+   */
+  public void itemsChanged(
+    int from,
+    int to)
+  {
+    invalidate(
+      from,
+      to);
+    update();
+  }
+
+  /**
+   * Notifies this list that any of its items may have changed.
+   */
+  public void itemsChanged() {
+    Arrays.fill(
+      drawn,
+      -1);
+    update();
+  }
+
+  @Override
+  public void scrolled(
+    Location location,
+    int lines)
+  {
+    scrollBy(lines);
+  }
+
+  /**
+   * Selects the item which was clicked.
+   */
+  @Override
+  public boolean clicked(Location clickLocation) {
+    int index = first + (clickLocation.line - bounds.start.line) / itemHeight;
+    if (index < provider.getItemCount())
+      setSelectedIndex(index);
+
+    return false;
+  }
+
+  @Override
+  public void setBounds(Region bounds) {
+    super.setBounds(bounds);
+
+    Region viewportBounds = new Region(
+      0,
+      0,
+      height,
+      width);
+    if (viewport != null && viewport.getBounds().equals(viewportBounds))
+      return;
+
+    int slots = (height + itemHeight - 1) / itemHeight;
+    viewport = new GlyphBuffer(viewportBounds);
+    drawn = new int[slots];
+    Arrays.fill(
+      drawn,
+      -1);
+
+    while (rows.size() > slots)
+      rows.remove(rows.size() - 1);
+  }
+
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    int count = provider.getItemCount();
+    if (count != this.count) {
+      /*
+       * Items past the end of the shorter list were either blank or drawn
+       * from items which no longer exist.
+       */
+      invalidate(
+        Math.min(
+          count,
+          this.count),
+        Integer.MAX_VALUE);
+      this.count = count;
+      moveTo(first);
+    }
+
+    for (int s = 0; s < drawn.length; s++) {
+      if (drawn[s] != first + s)
+        drawSlot(
+          s,
+          first + s);
+    }
+
+    for (int line = 0; line < height; line++)
+      buffer.update(
+        viewport.getString(line),
+        new Location(
+          bounds.start.line + line,
+          bounds.start.position));
+  }
+
+  /**
+   * Binds the row of the slot to the item at the given index, and draws it into the
+   * viewport. The slot is left blank if there's no item at the index.
+   */
+  private void drawSlot(
+    int slot,
+    int index)
+  {
+    int top = slot * itemHeight,
+      bottom = Math.min(
+        top + itemHeight,
+        height);
+
+    GString blank = GString.blank(width);
+    for (int line = top; line < bottom; line++)
+      viewport.update(
+        blank,
+        new Location(
+          line,
+          0));
+
+    if (index < count) {
+      T row = getRow(slot);
+      provider.bindRow(
+        row,
+        index,
+        index == selected);
+      row.setBounds(new Region(
+        top,
+        0,
+        top + itemHeight,
+        width));
+      row.draw(viewport);
+    }
+
+    drawn[slot] = index;
+  }
+
+  /**
+   * Marks the slots which show any of the items within the given range as needing
+   * to be drawn again.
+   */
+  private void invalidate(
+    int from,
+    int to)
+  {
+    for (int s = 0; s < drawn.length; s++) {
+      if (drawn[s] >= from && drawn[s] <= to)
+        drawn[s] = -1;
+    }
+  }
+
+  private T getRow(int slot) {
+    while (rows.size() <= slot)
+      rows.add(provider.createRow());
+
+    return rows.get(slot);
+  }
+
+  /**
+   * Moves the lines which have been drawn by the given number of items, so that
+   * only the rows which have come into view need to be drawn.
+   */
+  private void shift(int items) {
+    if (viewport == null)
+      return;
+
+    int slots = drawn.length;
+    viewport.scroll(items * itemHeight);
+    if (Math.abs(items) >= slots) {
+      Arrays.fill(
+        drawn,
+        -1);
+      return;
+    }
+
+    if (items > 0) {
+      System.arraycopy(
+        drawn,
+        items,
+        drawn,
+        0,
+        slots - items);
+      Arrays.fill(
+        drawn,
+        slots - items,
+        slots,
+        -1);
+
+      /*
+       * The last slot may have been cut off by the bottom of the list, in which
+       * case it's drawn again now that more of it is visible.
+       */
+      if (height % itemHeight != 0)
+        drawn[slots - items - 1] = -1;
+    }
+    else {
+      System.arraycopy(
+        drawn,
+        0,
+        drawn,
+        -items,
+        slots + items);
+      Arrays.fill(
+        drawn,
+        0,
+        -items,
+        -1);
+    }
+  }
+
+  /**
+   * Gets the number of items which fit entirely within this list.
+   */
+  private int getVisibleItemCount() {
+    return Math.max(
+      height / itemHeight,
+      1);
+  }
+}
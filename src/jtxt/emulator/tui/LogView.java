@@ -0,0 +1,473 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import java.awt.Color;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+
+import jtxt.GlyphBuffer;
+import jtxt.Terminal;
+import jtxt.Tick;
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
+import jtxt.emulator.Location;
+
+/**
+ * A {@code LogView} shows the most recent lines of a log, which may be appended to
+ * far faster than the terminal is drawn. Lines are kept in a ring of fixed capacity,
+ * so the memory a log uses never grows once it's been created: once the ring is
+ * full, each line which is appended overwrites the oldest.
+ *
+ * <p>
+ * The ring stores the characters of every line in one {@code char[]}, and the
+ * start and length of each line in primitive arrays, so appending a line allocates
+ * nothing. Lines are appended by a single producer thread without locking. The
+ * producer announces the characters it's about to overwrite before writing them,
+ * and the thread which draws the log checks each line against that announcement
+ * after reading it, in the manner of a seqlock; a line which was overwritten while
+ * it was being read is simply not drawn, since it had fallen out of the log.
+ * </p>
+ *
+ * <p>
+ * Lines are wrapped to the width of the log as they're drawn, and only the lines
+ * which are visible are read. While the log is following its tail (as it does when
+ * it's created), the newest lines are shown at the bottom; scrolling up stops
+ * following, and scrolling back to the bottom resumes it. The log is redrawn at
+ * most once per frame, however many lines are appended in between; see {@link
+ * #startRefreshing(Terminal)}.
+ * </p>
+ */
+public class LogView
+  extends Component
+  implements Scrollable
+{
+  /**
+   * The ring of characters, and the start (as a position within every character
+   * ever appended) and length of each line. The capacity of each ring is a power of
+   * two, so a position is reduced to an index with a mask.
+   */
+  private final char[] chars;
+  private final long[] starts;
+  private final int[] lengths;
+  private final int charMask,
+    lineMask;
+
+  /**
+   * The longest line which is kept; the rest of a longer line is dropped.
+   */
+  private final int maxLineLength;
+
+  /**
+   * The number of lines which have been appended, published after each line has
+   * been written; and the position up to which characters may have been written,
+   * which is published before they're written.
+   */
+  private volatile long lines,
+    reserved;
+
+  /**
+   * The position of the next character to be written. This is only touched by the
+   * producer.
+   */
+  private long written;
+
+  /**
+   * The number of lines which had been appended when the log was last drawn. This is
+   * only touched by the thread which draws the log.
+   */
+  private long drawnLines;
+
+  /**
+   * Whether the newest lines are shown. Otherwise, the top of the log is the given
+   * row of the given line, as it's wrapped.
+   */
+  private boolean following = true;
+  private long topLine;
+  private int topRow;
+
+  /**
+   * The glyphs of the printable ASCII characters, which are shared by every line.
+   */
+  private final Glyph[] glyphs;
+
+  /**
+   * Creates a new log, which holds at most the given number of lines and
+   * characters.
+   *
+   * @param params The parameters for the layout of this log's parent container.
+   * @param lineCapacity The number of lines which the log holds, which must be a
+   *   power of two.
+   * @param charCapacity The number of characters which the log holds, which must be
+   *   a power of two. Lines are dropped once this many characters have been appended
+   *   after them, even if there is room for more lines.
+   * @param foreground The color of the text.
+   */
+  public LogView(
+    Object params,
+    int lineCapacity,
+    int charCapacity,
+    Color foreground)
+  {
+    super(
+      foreground,
+      Glyph.TRANSPARENT);
+    if (Integer.bitCount(lineCapacity) != 1
+        || Integer.bitCount(charCapacity) != 1)
+      throw new IllegalArgumentException("The capacities of the log must be "
+                                         + "powers of two.");
+
+    this.parameters = params;
+    chars = new char[charCapacity];
+    starts = new long[lineCapacity];
+    lengths = new int[lineCapacity];
+    charMask = charCapacity - 1;
+    lineMask = lineCapacity - 1;
+    maxLineLength = Math.max(
+      charCapacity / 2,
+      1);
+    glyphs = new Glyph[128];
+  }
+
+  /**
+   * Appends text to the log. Each line of the text (separated by {@code '\n'}) is
+   * added as a line of the log, and carriage returns are dropped; a newline at the
+   * end of the text doesn't add an empty line. This must only be
+   * called by one thread at a time, though it may be any thread.
+   *
+   * @param text The text to append.
+   */
+  public void append(CharSequence text) {
+    /*
+     * Announce every character which may be overwritten before writing any of
+     * them, so that a reader which started before can tell that a line it read
+     * may have changed.
+     */
+    reserved = written + text.length();
+    VarHandle.storeStoreFence();
+
+    long line = lines,
+      start = written;
+    int length = 0;
+    for (int c = 0; c < text.length(); c++) {
+      char character = text.charAt(c);
+      if (character == '\n') {
+        publish(
+          line++,
+          start,
+          length);
+        start = written;
+        length = 0;
+      }
+      else if (character != '\r' && length < maxLineLength) {
+        chars[(int)(written++ & charMask)] = character;
+        length++;
+      }
+    }
+
+    /*
+     * A newline at the end of the text ends its last line, rather than beginning
+     * an empty one.
+     */
+    if (text.length() == 0 || text.charAt(text.length() - 1) != '\n')
+      publish(
+        line,
+        start,
+        length);
+  }
+
+  private void publish(
+    long line,
+    long start,
+    int length)
+  {
+    int slot = (int)(line & lineMask);
+    starts[slot] = start;
+    lengths[slot] = length;
+    lines = line + 1;
+  }
+
+  /**
+   * Redraws this log once per frame of the terminal, if any lines have been
+   * appended since it was last drawn. The refresh stops when the log is removed from
+   * the terminal.
+   *
+   * @param terminal The terminal which this log belongs to.
+   *
+   * @return The tick which refreshes this log, which may be used to stop it.
+   */
+  public Tick startRefreshing(Terminal terminal) {
+    return terminal.scheduleRepeating(
+      this,
+      1_000_000_000L / terminal.getTargetUpdatesPerSecond(),
+      TimeUnit.NANOSECONDS,
+      () -> {
+        if (lines != drawnLines)
+          update();
+      });
+  }
+
+  /**
+   * Gets the number of lines which have ever been appended to this log, including
+   * those which have since been dropped.
+   *
+   * @return The number of lines appended.
+   */
+  public long getAppendedLineCount() {
+    return lines;
+  }
+
+  public boolean isFollowing() {
+    return following;
+  }
+
+  /**
+   * Shows the newest lines of the log as they're appended, or keeps the lines which
+   * are currently visible in place.
+   *
+   * @param following Whether to follow the tail of the log.
+   */
+  public void setFollowing(boolean following) {
+    if (following == this.following)
+      return;
+
+    this.following = following;
+    update();
+  }
+
+  /**
+   * Scrolls this log by the given number of rows. Scrolling up stops following the
+   * tail of the log, and scrolling down to the newest line resumes it.
+   *
+   * @param rows The number of rows to scroll by; positive to scroll down.
+   */
+  public void scrollBy(int rows) {
+    if (width <= 0 || rows == 0)
+      return;
+
+    long end = lines,
+      oldest = getOldestLine(end);
+    if (following) {
+      if (rows > 0)
+        return;
+
+      following = false;
+      findTop(
+        end,
+        oldest);
+    }
+    clampTop(oldest);
+
+    for (; rows < 0; rows++) {
+      if (topRow > 0)
+        topRow--;
+      else if (topLine > oldest)
+        topRow = getRowCount(--topLine) - 1;
+      else
+        break;
+    }
+    for (; rows > 0; rows--) {
+      if (topRow + 1 < getRowCount(topLine))
+        topRow++;
+      else if (topLine + 1 < end) {
+        topLine++;
+        topRow = 0;
+      }
+      else
+        break;
+    }
+
+    following = countRows(end) <= height;
+    update();
+  }
+
+  @Override
+  public void scrolled(
+    Location location,
+    int lines)
+  {
+    scrollBy(lines);
+  }
+
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    long end = lines,
+      oldest = getOldestLine(end);
+    drawnLines = end;
+    if (width <= 0 || height <= 0)
+      return;
+
+    if (following)
+      findTop(
+        end,
+        oldest);
+    else
+      clampTop(oldest);
+
+    int row = 0;
+    for (long line = topLine; line < end && row < height; line++) {
+      int slot = (int)(line & lineMask),
+        length = lengths[slot];
+      long start = starts[slot];
+
+      for (int r = line == topLine ? topRow : 0;
+           r * width < Math.max(length, 1) && row < height;
+           r++, row++)
+      {
+        int from = r * width,
+          count = Math.min(
+            width,
+            length - from);
+        Glyph[] glyphs = new Glyph[Math.max(count, 0)];
+        for (int c = 0; c < count; c++)
+          glyphs[c] = getGlyph(chars[(int)((start + from + c) & charMask)]);
+
+        /*
+         * The line may have been overwritten while it was being read; if so, it
+         * has fallen out of the log, and is left blank.
+         */
+        VarHandle.loadLoadFence();
+        if (!isRetained(
+          line,
+          start))
+          continue;
+
+        buffer.update(
+          new GString(glyphs),
+          new Location(
+            bounds.start.line + row,
+            bounds.start.position));
+      }
+    }
+  }
+
+  /**
+   * Finds the top of the log such that the newest line is on its last row.
+   */
+  private void findTop(
+    long end,
+    long oldest)
+  {
+    topLine = Math.max(
+      end - 1,
+      oldest);
+    topRow = 0;
+    if (end == 0)
+      return;
+
+    int rows = getRowCount(topLine);
+    topRow = Math.max(
+      rows - height,
+      0);
+    rows -= topRow;
+    while (rows < height && topLine > oldest) {
+      int count = getRowCount(--topLine);
+      topRow = Math.max(
+        count - (height - rows),
+        0);
+      rows += count - topRow;
+    }
+  }
+
+  /**
+   * Moves the top of the log to the oldest line, if the line at the top has been
+   * dropped, and to the last row of its line if the line no longer has as many rows.
+   */
+  private void clampTop(long oldest) {
+    if (topLine < oldest) {
+      topLine = oldest;
+      topRow = 0;
+    }
+    topRow = Math.min(
+      topRow,
+      getRowCount(topLine) - 1);
+  }
+
+  /**
+   * Counts the rows from the top of the log to the newest line, stopping once there
+   * are more than fit within the log.
+   */
+  private int countRows(long end) {
+    int rows = -topRow;
+    for (long line = topLine; line < end && rows <= height; line++)
+      rows += getRowCount(line);
+
+    return rows;
+  }
+
+  /**
+   * Gets the number of rows which the line occupies once it's wrapped; an empty line
+   * still occupies one row.
+   */
+  private int getRowCount(long line) {
+    int length = lengths[(int)(line & lineMask)];
+
+    return Math.max(
+      (length + width - 1) / width,
+      1);
+  }
+
+  /**
+   * Gets the oldest line which is still held by the log. The slot of the line after
+   * the newest may be being written, so the line which last used that slot is never
+   * read. Lines start in the order they were appended, so the first line whose
+   * characters are still held is found with a binary search.
+   */
+  private long getOldestLine(long end) {
+    long low = Math.max(
+      end - lineMask,
+      0),
+      high = end,
+      limit = reserved - chars.length;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      if (starts[(int)(mid & lineMask)] < limit)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+
+    return low;
+  }
+
+  /**
+   * Determines whether the characters of the line are still held by the log.
+   */
+  private boolean isRetained(
+    long line,
+    long start)
+  {
+    return line > lines - lineMask - 1
+           && start >= reserved - chars.length;
+  }
+
+  private Glyph getGlyph(char character) {
+    if (character >= glyphs.length)
+      return new Glyph(
+        character,
+        foreground,
+        background);
+
+    Glyph glyph = glyphs[character];
+    if (glyph == null)
+      glyph = glyphs[character] = new Glyph(
+        character,
+        foreground,
+        background);
+
+    return glyph;
+  }
+}
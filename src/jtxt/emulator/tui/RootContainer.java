@@ -24,6 +24,26 @@ public class RootContainer
   extends Container<Component>
   implements ResizeSubscriber
 {
+  /**
+   * The number of updates which have begun but haven't yet ended. Updates may be
+   * nested; the changes are only committed when the outermost update ends.
+   */
+  private int updateDepth;
+
+  /**
+   * Whether a component was updated while the updates were suspended, meaning that
+   * the terminal needs to be drawn once they are committed.
+   */
+  private boolean updatePending;
+
+  /**
+   * The time spent laying out the components in this container since the time was
+   * last taken.
+   *
+   * @see #takeLayoutNanos()
+   */
+  private long layoutNanos;
+
   /**
    * Creates a new container which occupies the entire area which was given when the
    * context was created. The size of this container will match the dimensions passed
@@ -58,6 +78,87 @@ public class RootContainer
       lineSize));
   }
 
+  /**
+   * Begins a batch of changes to the components within this container. Until the
+   * batch ends, components added to any container aren't laid out, and updates don't
+   * cause the terminal to be drawn. This must be called on the thread which draws
+   * the terminal.
+   *
+   * @see #endUpdate()
+   */
+  public void beginUpdate() {
+    updateDepth++;
+  }
+
+  /**
+   * Ends a batch of changes. When the outermost batch ends, every component within
+   * this container is laid out once, and the terminal is drawn once if anything
+   * changed.
+   *
+   * @throws IllegalStateException if no batch has begun.
+   */
+  public void endUpdate() {
+    if (updateDepth == 0)
+      throw new IllegalStateException("endUpdate() was called without a "
+                                      + "matching call to beginUpdate().");
+    if (--updateDepth > 0 || !updatePending)
+      return;
+
+    updatePending = false;
+    setBounds(bounds);
+    update();
+  }
+
+  public boolean isUpdating() {
+    return updateDepth > 0;
+  }
+
+  /**
+   * Records that the terminal must be drawn once the current batch of changes ends,
+   * if there is one.
+   *
+   * @return Whether the update was deferred; if it wasn't, the terminal should be
+   *   drawn now.
+   */
+  public boolean deferUpdate() {
+    if (updateDepth == 0)
+      return false;
+
+    updatePending = true;
+    return true;
+  }
+
+  @Override
+  public void setBounds(Region bounds) {
+    long start = System.nanoTime();
+    super.setBounds(bounds);
+    layoutNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Lays out any components which have been invalidated since the last layout. This
+   * does nothing if the layout of every component is still valid.
+   *
+   * @see Component#invalidateLayout()
+   */
+  public void validate() {
+    if (!isLayoutValid())
+      setBounds(bounds);
+  }
+
+  /**
+   * Gets the time which has been spent laying out the components in this container
+   * since this method was last called.
+   *
+   * @return The time spent in layout, in nanoseconds.
+   */
+  public long takeLayoutNanos() {
+    long nanos = layoutNanos;
+    layoutNanos = 0;
+
+    return nanos;
+  }
+
   public GlyphBuffer drawToBuffer() {
     GlyphBuffer buffer = new GlyphBuffer(bounds);
     draw(buffer);
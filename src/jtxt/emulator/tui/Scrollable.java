@@ -0,0 +1,25 @@
+package jtxt.emulator.tui;
+
+import jtxt.emulator.Location;
+
+/**
+ * A {@code Component} which implements this interface is notified when the mouse
+ * wheel is turned while the mouse is over it. The rotation of the wheel is
+ * accumulated between frames, so a component receives at most one notification per
+ * frame, however quickly the wheel is turned; fractional rotations from a trackpad
+ * are carried over until they add up to a whole line.
+ *
+ * @see Interactable
+ */
+public interface Scrollable {
+  /**
+   * Called whenever the mouse wheel has been turned by at least one line.
+   *
+   * @param location The location within the terminal which the mouse is over.
+   * @param lines The number of lines to scroll by; positive when the wheel was
+   *   turned towards the user (to scroll down), and negative otherwise.
+   */
+  void scrolled(
+    Location location,
+    int lines);
+}
@@ -20,6 +20,7 @@ import jtxt.emulator.Location;
 import jtxt.emulator.Region;
 import jtxt.emulator.tui.GridLayout.GridParameters;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 
 /**
@@ -66,7 +67,10 @@ public class Table extends Container<Table.Column> {
     for (int c = 0; c < columns; c++)
       cols[c] = createColumn(c);
 
-    children = Arrays.asList(cols);
+    /*
+     * The list must be able to grow, as columns may be inserted later.
+     */
+    children = new ArrayList<>(Arrays.asList(cols));
   }
 
   /**
@@ -109,7 +113,7 @@ public class Table extends Container<Table.Column> {
     int cn,
     Component... components)
   {
-    if (cn >= cols || rn + components.length >= rows)
+    if (cn >= cols || rn + components.length > rows)
       throw new IllegalArgumentException("The given indices are out " +
                                          "of bounds");
 
@@ -138,7 +142,7 @@ public class Table extends Container<Table.Column> {
         rowNumber,
         components.length);
 
-    children.get(rowNumber).add(
+    children.get(columnNumber).add(
       rowNumber,
       components);
   }
@@ -208,8 +212,13 @@ public class Table extends Container<Table.Column> {
     {
       resize(size + amount);
 
-      for (int r = size-1; r >= amount && r >= start; r--)
+      for (int r = size-1; r >= start + amount; r--)
         components[r] = components[r - amount];
+      Arrays.fill(
+        components,
+        start,
+        start + amount,
+        null);
     }
 
     /**
@@ -246,7 +255,7 @@ public class Table extends Container<Table.Column> {
           continue;
 
         Location start = new Location(
-          r*rheight,
+          bounds.start.line + r*rheight,
           bounds.start.position);
         component.setBounds(Region.fromLocation(
           start,
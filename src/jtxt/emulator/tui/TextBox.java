@@ -18,6 +18,7 @@ package jtxt.emulator.tui;
 import jtxt.GlyphBuffer;
 import jtxt.emulator.GString;
 import jtxt.emulator.Location;
+import jtxt.emulator.TextLayout;
 
 public class TextBox extends Component {
   /**
@@ -30,9 +31,11 @@ public class TextBox extends Component {
     , RIGHT };
 
   /**
-   * The text to draw onto the screen.
+   * The text to draw onto the screen, and where it breaks into lines at the widths
+   * this box has been drawn at.
    */
   private GString text;
+  private TextLayout layout;
   private Position just;
 
   /**
@@ -56,34 +59,75 @@ public class TextBox extends Component {
     Position just)
   {
     this.parameters = params;
+    this.just = just;
+    setText(text);
+  }
+
+  /**
+   * Changes the text within this box. The box is laid out again, as the size it
+   * prefers may have changed.
+   *
+   * @param text The new text, which may contain escapes.
+   */
+  public void setText(String text) {
     this.text = GString.of(
       text,
       background);
-    this.just = just;
+    layout = new TextLayout(this.text);
+    invalidateLayout();
+    update();
   }
 
+  /**
+   * Prefers to fit the text on a single line.
+   */
+  @Override
+  public int getPreferredSize(Axis axis) {
+    return axis == Axis.X
+      ? text.length()
+      : 1;
+  }
+
+  /**
+   * Draws the lines of the text which fit within this box, centered vertically.
+   * Where the text breaks into lines is only found again when the text or the width
+   * of this box changes, and the lines are copied into the buffer straight from the
+   * text.
+   */
   @Override
   public void draw(GlyphBuffer buffer) {
-    GString[] lines = text.wrap(width);
-    for (int line = 0; line < lines.length; line++) {
-      int spos, sline;
-      spos = bounds.start.position;
-      sline = bounds.start.line + (bounds.getHeight()-lines.length) / 2;
+    int lines = layout.getLineCount(
+      width,
+      height),
+      sline = bounds.start.line + (height - lines) / 2;
+
+    for (int line = 0; line < lines; line++) {
+      int start = layout.getLineStart(
+        width,
+        line),
+        end = layout.getLineEnd(
+          width,
+          line),
+        spos = bounds.start.position;
 
       switch (just) {
       case RIGHT:
-        spos += bounds.getWidth() - lines[line].length();
+        spos += width - (end - start);
         break;
       case CENTER:
-        spos += (bounds.getWidth() - lines[line].length()) / 2;
+        spos += (width - (end - start)) / 2;
         break;
       default:
         break;
       }
 
-      buffer.update(lines[line], new Location(
-        sline+line,
-        spos));
+      buffer.update(
+        text,
+        start,
+        end,
+        new Location(
+          sline + line,
+          spos));
     }
   }
 }
@@ -17,26 +17,341 @@
 
 package jtxt.emulator.tui;
 
+import java.awt.Color;
+
 import jtxt.GlyphBuffer;
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
 import jtxt.emulator.Location;
+import jtxt.emulator.tui.text.PieceTable;
+
+/**
+ * A component for editing text, which may be many megabytes long. The text is held
+ * in a {@link PieceTable}, so typing takes the same (short) time however large the
+ * document is, and only the lines which are visible are read from it when the
+ * editor is drawn. Long lines aren't wrapped; the editor scrolls horizontally to
+ * keep the caret in view.
+ *
+ * <p>
+ * The editor takes the focus of the keyboard when it's clicked. Printable
+ * characters are inserted at the caret, and the keys in {@link KeyboardTarget.Key}
+ * move the caret or delete text. Tabs are drawn as a single space.
+ * </p>
+ */
+public class TextEditor
+  extends Component
+  implements KeyboardTarget, Interactable, Scrollable
+{
+  private PieceTable document;
+
+  /**
+   * The offset of the caret within the document, and the column which the caret
+   * returns to when it's moved up or down onto a line which is long enough.
+   */
+  private int caret,
+    preferredColumn;
+
+  /**
+   * The first line and column of the document which are visible.
+   */
+  private int topLine,
+    leftColumn;
+
+  /**
+   * The characters of the line being drawn, and the glyphs of the printable ASCII
+   * characters, which are shared by every line.
+   */
+  private char[] line;
+  private final Glyph[] glyphs;
+
+  public TextEditor(Object params) {
+    this(
+      params,
+      new PieceTable(""));
+  }
+
+  /**
+   * Creates an editor for the given document.
+   *
+   * @param params The parameters for the layout of this editor's parent container.
+   * @param document The document to edit.
+   */
+  public TextEditor(
+    Object params,
+    PieceTable document)
+  {
+    this.parameters = params;
+    this.document = document;
+    line = new char[0];
+    glyphs = new Glyph[128];
+  }
+
+  public PieceTable getDocument() {
+    return document;
+  }
+
+  /**
+   * Changes the document being edited, moving the caret to its start.
+   *
+   * @param document The document to edit.
+   */
+  public void setDocument(PieceTable document) {
+    this.document = document;
+    caret = preferredColumn = topLine = leftColumn = 0;
+    update();
+  }
+
+  public int getCaret() {
+    return caret;
+  }
+
+  /**
+   * Moves the caret to the given offset within the document, scrolling so that it's
+   * visible.
+   *
+   * @param offset The new offset of the caret.
+   */
+  public void setCaret(int offset) {
+    caret = Math.max(
+      Math.min(
+        offset,
+        document.length()),
+      0);
+    preferredColumn = getColumn();
+    scrollToCaret();
+    update();
+  }
+
+  @Override
+  public void keyPressed(char character) {
+    Key key = Key.forCharacter(character);
+    if (key == null) {
+      insert(String.valueOf(character));
+      return;
+    }
+
+    switch (key) {
+    case BACKSPACE:
+      if (caret > 0) {
+        document.delete(
+          caret - 1,
+          1);
+        setCaret(caret - 1);
+      }
+      break;
+    case DELETE:
+      if (caret < document.length()) {
+        document.delete(
+          caret,
+          1);
+        setCaret(caret);
+      }
+      break;
+    case ENTER:
+      insert("\n");
+      break;
+    case TAB:
+      insert("\t");
+      break;
+    case LEFT:
+      setCaret(caret - 1);
+      break;
+    case RIGHT:
+      setCaret(caret + 1);
+      break;
+    case UP:
+      moveLines(-1);
+      break;
+    case DOWN:
+      moveLines(1);
+      break;
+    case PAGE_UP:
+      moveLines(-Math.max(height, 1));
+      break;
+    case PAGE_DOWN:
+      moveLines(Math.max(height, 1));
+      break;
+    case HOME:
+      setCaret(document.getLineStart(document.getLineAt(caret)));
+      break;
+    case END:
+      setCaret(document.getLineEnd(document.getLineAt(caret)));
+      break;
+    default:
+      break;
+    }
+  }
+
+  private void insert(String text) {
+    document.insert(
+      caret,
+      text);
+    setCaret(caret + text.length());
+  }
+
+  /**
+   * Moves the caret up or down by the given number of lines, keeping it in the
+   * column it was in before it was last moved horizontally, if the line is long
+   * enough.
+   */
+  private void moveLines(int lines) {
+    int line = Math.max(
+      Math.min(
+        document.getLineAt(caret) + lines,
+        document.getLineCount() - 1),
+      0),
+      start = document.getLineStart(line);
+
+    caret = Math.min(
+      start + preferredColumn,
+      document.getLineEnd(line));
+    scrollToCaret();
+    update();
+  }
+
+  /**
+   * Moves the caret to the location which was clicked, and takes the focus of the
+   * keyboard.
+   */
+  @Override
+  public boolean clicked(Location clickLocation) {
+    int line = Math.min(
+      topLine + clickLocation.line - bounds.start.line,
+      document.getLineCount() - 1);
+
+    setCaret(Math.min(
+      document.getLineStart(line) + leftColumn + clickLocation.position
+        - bounds.start.position,
+      document.getLineEnd(line)));
+
+    return true;
+  }
+
+  @Override
+  public void scrolled(
+    Location location,
+    int lines)
+  {
+    topLine = Math.max(
+      Math.min(
+        topLine + lines,
+        document.getLineCount() - 1),
+      0);
+    update();
+  }
+
+  private int getColumn() {
+    return caret - document.getLineStart(document.getLineAt(caret));
+  }
+
+  private void scrollToCaret() {
+    int line = document.getLineAt(caret),
+      column = caret - document.getLineStart(line);
+
+    if (line < topLine)
+      topLine = line;
+    else if (height > 0 && line >= topLine + height)
+      topLine = line - height + 1;
+
+    if (column < leftColumn)
+      leftColumn = column;
+    else if (width > 0 && column >= leftColumn + width)
+      leftColumn = column - width + 1;
+  }
+
+  /**
+   * Draws the lines of the document which are visible. Only the characters within
+   * the bounds of this editor are read from the document.
+   */
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    if (width <= 0 || height <= 0)
+      return;
+    if (line.length < width)
+      line = new char[width];
+
+    int lines = document.getLineCount(),
+      caretLine = document.getLineAt(caret),
+      caretColumn = caret - document.getLineStart(caretLine) - leftColumn;
+
+    for (int row = 0; row < height && topLine + row < lines; row++) {
+      int start = document.getLineStart(topLine + row) + leftColumn,
+        end = document.getLineEnd(topLine + row),
+        count = Math.max(
+          Math.min(
+            width,
+            end - start),
+          0);
+
+      /*
+       * A line which is shorter than the columns scrolled past has nothing
+       * visible, and its start may be past the end of the document.
+       */
+      if (count > 0)
+        document.getChars(
+          start,
+          count,
+          line);
 
-public class TextEditor extends Component implements KeyboardTarget,
-                                                     Interactable {
-    private GlyphBuffer buffer;
+      /*
+       * The caret may sit just past the end of its line.
+       */
+      boolean hasCaret = topLine + row == caretLine
+                         && caretColumn >= 0
+                         && caretColumn < width;
+      Glyph[] glyphs = new Glyph[hasCaret
+        ? Math.max(
+          count,
+          caretColumn + 1)
+        : count];
+      for (int c = 0; c < glyphs.length; c++) {
+        char character = c < count
+          ? line[c]
+          : ' ';
+        glyphs[c] = hasCaret && c == caretColumn
+          ? createCaret(character)
+          : getGlyph(character);
+      }
 
-    private static class Cursor { }
-    private Cursor cursor;
+      buffer.update(
+        new GString(glyphs),
+        new Location(
+          bounds.start.line + row,
+          bounds.start.position));
+    }
+  }
 
-    /*
-     * We need to address how we are going to do mouse input now....
-     */
+  private Glyph getGlyph(char character) {
+    if (character < ' ')
+      character = ' ';
+    if (character >= glyphs.length)
+      return new Glyph(
+        character,
+        foreground,
+        background);
 
-    @Override
-    public void keyPressed(char key) { /* ... */ }
+    Glyph glyph = glyphs[character];
+    if (glyph == null)
+      glyph = glyphs[character] = new Glyph(
+        character,
+        foreground,
+        background);
 
-    @Override
-    public boolean clicked(Location location) { return true; }
+    return glyph;
+  }
 
-    @Override
-    public void draw(GlyphBuffer buffer) { /* ... */ }
+  /**
+   * Creates the glyph of the character under the caret, which swaps the colors of
+   * the text and the background.
+   */
+  private Glyph createCaret(char character) {
+    return new Glyph(
+      character < ' '
+        ? ' '
+        : character,
+      background.getAlpha() == 0
+        ? Color.WHITE
+        : background,
+      foreground);
+  }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import jtxt.GlyphBuffer;
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
+import jtxt.emulator.Location;
+import jtxt.emulator.Region;
+import jtxt.emulator.tui.table.CellRenderer;
+import jtxt.emulator.tui.table.DefaultCellRenderer;
+import jtxt.emulator.tui.table.TableModel;
+
+/**
+ * A table which shows the rows of a {@link TableModel}, with a header of column
+ * names along its first line. Unlike {@link Table}, a {@code VirtualTable} doesn't
+ * hold a component for each cell: its rows are shown by a {@link ListView}, so only
+ * the visible rows are drawn, and each cell of a visible row is drawn by the
+ * {@link CellRenderer} of its column, which is shared by every cell in that column.
+ * Only the columns which fit within the table are rendered.
+ *
+ * <p>
+ * The table reads the number of rows from the model whenever it's drawn. If cells
+ * of rows which may be visible change, the table must be told with {@link
+ * #rowsChanged(int, int)}.
+ * </p>
+ */
+public class VirtualTable
+  extends Component
+  implements Scrollable, Interactable
+{
+  private static final int DEFAULT_COLUMN_WIDTH = 12;
+
+  private final TableModel model;
+  private final ListView<Row> body;
+
+  private final CellRenderer[] renderers;
+  private final int[] columnWidths;
+
+  /**
+   * The index of the leftmost visible column.
+   */
+  private int firstColumn;
+
+  /**
+   * Creates a table of the rows within the model, where every cell is drawn by a
+   * {@link DefaultCellRenderer}.
+   *
+   * @param params The parameters for the layout of this table's parent container.
+   * @param model The model of the rows in this table. The number of columns in the
+   *   model must not change.
+   * @param foreground The color of the text in the table.
+   * @param selectedBackground The color behind the selected row.
+   */
+  public VirtualTable(
+    Object params,
+    TableModel model,
+    Color foreground,
+    Color selectedBackground)
+  {
+    super(
+      foreground,
+      Glyph.TRANSPARENT);
+    this.parameters = params;
+    this.model = model;
+
+    int columns = model.getColumnCount();
+    renderers = new CellRenderer[columns];
+    Arrays.fill(
+      renderers,
+      new DefaultCellRenderer(
+        foreground,
+        selectedBackground));
+    columnWidths = new int[columns];
+    for (int c = 0; c < columns; c++)
+      columnWidths[c] = Math.max(
+        DEFAULT_COLUMN_WIDTH,
+        model.getColumnName(c).length());
+
+    body = new ListView<>(
+      null,
+      new RowProvider());
+  }
+
+  public void setCellRenderer(
+    int column,
+    CellRenderer renderer)
+  {
+    renderers[column] = renderer;
+    body.itemsChanged();
+    update();
+  }
+
+  public void setColumnWidth(
+    int column,
+    int width)
+  {
+    columnWidths[column] = Math.max(
+      width,
+      1);
+    body.itemsChanged();
+    update();
+  }
+
+  /**
+   * Scrolls this table horizontally so that the given column is the leftmost one.
+   *
+   * @param column The index of the column to show first.
+   */
+  public void setFirstVisibleColumn(int column) {
+    column = Math.max(
+      Math.min(
+        column,
+        columnWidths.length - 1),
+      0);
+    if (column == firstColumn)
+      return;
+
+    firstColumn = column;
+    body.itemsChanged();
+    update();
+  }
+
+  public int getFirstVisibleColumn() {
+    return firstColumn;
+  }
+
+  /**
+   * Scrolls this table vertically so that the row at the given index is visible.
+   *
+   * @param row The index of the row to show.
+   */
+  public void scrollTo(int row) {
+    body.scrollTo(row);
+    update();
+  }
+
+  public int getFirstVisibleRow() {
+    return body.getFirstVisibleIndex();
+  }
+
+  public void setSelectedRow(int row) {
+    body.setSelectedIndex(row);
+    update();
+  }
+
+  public int getSelectedRow() {
+    return body.getSelectedIndex();
+  }
+
+  /**
+   * Notifies this table that the cells of the rows within the given range have
+   * changed, so that any of them which are visible are drawn again.
+   *
+   * @param from The index of the first row which changed.
+   * @param to The index of the last row which changed.
+   */
+  public void rowsChanged(
+    int from,
+    int to)
+  {
+    body.itemsChanged(
+      from,
+      to);
+    update();
+  }
+
+  @Override
+  public void scrolled(
+    Location location,
+    int lines)
+  {
+    body.scrollBy(lines);
+    update();
+  }
+
+  /**
+   * Selects the row which was clicked. Clicking the header does nothing.
+   */
+  @Override
+  public boolean clicked(Location clickLocation) {
+    if (clickLocation.line > bounds.start.line) {
+      body.clicked(clickLocation);
+      update();
+    }
+
+    return false;
+  }
+
+  @Override
+  public void setBounds(Region bounds) {
+    super.setBounds(bounds);
+
+    body.setBounds(new Region(
+      Math.min(
+        bounds.start.line + 1,
+        bounds.end.line),
+      bounds.start.position,
+      bounds.end.line,
+      bounds.end.position));
+  }
+
+  @Override
+  public void draw(GlyphBuffer buffer) {
+    if (height == 0)
+      return;
+
+    int line = bounds.start.line;
+    for (int c = firstColumn, x = bounds.start.position;
+         c < columnWidths.length && x < bounds.end.position;
+         x += columnWidths[c++] + 1)
+    {
+      buffer.update(
+        getHeader(
+          c,
+          Math.min(
+            columnWidths[c],
+            bounds.end.position - x)),
+        new Location(
+          line,
+          x));
+    }
+
+    body.draw(buffer);
+  }
+
+  /**
+   * Creates the glyphs of a column's name, cut short to the given width. The name is
+   * drawn as it is, in the color of the table's text, as the cells are; it isn't
+   * parsed for color escapes.
+   */
+  private GString getHeader(
+    int column,
+    int width)
+  {
+    String name = model.getColumnName(column);
+    Glyph[] glyphs = new Glyph[Math.min(
+      name.length(),
+      width)];
+    for (int c = 0; c < glyphs.length; c++)
+      glyphs[c] = new Glyph(
+        name.charAt(c),
+        foreground,
+        background);
+
+    return new GString(glyphs);
+  }
+
+  /**
+   * A row of the table, which is bound to whichever row of the model it's showing.
+   * Rows are only created for the lines of the table which are visible.
+   */
+  private class Row extends Component {
+    private int row;
+    private boolean selected;
+
+    @Override
+    public void draw(GlyphBuffer buffer) {
+      int line = bounds.start.line;
+      for (int c = firstColumn, x = bounds.start.position;
+           c < columnWidths.length && x < bounds.end.position;
+           x += columnWidths[c++] + 1)
+      {
+        buffer.update(
+          renderers[c].render(
+            model,
+            row,
+            c,
+            Math.min(
+              columnWidths[c],
+              bounds.end.position - x),
+            selected),
+          new Location(
+            line,
+            x));
+      }
+    }
+  }
+
+  private class RowProvider implements ItemProvider<Row> {
+    @Override
+    public int getItemCount() {
+      return model.getRowCount();
+    }
+
+    @Override
+    public Row createRow() {
+      return new Row();
+    }
+
+    @Override
+    public void bindRow(
+      Row row,
+      int index,
+      boolean selected)
+    {
+      row.row = index;
+      row.selected = selected;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+/**
+ * A linear relation between variables, such as {@code a.right == b.left - 1} or
+ * {@code sidebar.width >= 20}, which a {@code Solver} tries to satisfy. A constraint
+ * is stored as an expression which is related to zero. Constraints are compared by
+ * identity, and are immutable; a constraint of another strength is a different
+ * constraint.
+ *
+ * @see Expression#equalTo(Expression)
+ * @see Expression#atLeast(Expression)
+ * @see Expression#atMost(Expression)
+ */
+public final class Constraint {
+  public enum Relation
+    { EQUAL
+    , AT_LEAST
+    , AT_MOST };
+
+  final Expression expression;
+  final Relation relation;
+  final double strength;
+
+  Constraint(
+    Expression expression,
+    Relation relation,
+    double strength)
+  {
+    this.expression = expression;
+    this.relation = relation;
+    this.strength = Strength.clipStrength(strength);
+  }
+
+  /**
+   * Creates a copy of this constraint with the given strength.
+   *
+   * @param strength The strength of the new constraint, as given by the constants
+   *   in {@link Strength}.
+   *
+   * @return A constraint which relates the same expression with the given strength.
+   */
+  public Constraint withStrength(double strength) {
+    return new Constraint(
+      expression,
+      relation,
+      strength);
+  }
+
+  public double getStrength() {
+    return strength;
+  }
+
+  public boolean isRequired() {
+    return strength >= Strength.REQUIRED;
+  }
+
+  @Override
+  public String toString() {
+    return expression + (relation == Relation.EQUAL
+      ? " == 0"
+      : relation == Relation.AT_LEAST
+        ? " >= 0"
+        : " <= 0");
+  }
+}
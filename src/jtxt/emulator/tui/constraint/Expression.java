@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+import java.util.Arrays;
+
+/**
+ * A linear combination of variables, plus a constant; for example, {@code 2x + y -
+ * 1}. Expressions are immutable, so each operation creates a new expression.
+ */
+public final class Expression {
+  private static final Variable[] NO_VARIABLES = new Variable[0];
+  private static final double[] NO_COEFFICIENTS = new double[0];
+
+  final Variable[] variables;
+  final double[] coefficients;
+  final double constant;
+
+  private Expression(
+    Variable[] variables,
+    double[] coefficients,
+    double constant)
+  {
+    this.variables = variables;
+    this.coefficients = coefficients;
+    this.constant = constant;
+  }
+
+  public static Expression of(Variable variable) {
+    return new Expression(
+      new Variable[] { variable },
+      new double[] { 1.0 },
+      0);
+  }
+
+  public static Expression of(double constant) {
+    return new Expression(
+      NO_VARIABLES,
+      NO_COEFFICIENTS,
+      constant);
+  }
+
+  public Expression plus(double constant) {
+    return new Expression(
+      variables,
+      coefficients,
+      this.constant + constant);
+  }
+
+  public Expression plus(Variable variable) {
+    return plus(of(variable));
+  }
+
+  public Expression plus(Expression other) {
+    return combine(
+      other,
+      1.0);
+  }
+
+  public Expression minus(double constant) {
+    return plus(-constant);
+  }
+
+  public Expression minus(Variable variable) {
+    return minus(of(variable));
+  }
+
+  public Expression minus(Expression other) {
+    return combine(
+      other,
+      -1.0);
+  }
+
+  public Expression times(double coefficient) {
+    double[] scaled = coefficients.clone();
+    for (int t = 0; t < scaled.length; t++)
+      scaled[t] *= coefficient;
+
+    return new Expression(
+      variables,
+      scaled,
+      constant * coefficient);
+  }
+
+  private Expression combine(
+    Expression other,
+    double sign)
+  {
+    int length = variables.length;
+    Variable[] variables = Arrays.copyOf(
+      this.variables,
+      length + other.variables.length);
+    double[] coefficients = Arrays.copyOf(
+      this.coefficients,
+      length + other.coefficients.length);
+    for (int t = 0; t < other.variables.length; t++) {
+      variables[length + t] = other.variables[t];
+      coefficients[length + t] = other.coefficients[t] * sign;
+    }
+
+    return new Expression(
+      variables,
+      coefficients,
+      constant + other.constant * sign);
+  }
+
+  public Constraint equalTo(double constant) {
+    return relate(
+      of(constant),
+      Constraint.Relation.EQUAL);
+  }
+
+  public Constraint equalTo(Variable variable) {
+    return relate(
+      of(variable),
+      Constraint.Relation.EQUAL);
+  }
+
+  public Constraint equalTo(Expression other) {
+    return relate(
+      other,
+      Constraint.Relation.EQUAL);
+  }
+
+  public Constraint atLeast(double constant) {
+    return relate(
+      of(constant),
+      Constraint.Relation.AT_LEAST);
+  }
+
+  public Constraint atLeast(Variable variable) {
+    return relate(
+      of(variable),
+      Constraint.Relation.AT_LEAST);
+  }
+
+  public Constraint atLeast(Expression other) {
+    return relate(
+      other,
+      Constraint.Relation.AT_LEAST);
+  }
+
+  public Constraint atMost(double constant) {
+    return relate(
+      of(constant),
+      Constraint.Relation.AT_MOST);
+  }
+
+  public Constraint atMost(Variable variable) {
+    return relate(
+      of(variable),
+      Constraint.Relation.AT_MOST);
+  }
+
+  public Constraint atMost(Expression other) {
+    return relate(
+      other,
+      Constraint.Relation.AT_MOST);
+  }
+
+  /**
+   * Creates a required constraint which relates this expression to another, by
+   * relating their difference to zero.
+   */
+  private Constraint relate(
+    Expression other,
+    Constraint.Relation relation)
+  {
+    return new Constraint(
+      minus(other),
+      relation,
+      Strength.REQUIRED);
+  }
+
+  /**
+   * Evaluates this expression with the values the variables were last given.
+   */
+  public double getValue() {
+    double value = constant;
+    for (int t = 0; t < variables.length; t++)
+      value += coefficients[t] * variables[t].value;
+
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (int t = 0; t < variables.length; t++)
+      builder.append(coefficients[t])
+        .append('*')
+        .append(variables[t].getName())
+        .append(" + ");
+
+    return builder.append(constant).toString();
+  }
+}
@@ -0,0 +1,830 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An incremental solver for systems of linear constraints, using the Cassowary
+ * algorithm. The solver keeps the system in a solved (simplex tableau) form as
+ * constraints are added and removed, so each change only costs the pivots it
+ * needs, rather than solving the whole system again.
+ *
+ * <p>
+ * Variables which change often, such as the size of the terminal, should be made
+ * edit variables. Suggesting a new value for an edit variable starts from the
+ * previous solution, and only repairs the rows which the change made infeasible
+ * (with the dual simplex method), which usually takes a handful of pivots however
+ * large the system is.
+ * </p>
+ *
+ * <p>
+ * A solver isn't thread-safe; it should only be used by the thread which lays out
+ * the terminal.
+ * </p>
+ */
+public class Solver {
+  private static final double EPSILON = 1.0e-8;
+
+  private final Map<Constraint, Tag> constraints;
+  private final Map<Variable, Symbol> variables;
+  private final Map<Variable, Edit> edits;
+
+  /**
+   * The basic symbols, each with the row which gives it in terms of the parametric
+   * symbols.
+   */
+  private final Map<Symbol, Row> rows;
+
+  /**
+   * The basic symbols whose rows have become negative, and must be made feasible
+   * again by the dual simplex method.
+   */
+  private final List<Symbol> infeasible;
+
+  private final Row objective;
+
+  /**
+   * The objective which is minimized when a constraint must be added with an
+   * artificial variable, or null otherwise.
+   */
+  private Row artificial;
+
+  private int nextId;
+
+  public Solver() {
+    constraints = new HashMap<>();
+    variables = new HashMap<>();
+    edits = new HashMap<>();
+    rows = new LinkedHashMap<>();
+    infeasible = new ArrayList<>();
+    objective = new Row(0);
+  }
+
+  /**
+   * Adds a constraint to the system.
+   *
+   * @param constraint The constraint to add.
+   *
+   * @throws IllegalArgumentException if the constraint has already been added.
+   * @throws UnsatisfiableConstraintException if the constraint is required, and
+   *   can't be satisfied along with the other required constraints.
+   */
+  public void addConstraint(Constraint constraint) {
+    if (constraints.containsKey(constraint))
+      throw new IllegalArgumentException("The constraint has already been " +
+                                         "added.");
+
+    Tag tag = new Tag();
+    Row row = createRow(
+      constraint,
+      tag);
+    Symbol subject = chooseSubject(
+      row,
+      tag);
+
+    /*
+     * A row which only contains dummy variables is a restatement of other
+     * required constraints; it can be added if it agrees with them.
+     */
+    if (subject == null && row.containsOnlyDummies()) {
+      if (!nearZero(row.constant))
+        throw new UnsatisfiableConstraintException(constraint);
+
+      subject = tag.marker;
+    }
+
+    if (subject == null) {
+      /*
+       * The artificial variable is pivoted through the tableau, so if the row
+       * turns out to be unsatisfiable, the tableau is restored to what it was
+       * before the constraint was added.
+       */
+      Map<Symbol, Row> saved = new LinkedHashMap<>();
+      for (Map.Entry<Symbol, Row> entry : rows.entrySet())
+        saved.put(
+          entry.getKey(),
+          new Row(entry.getValue()));
+      Row savedObjective = new Row(objective);
+
+      if (!addWithArtificialVariable(row)) {
+        rows.clear();
+        rows.putAll(saved);
+        objective.constant = savedObjective.constant;
+        objective.cells.clear();
+        objective.cells.putAll(savedObjective.cells);
+        infeasible.clear();
+
+        throw new UnsatisfiableConstraintException(constraint);
+      }
+    }
+    else {
+      row.solveFor(subject);
+      substitute(
+        subject,
+        row);
+      rows.put(
+        subject,
+        row);
+    }
+
+    constraints.put(
+      constraint,
+      tag);
+    optimize(objective);
+  }
+
+  /**
+   * Removes a constraint from the system.
+   *
+   * @throws IllegalArgumentException if the constraint hasn't been added.
+   */
+  public void removeConstraint(Constraint constraint) {
+    Tag tag = constraints.remove(constraint);
+    if (tag == null)
+      throw new IllegalArgumentException("The constraint hasn't been added.");
+
+    removeErrorEffects(
+      tag.marker,
+      constraint.strength);
+    if (tag.other != null)
+      removeErrorEffects(
+        tag.other,
+        constraint.strength);
+
+    /*
+     * If the marker isn't basic, pivot it into the basis, so that its row
+     * (which is the constraint) can be dropped.
+     */
+    Row row = rows.remove(tag.marker);
+    if (row == null) {
+      Symbol leaving = findMarkerLeavingSymbol(tag.marker);
+      if (leaving == null)
+        throw new IllegalStateException("The solver couldn't find a row " +
+                                        "to remove the constraint from.");
+
+      row = rows.remove(leaving);
+      row.solveFor(
+        leaving,
+        tag.marker);
+      substitute(
+        tag.marker,
+        row);
+    }
+
+    optimize(objective);
+  }
+
+  public boolean hasConstraint(Constraint constraint) {
+    return constraints.containsKey(constraint);
+  }
+
+  /**
+   * Makes a variable an edit variable, so that values can be suggested for it.
+   *
+   * @param variable The variable to edit.
+   * @param strength How strongly the variable should take the values which are
+   *   suggested; this must not be required.
+   *
+   * @throws IllegalArgumentException if the variable is already an edit variable,
+   *   or the strength is required.
+   */
+  public void addEditVariable(
+    Variable variable,
+    double strength)
+  {
+    if (edits.containsKey(variable))
+      throw new IllegalArgumentException("The variable is already an edit " +
+                                         "variable.");
+
+    strength = Strength.clipStrength(strength);
+    if (strength >= Strength.REQUIRED)
+      throw new IllegalArgumentException("An edit variable must not be " +
+                                         "required.");
+
+    Constraint constraint = new Constraint(
+      Expression.of(variable),
+      Constraint.Relation.EQUAL,
+      strength);
+    addConstraint(constraint);
+    edits.put(
+      variable,
+      new Edit(
+        constraints.get(constraint),
+        constraint));
+  }
+
+  public void removeEditVariable(Variable variable) {
+    Edit edit = edits.remove(variable);
+    if (edit == null)
+      throw new IllegalArgumentException("The variable isn't an edit " +
+                                         "variable.");
+
+    removeConstraint(edit.constraint);
+  }
+
+  public boolean hasEditVariable(Variable variable) {
+    return edits.containsKey(variable);
+  }
+
+  /**
+   * Suggests a value for an edit variable. The solution is repaired from where it
+   * was, rather than found again from scratch.
+   *
+   * @throws IllegalArgumentException if the variable isn't an edit variable.
+   */
+  public void suggestValue(
+    Variable variable,
+    double value)
+  {
+    Edit edit = edits.get(variable);
+    if (edit == null)
+      throw new IllegalArgumentException("The variable isn't an edit " +
+                                         "variable.");
+
+    double delta = value - edit.constant;
+    edit.constant = value;
+    if (delta == 0)
+      return;
+
+    /*
+     * If either of the error variables of the edit is basic, only its row
+     * changes. Otherwise, the change is spread over every row which refers
+     * to the error variables.
+     */
+    Row row = rows.get(edit.tag.marker);
+    if (row != null) {
+      if (row.add(-delta) < 0)
+        infeasible.add(edit.tag.marker);
+    }
+    else if ((row = rows.get(edit.tag.other)) != null) {
+      if (row.add(delta) < 0)
+        infeasible.add(edit.tag.other);
+    }
+    else {
+      for (Map.Entry<Symbol, Row> entry : rows.entrySet()) {
+        double coefficient = entry.getValue().coefficientFor(edit.tag.marker);
+        if (coefficient != 0
+            && entry.getValue().add(delta * coefficient) < 0
+            && entry.getKey().type != Symbol.EXTERNAL)
+          infeasible.add(entry.getKey());
+      }
+    }
+
+    dualOptimize();
+  }
+
+  /**
+   * Sets the value of each variable to the value found by the solver.
+   */
+  public void updateVariables() {
+    for (Map.Entry<Variable, Symbol> entry : variables.entrySet()) {
+      Row row = rows.get(entry.getValue());
+      entry.getKey().value = row == null
+        ? 0
+        : row.constant;
+    }
+  }
+
+  /**
+   * Creates a row for a constraint, in terms of the current parametric symbols,
+   * adding the slack, error and dummy symbols which the constraint needs.
+   */
+  private Row createRow(
+    Constraint constraint,
+    Tag tag)
+  {
+    Expression expression = constraint.expression;
+    Row row = new Row(expression.constant);
+    for (int t = 0; t < expression.variables.length; t++) {
+      double coefficient = expression.coefficients[t];
+      if (nearZero(coefficient))
+        continue;
+
+      Symbol symbol = symbolFor(expression.variables[t]);
+      Row basic = rows.get(symbol);
+      if (basic != null)
+        row.insert(
+          basic,
+          coefficient);
+      else
+        row.insert(
+          symbol,
+          coefficient);
+    }
+
+    boolean required = constraint.strength >= Strength.REQUIRED;
+    switch (constraint.relation) {
+    case AT_LEAST:
+    case AT_MOST: {
+      double coefficient = constraint.relation == Constraint.Relation.AT_MOST
+        ? 1.0
+        : -1.0;
+      Symbol slack = symbol(Symbol.SLACK);
+      tag.marker = slack;
+      row.insert(
+        slack,
+        coefficient);
+
+      if (!required) {
+        Symbol error = symbol(Symbol.ERROR);
+        tag.other = error;
+        row.insert(
+          error,
+          -coefficient);
+        objective.insert(
+          error,
+          constraint.strength);
+      }
+      break;
+    }
+    case EQUAL:
+      if (!required) {
+        Symbol plus = symbol(Symbol.ERROR),
+          minus = symbol(Symbol.ERROR);
+        tag.marker = plus;
+        tag.other = minus;
+        row.insert(
+          plus,
+          -1.0);
+        row.insert(
+          minus,
+          1.0);
+        objective.insert(
+          plus,
+          constraint.strength);
+        objective.insert(
+          minus,
+          constraint.strength);
+      }
+      else {
+        Symbol dummy = symbol(Symbol.DUMMY);
+        tag.marker = dummy;
+        row.insert(
+          dummy,
+          1.0);
+      }
+      break;
+    }
+
+    if (row.constant < 0)
+      row.reverseSign();
+
+    return row;
+  }
+
+  /**
+   * Chooses the symbol which a new row should be solved for: any external symbol,
+   * or else a slack or error symbol of the constraint which has a negative
+   * coefficient.
+   *
+   * @return The subject, or null if there is no suitable symbol.
+   */
+  private Symbol chooseSubject(
+    Row row,
+    Tag tag)
+  {
+    for (Symbol symbol : row.cells.keySet()) {
+      if (symbol.type == Symbol.EXTERNAL)
+        return symbol;
+    }
+
+    if (tag.marker.isPivotable() && row.coefficientFor(tag.marker) < 0)
+      return tag.marker;
+    if (tag.other != null
+        && tag.other.isPivotable()
+        && row.coefficientFor(tag.other) < 0)
+      return tag.other;
+
+    return null;
+  }
+
+  /**
+   * Adds a row which has no suitable subject, by solving for an artificial variable
+   * which is then minimized away.
+   *
+   * @return Whether the row could be satisfied.
+   */
+  private boolean addWithArtificialVariable(Row row) {
+    Symbol variable = symbol(Symbol.SLACK);
+    rows.put(
+      variable,
+      new Row(row));
+    artificial = new Row(row);
+
+    optimize(artificial);
+    boolean satisfied = nearZero(artificial.constant);
+    artificial = null;
+
+    Row basic = rows.remove(variable);
+    if (basic != null) {
+      if (basic.cells.isEmpty())
+        return satisfied;
+
+      Symbol entering = null;
+      for (Symbol symbol : basic.cells.keySet()) {
+        if (symbol.isPivotable()) {
+          entering = symbol;
+          break;
+        }
+      }
+      if (entering == null)
+        return false;
+
+      basic.solveFor(
+        variable,
+        entering);
+      substitute(
+        entering,
+        basic);
+      rows.put(
+        entering,
+        basic);
+    }
+
+    for (Row other : rows.values())
+      other.remove(variable);
+    objective.remove(variable);
+
+    return satisfied;
+  }
+
+  /**
+   * Replaces a symbol with a row in every row of the tableau and in the objectives.
+   */
+  private void substitute(
+    Symbol symbol,
+    Row row)
+  {
+    for (Map.Entry<Symbol, Row> entry : rows.entrySet()) {
+      Row other = entry.getValue();
+      other.substitute(
+        symbol,
+        row);
+      if (entry.getKey().type != Symbol.EXTERNAL && other.constant < 0)
+        infeasible.add(entry.getKey());
+    }
+
+    objective.substitute(
+      symbol,
+      row);
+    if (artificial != null)
+      artificial.substitute(
+        symbol,
+        row);
+  }
+
+  /**
+   * Minimizes an objective with the primal simplex method.
+   */
+  private void optimize(Row objective) {
+    while (true) {
+      Symbol entering = null;
+      for (Map.Entry<Symbol, Double> cell : objective.cells.entrySet()) {
+        if (cell.getKey().type != Symbol.DUMMY && cell.getValue() < 0) {
+          entering = cell.getKey();
+          break;
+        }
+      }
+      if (entering == null)
+        return;
+
+      Symbol leaving = null;
+      double ratio = Double.MAX_VALUE;
+      for (Map.Entry<Symbol, Row> entry : rows.entrySet()) {
+        if (entry.getKey().type == Symbol.EXTERNAL)
+          continue;
+
+        double coefficient = entry.getValue().coefficientFor(entering);
+        if (coefficient < 0) {
+          double r = -entry.getValue().constant / coefficient;
+          if (r < ratio) {
+            ratio = r;
+            leaving = entry.getKey();
+          }
+        }
+      }
+      if (leaving == null)
+        throw new IllegalStateException("The objective is unbounded.");
+
+      pivot(
+        leaving,
+        entering);
+    }
+  }
+
+  /**
+   * Makes each infeasible row feasible again with the dual simplex method, keeping
+   * the objective optimal.
+   */
+  private void dualOptimize() {
+    while (!infeasible.isEmpty()) {
+      Symbol leaving = infeasible.remove(infeasible.size() - 1);
+      Row row = rows.get(leaving);
+      if (row == null || nearZero(row.constant) || row.constant >= 0)
+        continue;
+
+      Symbol entering = null;
+      double ratio = Double.MAX_VALUE;
+      for (Map.Entry<Symbol, Double> cell : row.cells.entrySet()) {
+        double coefficient = cell.getValue();
+        if (coefficient > 0 && cell.getKey().type != Symbol.DUMMY) {
+          double r = objective.coefficientFor(cell.getKey()) / coefficient;
+          if (r < ratio) {
+            ratio = r;
+            entering = cell.getKey();
+          }
+        }
+      }
+      if (entering == null)
+        throw new IllegalStateException("The solution couldn't be made " +
+                                        "feasible.");
+
+      pivot(
+        leaving,
+        entering);
+    }
+  }
+
+  /**
+   * Exchanges a basic symbol for a parametric one.
+   */
+  private void pivot(
+    Symbol leaving,
+    Symbol entering)
+  {
+    Row row = rows.remove(leaving);
+    row.solveFor(
+      leaving,
+      entering);
+    substitute(
+      entering,
+      row);
+    rows.put(
+      entering,
+      row);
+  }
+
+  /**
+   * Finds the row to pivot a constraint's marker into, when the constraint is being
+   * removed and the marker isn't basic. Restricted rows where the marker has a
+   * negative coefficient are preferred, then any other restricted row, then an
+   * unrestricted one.
+   */
+  private Symbol findMarkerLeavingSymbol(Symbol marker) {
+    double negative = Double.MAX_VALUE,
+      positive = Double.MAX_VALUE;
+    Symbol first = null,
+      second = null,
+      third = null;
+    for (Map.Entry<Symbol, Row> entry : rows.entrySet()) {
+      Row row = entry.getValue();
+      double coefficient = row.coefficientFor(marker);
+      if (coefficient == 0)
+        continue;
+
+      Symbol symbol = entry.getKey();
+      if (symbol.type == Symbol.EXTERNAL)
+        third = symbol;
+      else if (coefficient < 0) {
+        double r = -row.constant / coefficient;
+        if (r < negative) {
+          negative = r;
+          first = symbol;
+        }
+      }
+      else {
+        double r = row.constant / coefficient;
+        if (r < positive) {
+          positive = r;
+          second = symbol;
+        }
+      }
+    }
+
+    return first != null
+      ? first
+      : second != null
+        ? second
+        : third;
+  }
+
+  /**
+   * Removes the contribution of a constraint's error symbol from the objective.
+   */
+  private void removeErrorEffects(
+    Symbol marker,
+    double strength)
+  {
+    if (marker.type != Symbol.ERROR)
+      return;
+
+    Row row = rows.get(marker);
+    if (row != null)
+      objective.insert(
+        row,
+        -strength);
+    else
+      objective.insert(
+        marker,
+        -strength);
+  }
+
+  private Symbol symbolFor(Variable variable) {
+    return variables.computeIfAbsent(
+      variable,
+      v -> symbol(Symbol.EXTERNAL));
+  }
+
+  private Symbol symbol(int type) {
+    return new Symbol(
+      type,
+      nextId++);
+  }
+
+  private static boolean nearZero(double value) {
+    return value < 0
+      ? -value < EPSILON
+      : value < EPSILON;
+  }
+
+  /**
+   * A column of the tableau. External symbols stand for the variables of the
+   * system; the others are introduced by the constraints.
+   */
+  private static final class Symbol {
+    static final int EXTERNAL = 1,
+      SLACK = 2,
+      ERROR = 3,
+      DUMMY = 4;
+
+    final int type,
+      id;
+
+    Symbol(
+      int type,
+      int id)
+    {
+      this.type = type;
+      this.id = id;
+    }
+
+    boolean isPivotable() {
+      return type == SLACK || type == ERROR;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+  }
+
+  /**
+   * The symbols which a constraint added to the tableau, by which it can be found
+   * again when it is removed.
+   */
+  private static final class Tag {
+    Symbol marker,
+      other;
+  }
+
+  private static final class Edit {
+    final Tag tag;
+    final Constraint constraint;
+    double constant;
+
+    Edit(
+      Tag tag,
+      Constraint constraint)
+    {
+      this.tag = tag;
+      this.constraint = constraint;
+    }
+  }
+
+  /**
+   * A row of the tableau, which gives a basic symbol (or an objective) as a constant
+   * plus a linear combination of parametric symbols.
+   */
+  private static final class Row {
+    final Map<Symbol, Double> cells;
+    double constant;
+
+    Row(double constant) {
+      this.constant = constant;
+      cells = new LinkedHashMap<>();
+    }
+
+    Row(Row other) {
+      constant = other.constant;
+      cells = new LinkedHashMap<>(other.cells);
+    }
+
+    double add(double value) {
+      return constant += value;
+    }
+
+    void insert(
+      Symbol symbol,
+      double coefficient)
+    {
+      double value = cells.getOrDefault(
+        symbol,
+        0.0) + coefficient;
+      if (nearZero(value))
+        cells.remove(symbol);
+      else
+        cells.put(
+          symbol,
+          value);
+    }
+
+    void insert(
+      Row other,
+      double coefficient)
+    {
+      constant += other.constant * coefficient;
+      for (Map.Entry<Symbol, Double> cell : other.cells.entrySet())
+        insert(
+          cell.getKey(),
+          cell.getValue() * coefficient);
+    }
+
+    void remove(Symbol symbol) {
+      cells.remove(symbol);
+    }
+
+    void reverseSign() {
+      constant = -constant;
+      for (Map.Entry<Symbol, Double> cell : cells.entrySet())
+        cell.setValue(-cell.getValue());
+    }
+
+    /**
+     * Solves this row for a symbol in it: given {@code 0 = c + a*s + ...}, this
+     * becomes {@code s = -c/a - ...}.
+     */
+    void solveFor(Symbol symbol) {
+      double coefficient = -1.0 / cells.remove(symbol);
+      constant *= coefficient;
+      for (Map.Entry<Symbol, Double> cell : cells.entrySet())
+        cell.setValue(cell.getValue() * coefficient);
+    }
+
+    /**
+     * Solves this row, which currently gives {@code lhs}, for {@code rhs} instead.
+     */
+    void solveFor(
+      Symbol lhs,
+      Symbol rhs)
+    {
+      insert(
+        lhs,
+        -1.0);
+      solveFor(rhs);
+    }
+
+    double coefficientFor(Symbol symbol) {
+      return cells.getOrDefault(
+        symbol,
+        0.0);
+    }
+
+    void substitute(
+      Symbol symbol,
+      Row row)
+    {
+      Double coefficient = cells.remove(symbol);
+      if (coefficient != null)
+        insert(
+          row,
+          coefficient);
+    }
+
+    boolean containsOnlyDummies() {
+      for (Symbol symbol : cells.keySet()) {
+        if (symbol.type != Symbol.DUMMY)
+          return false;
+      }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+/**
+ * The strengths which a {@code Constraint} may have. A required constraint must be
+ * satisfied; the solver satisfies the other constraints as well as it can, giving
+ * way on weaker constraints to satisfy stronger ones. Each of the named strengths
+ * outweighs any number of constraints of the strength below it, up to a thousand.
+ */
+public final class Strength {
+  public static final double REQUIRED = create(
+    1000,
+    1000,
+    1000);
+  public static final double STRONG = create(
+    1,
+    0,
+    0);
+  public static final double MEDIUM = create(
+    0,
+    1,
+    0);
+  public static final double WEAK = create(
+    0,
+    0,
+    1);
+
+  private Strength() { }
+
+  /**
+   * Creates a strength from its strong, medium and weak parts, each of which is
+   * between zero and a thousand.
+   */
+  public static double create(
+    double strong,
+    double medium,
+    double weak)
+  {
+    return clip(strong) * 1_000_000
+           + clip(medium) * 1_000
+           + clip(weak);
+  }
+
+  private static double clip(double part) {
+    return Math.max(
+      0,
+      Math.min(
+        part,
+        1000));
+  }
+
+  /**
+   * Clips a strength so that it is no stronger than {@link #REQUIRED}.
+   */
+  static double clipStrength(double strength) {
+    return Math.max(
+      0,
+      Math.min(
+        strength,
+        REQUIRED));
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+/**
+ * Thrown when a required constraint is added to a {@code Solver}, but can't be
+ * satisfied along with the required constraints already in it.
+ */
+@SuppressWarnings("serial")
+public class UnsatisfiableConstraintException extends RuntimeException {
+  private final Constraint constraint;
+
+  public UnsatisfiableConstraintException(Constraint constraint) {
+    super("The constraint can't be satisfied: " + constraint);
+    this.constraint = constraint;
+  }
+
+  public Constraint getConstraint() {
+    return constraint;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.constraint;
+
+/**
+ * An unknown quantity, such as the left edge or width of a component, whose value is
+ * found by a {@code Solver}. Variables are compared by identity.
+ */
+public final class Variable {
+  private final String name;
+
+  /**
+   * The value which the solver last found for this variable.
+   */
+  double value;
+
+  public Variable(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the value which was found for this variable when the solver last updated
+   * its variables.
+   *
+   * @see Solver#updateVariables()
+   */
+  public double getValue() {
+    return value;
+  }
+
+  public Expression plus(double constant) {
+    return Expression.of(this).plus(constant);
+  }
+
+  public Expression plus(Variable variable) {
+    return Expression.of(this).plus(variable);
+  }
+
+  public Expression plus(Expression expression) {
+    return Expression.of(this).plus(expression);
+  }
+
+  public Expression minus(double constant) {
+    return Expression.of(this).minus(constant);
+  }
+
+  public Expression minus(Variable variable) {
+    return Expression.of(this).minus(variable);
+  }
+
+  public Expression minus(Expression expression) {
+    return Expression.of(this).minus(expression);
+  }
+
+  public Expression times(double coefficient) {
+    return Expression.of(this).times(coefficient);
+  }
+
+  public Constraint equalTo(double constant) {
+    return Expression.of(this).equalTo(constant);
+  }
+
+  public Constraint equalTo(Variable variable) {
+    return Expression.of(this).equalTo(variable);
+  }
+
+  public Constraint equalTo(Expression expression) {
+    return Expression.of(this).equalTo(expression);
+  }
+
+  public Constraint atLeast(double constant) {
+    return Expression.of(this).atLeast(constant);
+  }
+
+  public Constraint atLeast(Variable variable) {
+    return Expression.of(this).atLeast(variable);
+  }
+
+  public Constraint atLeast(Expression expression) {
+    return Expression.of(this).atLeast(expression);
+  }
+
+  public Constraint atMost(double constant) {
+    return Expression.of(this).atMost(constant);
+  }
+
+  public Constraint atMost(Variable variable) {
+    return Expression.of(this).atMost(variable);
+  }
+
+  public Constraint atMost(Expression expression) {
+    return Expression.of(this).atMost(expression);
+  }
+
+  @Override
+  public String toString() {
+    return name + "=" + value;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+import jtxt.emulator.GString;
+
+/**
+ * Draws the cells of a {@code VirtualTable}. A renderer holds no state for any one
+ * cell; the same renderer draws every cell of a column (or of a whole table), so
+ * the number of renderers doesn't depend on the number of cells.
+ */
+public interface CellRenderer {
+  /**
+   * Renders the cell at the given row and column.
+   *
+   * @param model The model which holds the cell.
+   * @param row The row of the cell.
+   * @param column The column of the cell.
+   * @param width The width of the column; the string returned must be no longer.
+   * @param selected Whether the row of the cell is selected.
+   *
+   * @return The glyphs of the cell.
+   */
+  GString render(
+    TableModel model,
+    int row,
+    int column,
+    int width,
+    boolean selected);
+}
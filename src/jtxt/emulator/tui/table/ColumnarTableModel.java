@@ -0,0 +1,499 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code TableModel} which stores each column as an array of primitives. Numeric
+ * columns hold an {@code int[]}, {@code long[]} or {@code double[]}, and string
+ * columns are dictionary-encoded: each distinct string is stored once, and the
+ * column holds an {@code int[]} of indices into the dictionary. A row therefore
+ * costs only a few bytes for each column, rather than an object for each cell.
+ *
+ * <p>
+ * Rows are appended with {@link #addRow()}, and then filled in with the setter for
+ * the type of each column. The columns grow by doubling, so appending a row takes
+ * constant time on average.
+ * </p>
+ */
+public class ColumnarTableModel implements TableModel {
+  private final List<Column> columns;
+
+  private int rows,
+    capacity;
+
+  public ColumnarTableModel() {
+    columns = new ArrayList<>();
+    capacity = 16;
+  }
+
+  /**
+   * Adds a column to the right of the existing columns. The cells of the column in
+   * any existing rows are zero, or null for a string column.
+   *
+   * @param name The name of the column, which is shown in the header of a table.
+   * @param type The type of values which the column holds.
+   *
+   * @return The index of the new column.
+   */
+  public int addColumn(
+    String name,
+    ColumnType type)
+  {
+    Column column;
+    switch (type) {
+    case INT:
+      column = new IntColumn(
+        name,
+        capacity);
+      break;
+    case LONG:
+      column = new LongColumn(
+        name,
+        capacity);
+      break;
+    case DOUBLE:
+      column = new DoubleColumn(
+        name,
+        capacity);
+      break;
+    default:
+      column = new StringColumn(
+        name,
+        capacity);
+      break;
+    }
+    columns.add(column);
+
+    return columns.size() - 1;
+  }
+
+  /**
+   * Appends a row, in which every cell is zero, or null for string columns.
+   *
+   * @return The index of the new row.
+   */
+  public int addRow() {
+    if (rows == capacity) {
+      capacity *= 2;
+      for (Column column : columns)
+        column.grow(capacity);
+    }
+
+    return rows++;
+  }
+
+  /**
+   * Removes every row from this model. The storage which the rows used is kept, so
+   * that the model can be filled again without growing its columns.
+   */
+  public void clear() {
+    for (Column column : columns)
+      column.clear(rows);
+    rows = 0;
+  }
+
+  public void setInt(
+    int row,
+    int column,
+    int value)
+  {
+    ((IntColumn)getColumn(
+      row,
+      column,
+      ColumnType.INT)).values[row] = value;
+  }
+
+  public void setLong(
+    int row,
+    int column,
+    long value)
+  {
+    ((LongColumn)getColumn(
+      row,
+      column,
+      ColumnType.LONG)).values[row] = value;
+  }
+
+  public void setDouble(
+    int row,
+    int column,
+    double value)
+  {
+    ((DoubleColumn)getColumn(
+      row,
+      column,
+      ColumnType.DOUBLE)).values[row] = value;
+  }
+
+  public void setString(
+    int row,
+    int column,
+    String value)
+  {
+    ((StringColumn)getColumn(
+      row,
+      column,
+      ColumnType.STRING)).set(
+        row,
+        value);
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columns.size();
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return columns.get(column).name;
+  }
+
+  @Override
+  public ColumnType getColumnType(int column) {
+    return columns.get(column).type;
+  }
+
+  @Override
+  public int getInt(
+    int row,
+    int column)
+  {
+    return getColumn(
+      row,
+      column).getInt(row);
+  }
+
+  @Override
+  public long getLong(
+    int row,
+    int column)
+  {
+    return getColumn(
+      row,
+      column).getLong(row);
+  }
+
+  @Override
+  public double getDouble(
+    int row,
+    int column)
+  {
+    return getColumn(
+      row,
+      column).getDouble(row);
+  }
+
+  @Override
+  public String getString(
+    int row,
+    int column)
+  {
+    return getColumn(
+      row,
+      column).getString(row);
+  }
+
+  private Column getColumn(
+    int row,
+    int column)
+  {
+    if (row < 0 || row >= rows)
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of a "
+                                          + "model with " + rows + " rows.");
+
+    return columns.get(column);
+  }
+
+  private Column getColumn(
+    int row,
+    int column,
+    ColumnType type)
+  {
+    Column c = getColumn(
+      row,
+      column);
+    if (c.type != type)
+      throw new IllegalArgumentException("Column " + column + " holds "
+                                         + c.type + " values, not "
+                                         + type + " values.");
+
+    return c;
+  }
+
+  /**
+   * The storage for one column. Reading a cell as a type which the column can't
+   * widen to is an error.
+   */
+  private static abstract class Column {
+    final String name;
+    final ColumnType type;
+
+    Column(
+      String name,
+      ColumnType type)
+    {
+      this.name = name;
+      this.type = type;
+    }
+
+    abstract void grow(int capacity);
+
+    abstract void clear(int rows);
+
+    int getInt(int row) {
+      throw mismatch(ColumnType.INT);
+    }
+
+    long getLong(int row) {
+      throw mismatch(ColumnType.LONG);
+    }
+
+    double getDouble(int row) {
+      throw mismatch(ColumnType.DOUBLE);
+    }
+
+    abstract String getString(int row);
+
+    private IllegalStateException mismatch(ColumnType requested) {
+      return new IllegalStateException("The column \"" + name + "\" holds "
+                                       + type + " values, which can't be "
+                                       + "read as " + requested + ".");
+    }
+  }
+
+  private static final class IntColumn extends Column {
+    int[] values;
+
+    IntColumn(
+      String name,
+      int capacity)
+    {
+      super(
+        name,
+        ColumnType.INT);
+      values = new int[capacity];
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(
+        values,
+        capacity);
+    }
+
+    @Override
+    void clear(int rows) {
+      Arrays.fill(
+        values,
+        0,
+        rows,
+        0);
+    }
+
+    @Override
+    int getInt(int row) {
+      return values[row];
+    }
+
+    @Override
+    long getLong(int row) {
+      return values[row];
+    }
+
+    @Override
+    double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override
+    String getString(int row) {
+      return Integer.toString(values[row]);
+    }
+  }
+
+  private static final class LongColumn extends Column {
+    long[] values;
+
+    LongColumn(
+      String name,
+      int capacity)
+    {
+      super(
+        name,
+        ColumnType.LONG);
+      values = new long[capacity];
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(
+        values,
+        capacity);
+    }
+
+    @Override
+    void clear(int rows) {
+      Arrays.fill(
+        values,
+        0,
+        rows,
+        0);
+    }
+
+    @Override
+    long getLong(int row) {
+      return values[row];
+    }
+
+    @Override
+    double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override
+    String getString(int row) {
+      return Long.toString(values[row]);
+    }
+  }
+
+  private static final class DoubleColumn extends Column {
+    double[] values;
+
+    DoubleColumn(
+      String name,
+      int capacity)
+    {
+      super(
+        name,
+        ColumnType.DOUBLE);
+      values = new double[capacity];
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(
+        values,
+        capacity);
+    }
+
+    @Override
+    void clear(int rows) {
+      Arrays.fill(
+        values,
+        0,
+        rows,
+        0);
+    }
+
+    @Override
+    double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override
+    String getString(int row) {
+      return Double.toString(values[row]);
+    }
+  }
+
+  /**
+   * A column of strings, where each distinct string is stored once in the
+   * dictionary, and each cell holds the index of its string (or -1 for null).
+   */
+  private static final class StringColumn extends Column {
+    int[] codes;
+
+    private final List<String> dictionary;
+    private final Map<String, Integer> indices;
+
+    StringColumn(
+      String name,
+      int capacity)
+    {
+      super(
+        name,
+        ColumnType.STRING);
+      codes = new int[capacity];
+      Arrays.fill(
+        codes,
+        -1);
+      dictionary = new ArrayList<>();
+      indices = new HashMap<>();
+    }
+
+    void set(
+      int row,
+      String value)
+    {
+      if (value == null) {
+        codes[row] = -1;
+        return;
+      }
+
+      Integer code = indices.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        indices.put(
+          value,
+          code);
+      }
+      codes[row] = code;
+    }
+
+    @Override
+    void grow(int capacity) {
+      int previous = codes.length;
+      codes = Arrays.copyOf(
+        codes,
+        capacity);
+      Arrays.fill(
+        codes,
+        previous,
+        capacity,
+        -1);
+    }
+
+    @Override
+    void clear(int rows) {
+      Arrays.fill(
+        codes,
+        0,
+        rows,
+        -1);
+    }
+
+    @Override
+    String getString(int row) {
+      int code = codes[row];
+
+      return code < 0
+        ? null
+        : dictionary.get(code);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+import java.awt.Color;
+
+import jtxt.emulator.GString;
+import jtxt.emulator.Glyph;
+
+/**
+ * Renders cells as text, with numbers aligned to the right of their column and
+ * strings aligned to the left. Text which doesn't fit within its column is cut
+ * short, ending with an ellipsis. The glyphs of printable ASCII characters are
+ * created once and shared by every cell, so rendering a cell only allocates the
+ * string which is returned.
+ */
+public class DefaultCellRenderer implements CellRenderer {
+  private static final char ELLIPSIS = '\u2026';
+
+  private final Color foreground,
+    selectedBackground;
+
+  /**
+   * The number of digits shown after the decimal point for {@code DOUBLE} cells.
+   */
+  private final int decimals;
+
+  private final Glyph[] plain,
+    selected;
+
+  /**
+   * Holds the text of the cell being rendered.
+   */
+  private final StringBuilder text;
+
+  public DefaultCellRenderer(
+    Color foreground,
+    Color selectedBackground)
+  {
+    this(
+      foreground,
+      selectedBackground,
+      2);
+  }
+
+  public DefaultCellRenderer(
+    Color foreground,
+    Color selectedBackground,
+    int decimals)
+  {
+    this.foreground = foreground;
+    this.selectedBackground = selectedBackground;
+    this.decimals = decimals;
+    plain = new Glyph[128];
+    selected = new Glyph[128];
+    text = new StringBuilder();
+  }
+
+  @Override
+  public GString render(
+    TableModel model,
+    int row,
+    int column,
+    int width,
+    boolean selected)
+  {
+    text.setLength(0);
+    ColumnType type = model.getColumnType(column);
+    switch (type) {
+    case INT:
+      text.append(model.getInt(
+        row,
+        column));
+      break;
+    case LONG:
+      text.append(model.getLong(
+        row,
+        column));
+      break;
+    case DOUBLE:
+      appendFixed(model.getDouble(
+        row,
+        column));
+      break;
+    default:
+      String value = model.getString(
+        row,
+        column);
+      if (value != null)
+        text.append(value);
+      break;
+    }
+
+    Glyph[] glyphs = new Glyph[width];
+    int length = Math.min(
+      text.length(),
+      width),
+      start = type == ColumnType.STRING
+        ? 0
+        : width - length;
+
+    Glyph padding = selected
+      ? getGlyph(
+        ' ',
+        true)
+      : Glyph.BLANK;
+    for (int p = 0; p < width; p++)
+      glyphs[p] = padding;
+    for (int c = 0; c < length; c++)
+      glyphs[start + c] = getGlyph(
+        c == width - 1 && text.length() > width
+          ? ELLIPSIS
+          : text.charAt(c),
+        selected);
+
+    return new GString(glyphs);
+  }
+
+  /**
+   * Appends the value with a fixed number of decimal places, without going through
+   * {@code String.format}. Values which are too large to scale are appended as
+   * {@code Double.toString} would write them.
+   */
+  private void appendFixed(double value) {
+    double scale = Math.pow(
+      10,
+      decimals);
+    if (Double.isNaN(value)
+        || Double.isInfinite(value)
+        || Math.abs(value) * scale >= Long.MAX_VALUE)
+    {
+      text.append(value);
+      return;
+    }
+
+    long scaled = Math.round(Math.abs(value) * scale),
+      whole = scaled / (long)scale,
+      fraction = scaled % (long)scale;
+    if (value < 0 && scaled != 0)
+      text.append('-');
+    text.append(whole);
+
+    if (decimals > 0) {
+      text.append('.');
+      int mark = text.length();
+      text.append(fraction);
+      while (text.length() - mark < decimals)
+        text.insert(
+          mark,
+          '0');
+    }
+  }
+
+  private Glyph getGlyph(
+    char character,
+    boolean selected)
+  {
+    Glyph[] cache = selected
+      ? this.selected
+      : plain;
+    if (character >= cache.length)
+      return createGlyph(
+        character,
+        selected);
+
+    Glyph glyph = cache[character];
+    if (glyph == null)
+      glyph = cache[character] = createGlyph(
+        character,
+        selected);
+
+    return glyph;
+  }
+
+  private Glyph createGlyph(
+    char character,
+    boolean selected)
+  {
+    return new Glyph(
+      character,
+      foreground,
+      selected
+        ? selectedBackground
+        : Glyph.TRANSPARENT);
+  }
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * A view of another {@code TableModel} which sorts and filters its rows, without
+ * copying any cells. The view holds an index of the rows of the source model which
+ * pass the filter, in the order of the sort column; each row of this model is read
+ * from the row of the source model at the same place in the index.
+ *
+ * <p>
+ * Filtering and sorting all of the rows is done in parallel across the threads of
+ * the common fork/join pool. Sorting by an {@code INT} column packs each key and row
+ * into a {@code long}, and sorts them with {@link Arrays#parallelSort(long[])}; other
+ * columns are sorted with a parallel merge sort of the row indices. Because the
+ * source model is read from several threads at once, it must not be changed while
+ * this model is being sorted or filtered, and the filter must be safe to call from
+ * any thread.
+ * </p>
+ *
+ * <p>
+ * Once the index has been built, rows which are appended to the source model are
+ * added with {@link #rowsAppended()}, and rows which change with {@link
+ * #rowChanged(int)}; each is put in its place by a binary search, rather than by
+ * sorting the whole index again. The time taken by the last of each kind of work is
+ * kept, so that it can be reported alongside the number of rows which matched.
+ * </p>
+ *
+ * <p>
+ * Rows with equal keys are kept in the order of the source model, so the order of
+ * the index never depends on how the rows were added to it.
+ * </p>
+ */
+public class IndexedTableModel implements TableModel {
+  private final TableModel source;
+
+  /**
+   * The rows of the source model which are in this model, in order. Only the first
+   * {@code size} elements are used.
+   */
+  private int[] rows;
+  private int size;
+
+  /**
+   * The number of rows of the source model which have been considered for the
+   * index; rows after these have been appended since.
+   */
+  private int indexed;
+
+  private IntPredicate filter;
+  private int sortColumn = -1;
+  private boolean ascending = true;
+
+  private long filterNanos,
+    sortNanos,
+    updateNanos;
+
+  /**
+   * Creates a view of every row in the source model, in the same order.
+   *
+   * @param source The model whose rows are sorted and filtered.
+   */
+  public IndexedTableModel(TableModel source) {
+    this.source = source;
+    refresh();
+  }
+
+  /**
+   * Sorts the rows by the values within the given column.
+   *
+   * @param column The column to sort by, or -1 to keep the rows in the order of the
+   *   source model.
+   * @param ascending Whether the smallest values should come first.
+   */
+  public void sortBy(
+    int column,
+    boolean ascending)
+  {
+    sortColumn = column;
+    this.ascending = ascending;
+    sort();
+  }
+
+  /**
+   * Filters the rows of the source model, keeping only those for which the filter
+   * is true. The filter is called for many rows at once, from different threads.
+   *
+   * @param filter The filter, which is given the index of a row of the source model,
+   *   or null to keep every row.
+   */
+  public void setFilter(IntPredicate filter) {
+    this.filter = filter;
+    refresh();
+  }
+
+  /**
+   * Filters and sorts every row of the source model again.
+   */
+  public void refresh() {
+    long start = System.nanoTime();
+    int count = source.getRowCount();
+    IntPredicate filter = this.filter;
+    rows = filter == null
+      ? IntStream.range(
+        0,
+        count).toArray()
+      : IntStream.range(
+        0,
+        count).parallel().filter(filter).toArray();
+    size = rows.length;
+    indexed = count;
+    filterNanos = System.nanoTime() - start;
+
+    sort();
+  }
+
+  /**
+   * Adds the rows which have been appended to the source model since it was last
+   * indexed. The new rows are sorted among themselves, and then each is put into
+   * place with a binary search of the index, so the index is only moved once however
+   * many rows were appended.
+   */
+  public void rowsAppended() {
+    long start = System.nanoTime();
+    int count = source.getRowCount();
+    int[] added = new int[count - indexed];
+    int n = 0;
+    for (int row = indexed; row < count; row++) {
+      if (filter == null || filter.test(row))
+        added[n++] = row;
+    }
+    indexed = count;
+
+    sortRows(
+      added,
+      n);
+    merge(
+      added,
+      n);
+    updateNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Moves a row of the source model whose cells have changed to its new place, or
+   * removes it if it no longer passes the filter.
+   *
+   * @param sourceRow The index of the row within the source model.
+   */
+  public void rowChanged(int sourceRow) {
+    if (sourceRow >= indexed)
+      return;
+
+    long start = System.nanoTime();
+    for (int r = 0; r < size; r++) {
+      if (rows[r] == sourceRow) {
+        System.arraycopy(
+          rows,
+          r + 1,
+          rows,
+          r,
+          size - r - 1);
+        size--;
+        break;
+      }
+    }
+
+    if (filter == null || filter.test(sourceRow))
+      insert(sourceRow);
+    updateNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Gets the row of the source model which is shown at the given row of this one.
+   *
+   * @param row The index of a row in this model.
+   *
+   * @return The index of the same row in the source model.
+   */
+  public int getSourceRow(int row) {
+    if (row < 0 || row >= size)
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of a "
+                                          + "model with " + size + " rows.");
+
+    return rows[row];
+  }
+
+  public int getSortColumn() {
+    return sortColumn;
+  }
+
+  /**
+   * Gets the time the last filter of every row took.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getLastFilterNanos() {
+    return filterNanos;
+  }
+
+  /**
+   * Gets the time the last sort of every row took.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getLastSortNanos() {
+    return sortNanos;
+  }
+
+  /**
+   * Gets the time the last incremental change to the index took, either from rows
+   * being appended or a row changing.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getLastUpdateNanos() {
+    return updateNanos;
+  }
+
+  /**
+   * Gets the number of rows which passed the filter.
+   */
+  @Override
+  public int getRowCount() {
+    return size;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return source.getColumnCount();
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return source.getColumnName(column);
+  }
+
+  @Override
+  public ColumnType getColumnType(int column) {
+    return source.getColumnType(column);
+  }
+
+  @Override
+  public int getInt(
+    int row,
+    int column)
+  {
+    return source.getInt(
+      getSourceRow(row),
+      column);
+  }
+
+  @Override
+  public long getLong(
+    int row,
+    int column)
+  {
+    return source.getLong(
+      getSourceRow(row),
+      column);
+  }
+
+  @Override
+  public double getDouble(
+    int row,
+    int column)
+  {
+    return source.getDouble(
+      getSourceRow(row),
+      column);
+  }
+
+  @Override
+  public String getString(
+    int row,
+    int column)
+  {
+    return source.getString(
+      getSourceRow(row),
+      column);
+  }
+
+  private void sort() {
+    long start = System.nanoTime();
+    sortRows(
+      rows,
+      size);
+    sortNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Sorts the first rows of the array into the order of the sort column.
+   */
+  private void sortRows(
+    int[] rows,
+    int size)
+  {
+    if (sortColumn < 0) {
+      Arrays.parallelSort(
+        rows,
+        0,
+        size);
+      return;
+    }
+
+    int column = sortColumn;
+    if (source.getColumnType(column) == ColumnType.INT) {
+      /*
+       * The key goes in the upper half, and the row in the lower half, so the
+       * longs sort by key and then by row. Inverting the key reverses its
+       * order without overflowing.
+       */
+      boolean ascending = this.ascending;
+      long[] packed = new long[size];
+      Arrays.parallelSetAll(
+        packed,
+        i -> {
+          int key = source.getInt(
+            rows[i],
+            column);
+
+          return (long)(ascending ? key : ~key) << 32 | rows[i];
+        });
+      Arrays.parallelSort(packed);
+      Arrays.parallelSetAll(
+        rows,
+        i -> i < size
+          ? (int)packed[i]
+          : rows[i]);
+      return;
+    }
+
+    /*
+     * The rows are sorted by their place in the array, so that the keys can be
+     * read into an array once, rather than from the model for each comparison.
+     */
+    int[] order = new int[size];
+    Arrays.parallelSetAll(
+      order,
+      i -> i);
+    ParallelMergeSort.sort(
+      order,
+      size,
+      createComparator(
+        rows,
+        size));
+
+    int[] sorted = new int[size];
+    Arrays.parallelSetAll(
+      sorted,
+      i -> rows[order[i]]);
+    System.arraycopy(
+      sorted,
+      0,
+      rows,
+      0,
+      size);
+  }
+
+  /**
+   * Creates a comparator of places within the array of rows, which compares the
+   * keys of the rows at those places, and then the rows themselves.
+   */
+  private ParallelMergeSort.IntComparator createComparator(
+    int[] rows,
+    int size)
+  {
+    int column = sortColumn,
+      sign = ascending
+        ? 1
+        : -1;
+    ParallelMergeSort.IntComparator keys;
+    switch (source.getColumnType(column)) {
+    case LONG: {
+      long[] values = new long[size];
+      Arrays.parallelSetAll(
+        values,
+        i -> source.getLong(
+          rows[i],
+          column));
+      keys = (a, b) -> Long.compare(
+        values[a],
+        values[b]);
+      break;
+    }
+    case DOUBLE: {
+      double[] values = new double[size];
+      Arrays.parallelSetAll(
+        values,
+        i -> source.getDouble(
+          rows[i],
+          column));
+      keys = (a, b) -> Double.compare(
+        values[a],
+        values[b]);
+      break;
+    }
+    default: {
+      String[] values = new String[size];
+      Arrays.parallelSetAll(
+        values,
+        i -> source.getString(
+          rows[i],
+          column));
+      keys = (a, b) -> compareStrings(
+        values[a],
+        values[b]);
+      break;
+    }
+    }
+
+    return (a, b) -> {
+      int c = sign * keys.compare(
+        a,
+        b);
+
+      return c != 0
+        ? c
+        : Integer.compare(
+          rows[a],
+          rows[b]);
+    };
+  }
+
+  /**
+   * Compares two rows of the source model in the order of the index.
+   */
+  private int compareRows(
+    int a,
+    int b)
+  {
+    if (sortColumn < 0)
+      return Integer.compare(
+        a,
+        b);
+
+    int c;
+    switch (source.getColumnType(sortColumn)) {
+    case INT:
+      c = Integer.compare(
+        source.getInt(
+          a,
+          sortColumn),
+        source.getInt(
+          b,
+          sortColumn));
+      break;
+    case LONG:
+      c = Long.compare(
+        source.getLong(
+          a,
+          sortColumn),
+        source.getLong(
+          b,
+          sortColumn));
+      break;
+    case DOUBLE:
+      c = Double.compare(
+        source.getDouble(
+          a,
+          sortColumn),
+        source.getDouble(
+          b,
+          sortColumn));
+      break;
+    default:
+      c = compareStrings(
+        source.getString(
+          a,
+          sortColumn),
+        source.getString(
+          b,
+          sortColumn));
+      break;
+    }
+    if (!ascending)
+      c = -c;
+
+    return c != 0
+      ? c
+      : Integer.compare(
+        a,
+        b);
+  }
+
+  /**
+   * Compares strings, where null comes before any string.
+   */
+  private static int compareStrings(
+    String a,
+    String b)
+  {
+    if (a == null || b == null)
+      return a == null
+        ? (b == null ? 0 : -1)
+        : 1;
+
+    return a.compareTo(b);
+  }
+
+  /**
+   * Finds the place in the index, between the given bounds, where a row of the
+   * source model belongs.
+   */
+  private int search(
+    int sourceRow,
+    int low,
+    int high)
+  {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareRows(rows[mid], sourceRow) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+
+    return low;
+  }
+
+  /**
+   * Inserts a row of the source model into its place in the index.
+   */
+  private void insert(int sourceRow) {
+    int at = search(
+      sourceRow,
+      0,
+      size);
+    ensureCapacity(size + 1);
+    System.arraycopy(
+      rows,
+      at,
+      rows,
+      at + 1,
+      size - at);
+    rows[at] = sourceRow;
+    size++;
+  }
+
+  /**
+   * Merges the sorted rows into the index. Working back from the last of the added
+   * rows, each is placed with a binary search of the part of the index before the
+   * last one placed, and the rows after it are moved back (once) to make room for
+   * it and the rows which follow it.
+   */
+  private void merge(
+    int[] added,
+    int count)
+  {
+    ensureCapacity(size + count);
+
+    int high = size;
+    for (int a = count - 1; a >= 0; a--) {
+      int at = search(
+        added[a],
+        0,
+        high);
+      System.arraycopy(
+        rows,
+        at,
+        rows,
+        at + a + 1,
+        high - at);
+      rows[at + a] = added[a];
+      high = at;
+    }
+    size += count;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > rows.length)
+      rows = Arrays.copyOf(
+        rows,
+        Math.max(
+          capacity,
+          Math.max(
+            rows.length * 2,
+            16)));
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts arrays of indices with a comparator, splitting the array between the
+ * threads of the common fork/join pool. Each half is sorted in parallel, and the
+ * halves are then merged; ranges which are small enough are sorted on one thread.
+ * The sort is stable.
+ */
+final class ParallelMergeSort {
+  /**
+   * Compares two indices, without boxing them.
+   */
+  interface IntComparator {
+    int compare(
+      int a,
+      int b);
+  }
+
+  /**
+   * The size of a range below which it's sorted on one thread.
+   */
+  private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+  /**
+   * The size of a range below which it's sorted by insertion, rather than merging.
+   */
+  private static final int INSERTION_THRESHOLD = 32;
+
+  private ParallelMergeSort() { }
+
+  /**
+   * Sorts the first elements of the array.
+   *
+   * @param values The array to sort.
+   * @param size The number of elements to sort, from the start of the array.
+   * @param comparator The order to sort the elements into.
+   */
+  static void sort(
+    int[] values,
+    int size,
+    IntComparator comparator)
+  {
+    int[] buffer = new int[size];
+    if (size <= SEQUENTIAL_THRESHOLD)
+      sortSequential(
+        values,
+        buffer,
+        0,
+        size,
+        comparator);
+    else
+      ForkJoinPool.commonPool().invoke(new SortTask(
+        values,
+        buffer,
+        0,
+        size,
+        comparator));
+  }
+
+  @SuppressWarnings("serial")
+  private static final class SortTask extends RecursiveAction {
+    private final int[] values,
+      buffer;
+    private final int from,
+      to;
+    private final IntComparator comparator;
+
+    SortTask(
+      int[] values,
+      int[] buffer,
+      int from,
+      int to,
+      IntComparator comparator)
+    {
+      this.values = values;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+      this.comparator = comparator;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        sortSequential(
+          values,
+          buffer,
+          from,
+          to,
+          comparator);
+        return;
+      }
+
+      int mid = (from + to) >>> 1;
+      invokeAll(
+        new SortTask(
+          values,
+          buffer,
+          from,
+          mid,
+          comparator),
+        new SortTask(
+          values,
+          buffer,
+          mid,
+          to,
+          comparator));
+      merge(
+        values,
+        buffer,
+        from,
+        mid,
+        to,
+        comparator);
+    }
+  }
+
+  private static void sortSequential(
+    int[] values,
+    int[] buffer,
+    int from,
+    int to,
+    IntComparator comparator)
+  {
+    if (to - from <= INSERTION_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int value = values[i],
+          j = i - 1;
+        for (; j >= from && comparator.compare(values[j], value) > 0; j--)
+          values[j + 1] = values[j];
+        values[j + 1] = value;
+      }
+
+      return;
+    }
+
+    int mid = (from + to) >>> 1;
+    sortSequential(
+      values,
+      buffer,
+      from,
+      mid,
+      comparator);
+    sortSequential(
+      values,
+      buffer,
+      mid,
+      to,
+      comparator);
+    merge(
+      values,
+      buffer,
+      from,
+      mid,
+      to,
+      comparator);
+  }
+
+  /**
+   * Merges the sorted ranges on either side of the middle. The left range is copied
+   * into the buffer, and merged back into the array with the right range.
+   */
+  private static void merge(
+    int[] values,
+    int[] buffer,
+    int from,
+    int mid,
+    int to,
+    IntComparator comparator)
+  {
+    if (comparator.compare(values[mid - 1], values[mid]) <= 0)
+      return;
+
+    System.arraycopy(
+      values,
+      from,
+      buffer,
+      from,
+      mid - from);
+
+    int left = from,
+      right = mid,
+      out = from;
+    while (left < mid && right < to) {
+      values[out++] = comparator.compare(buffer[left], values[right]) <= 0
+        ? buffer[left++]
+        : values[right++];
+    }
+    System.arraycopy(
+      buffer,
+      left,
+      values,
+      out,
+      mid - left);
+  }
+}
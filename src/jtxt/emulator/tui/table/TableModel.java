@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.table;
+
+/**
+ * The data shown by a {@code VirtualTable}. Cells are read by their type, so that a
+ * model may keep its columns as arrays of primitives, rather than as an object for
+ * each cell. A table only reads the cells which are visible.
+ *
+ * <p>
+ * Numeric cells may be read as any wider type (an {@code INT} cell may be read with
+ * {@link #getLong(int, int)} or {@link #getDouble(int, int)}), and any cell may be
+ * read as a string.
+ * </p>
+ *
+ * @see ColumnarTableModel
+ * @see jtxt.emulator.tui.VirtualTable
+ */
+public interface TableModel {
+  int getRowCount();
+
+  int getColumnCount();
+
+  String getColumnName(int column);
+
+  ColumnType getColumnType(int column);
+
+  int getInt(
+    int row,
+    int column);
+
+  long getLong(
+    int row,
+    int column);
+
+  double getDouble(
+    int row,
+    int column);
+
+  String getString(
+    int row,
+    int column);
+}
@@ -0,0 +1,737 @@
+/*
+ * Copyright 2019 Lane W. Surface
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jtxt.emulator.tui.text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The text of a document, stored as a piece table. The text which was loaded is
+ * never changed; text which is typed is appended to a second buffer, and the
+ * document is a sequence of <i>pieces</i>, each of which is a range of one of the
+ * two buffers. Inserting or deleting text only splits and rearranges pieces, so
+ * neither copies any of the text itself.
+ *
+ * <p>
+ * The pieces are kept in a treap (a binary tree balanced by random priorities),
+ * ordered by their place in the document. Each node counts the characters and the
+ * line feeds within its subtree, so that finding the piece at an offset, or the
+ * start of a line, takes time proportional to the depth of the tree: O(log n) in
+ * the number of pieces. Each buffer keeps the positions of its line feeds in a
+ * sorted array (the positions within the appended text are added as it's
+ * appended), so the line feeds within any piece are counted and found with a binary
+ * search, rather than by scanning the piece.
+ * </p>
+ *
+ * <p>
+ * Text which is loaded from a file is kept as one byte per character if the file
+ * is entirely ASCII, which is the common case for configuration and logs, so that a
+ * document uses little more memory than the size of its file. Otherwise, the text is
+ * decoded as UTF-8. Offsets are {@code int}s, so a document may hold up to about two
+ * billion characters.
+ * </p>
+ */
+public final class PieceTable {
+  /**
+   * The text which the document was created with, and the text which has been
+   * inserted since.
+   */
+  private final Text original;
+  private final AppendedText appended;
+
+  private Node root;
+
+  /**
+   * Creates a document which contains the given text.
+   *
+   * @param text The initial text of the document.
+   */
+  public PieceTable(CharSequence text) {
+    this(new CharText(text.toString().toCharArray()));
+  }
+
+  private PieceTable(Text original) {
+    this.original = original;
+    appended = new AppendedText();
+    if (original.length() > 0)
+      root = createNode(
+        original,
+        0,
+        original.length());
+  }
+
+  /**
+   * Loads a document from a file, which is read as UTF-8.
+   *
+   * @param file The file to load.
+   *
+   * @return A new document containing the text of the file.
+   *
+   * @throws IOException if the file can't be read.
+   */
+  public static PieceTable open(Path file) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    for (byte b : bytes) {
+      if (b < 0)
+        return new PieceTable(new CharText(new String(
+          bytes,
+          StandardCharsets.UTF_8).toCharArray()));
+    }
+
+    return new PieceTable(new AsciiText(bytes));
+  }
+
+  public int length() {
+    return size(root);
+  }
+
+  /**
+   * Gets the number of lines in the document, which is one more than the number of
+   * line feeds.
+   *
+   * @return The number of lines.
+   */
+  public int getLineCount() {
+    return lines(root) + 1;
+  }
+
+  /**
+   * Gets the character at the given offset.
+   *
+   * @param offset The offset of the character within the document.
+   *
+   * @return The character.
+   */
+  public char charAt(int offset) {
+    checkRange(
+      offset,
+      offset + 1);
+
+    Node node = root;
+    while (true) {
+      int left = size(node.left);
+      if (offset < left)
+        node = node.left;
+      else if (offset < left + node.length)
+        return node.text.charAt(node.start + offset - left);
+      else {
+        offset -= left + node.length;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Copies characters of the document into an array.
+   *
+   * @param offset The offset of the first character to copy.
+   * @param count The number of characters to copy.
+   * @param destination The array to copy into, from its start.
+   */
+  public void getChars(
+    int offset,
+    int count,
+    char[] destination)
+  {
+    checkRange(
+      offset,
+      offset + count);
+    copy(
+      root,
+      0,
+      offset,
+      offset + count,
+      destination);
+  }
+
+  /**
+   * Copies the characters of the subtree which fall within the range, only visiting
+   * the subtrees which overlap it.
+   *
+   * @param base The offset of the first character of the subtree.
+   */
+  private static void copy(
+    Node node,
+    int base,
+    int from,
+    int to,
+    char[] destination)
+  {
+    if (node == null || from >= base + node.size || to <= base)
+      return;
+
+    int left = size(node.left),
+      start = base + left,
+      end = start + node.length;
+    copy(
+      node.left,
+      base,
+      from,
+      to,
+      destination);
+    for (int o = Math.max(from, start); o < Math.min(to, end); o++)
+      destination[o - from] = node.text.charAt(node.start + o - start);
+    copy(
+      node.right,
+      end,
+      from,
+      to,
+      destination);
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[length()];
+    getChars(
+      0,
+      chars.length,
+      chars);
+
+    return new String(chars);
+  }
+
+  /**
+   * Gets the offset of the first character of a line.
+   *
+   * @param line The index of the line.
+   *
+   * @return The offset of the start of the line within the document.
+   */
+  public int getLineStart(int line) {
+    if (line < 0 || line >= getLineCount())
+      throw new IndexOutOfBoundsException("Line " + line + " is outside of a "
+                                          + "document with " + getLineCount()
+                                          + " lines.");
+    if (line == 0)
+      return 0;
+
+    /*
+     * The line starts just after the line feed which ends the line before it.
+     */
+    int feed = line,
+      offset = 0;
+    Node node = root;
+    while (true) {
+      int left = lines(node.left);
+      if (feed <= left) {
+        node = node.left;
+        continue;
+      }
+
+      feed -= left;
+      offset += size(node.left);
+      if (feed <= node.feeds)
+        return offset
+               + node.text.findFeed(node.start, feed)
+               - node.start
+               + 1;
+
+      feed -= node.feeds;
+      offset += node.length;
+      node = node.right;
+    }
+  }
+
+  /**
+   * Gets the offset just past the last character of a line, not counting the line
+   * feed which ends it.
+   *
+   * @param line The index of the line.
+   *
+   * @return The offset of the end of the line within the document.
+   */
+  public int getLineEnd(int line) {
+    return line + 1 < getLineCount()
+      ? getLineStart(line + 1) - 1
+      : length();
+  }
+
+  /**
+   * Gets the line which contains the character at the given offset.
+   *
+   * @param offset An offset within the document, which may be its length.
+   *
+   * @return The index of the line.
+   */
+  public int getLineAt(int offset) {
+    checkRange(
+      offset,
+      offset);
+
+    int line = 0;
+    Node node = root;
+    while (node != null) {
+      int left = size(node.left);
+      if (offset < left) {
+        node = node.left;
+        continue;
+      }
+
+      line += lines(node.left);
+      offset -= left;
+      if (offset < node.length)
+        return line + node.text.countFeeds(
+          node.start,
+          node.start + offset);
+
+      line += node.feeds;
+      offset -= node.length;
+      node = node.right;
+    }
+
+    return line;
+  }
+
+  /**
+   * Inserts text into the document.
+   *
+   * @param offset The offset to insert the text at.
+   * @param text The text to insert.
+   */
+  public void insert(
+    int offset,
+    CharSequence text)
+  {
+    checkRange(
+      offset,
+      offset);
+    if (text.length() == 0)
+      return;
+
+    int start = appended.length();
+    appended.append(text);
+
+    Node[] halves = split(
+      root,
+      offset);
+
+    /*
+     * Text which is typed one character at a time continues the piece before
+     * it, rather than adding a piece for each character.
+     */
+    if (!extend(
+      halves[0],
+      start,
+      text.length()))
+    {
+      halves[0] = merge(
+        halves[0],
+        createNode(
+          appended,
+          start,
+          text.length()));
+    }
+    root = merge(
+      halves[0],
+      halves[1]);
+  }
+
+  /**
+   * Deletes a range of characters from the document.
+   *
+   * @param offset The offset of the first character to delete.
+   * @param count The number of characters to delete.
+   */
+  public void delete(
+    int offset,
+    int count)
+  {
+    checkRange(
+      offset,
+      offset + count);
+    if (count == 0)
+      return;
+
+    Node[] before = split(
+      root,
+      offset),
+      after = split(
+        before[1],
+        count);
+    root = merge(
+      before[0],
+      after[1]);
+  }
+
+  private void checkRange(
+    int from,
+    int to)
+  {
+    if (from < 0 || from > to || to > length())
+      throw new IndexOutOfBoundsException("The range " + from + " to " + to
+                                          + " is outside of a document of "
+                                          + length() + " characters.");
+  }
+
+  private static Node createNode(
+    Text text,
+    int start,
+    int length)
+  {
+    return new Node(
+      text,
+      start,
+      length,
+      text.countFeeds(
+        start,
+        start + length));
+  }
+
+  /**
+   * Splits the tree into the nodes before the offset and the nodes after it. A
+   * piece which straddles the offset is split into two.
+   *
+   * @return The tree before the offset, and the tree after it.
+   */
+  private static Node[] split(
+    Node node,
+    int offset)
+  {
+    if (node == null)
+      return new Node[2];
+
+    int left = size(node.left);
+    if (offset <= left) {
+      Node[] halves = split(
+        node.left,
+        offset);
+      node.left = halves[1];
+      halves[1] = node.update();
+
+      return halves;
+    }
+
+    if (offset >= left + node.length) {
+      Node[] halves = split(
+        node.right,
+        offset - left - node.length);
+      node.right = halves[0];
+      halves[0] = node.update();
+
+      return halves;
+    }
+
+    /*
+     * The tail of the piece takes the priority of the node it was cut from, which
+     * is at least that of every node after it within this subtree, and at most that
+     * of the ancestors it'll be attached to; so the heap order still holds.
+     */
+    int cut = offset - left;
+    Node tail = new Node(
+      node.text,
+      node.start + cut,
+      node.length - cut,
+      node.text.countFeeds(
+        node.start + cut,
+        node.start + node.length),
+      node.priority);
+    Node after = merge(
+      tail,
+      node.right);
+
+    node.length = cut;
+    node.feeds -= tail.feeds;
+    node.right = null;
+    node.update();
+
+    return new Node[] { node, after };
+  }
+
+  private static Node merge(
+    Node left,
+    Node right)
+  {
+    if (left == null)
+      return right;
+    if (right == null)
+      return left;
+
+    if (left.priority > right.priority) {
+      left.right = merge(
+        left.right,
+        right);
+
+      return left.update();
+    }
+
+    right.left = merge(
+      left,
+      right.left);
+
+    return right.update();
+  }
+
+  /**
+   * Extends the last piece of the tree by the given range of the appended text, if
+   * that piece ends where the range begins.
+   *
+   * @return Whether the piece was extended.
+   */
+  private boolean extend(
+    Node node,
+    int start,
+    int length)
+  {
+    if (node == null)
+      return false;
+
+    boolean extended;
+    if (node.right != null)
+      extended = extend(
+        node.right,
+        start,
+        length);
+    else if (node.text == appended && node.start + node.length == start) {
+      node.length += length;
+      node.feeds += appended.countFeeds(
+        start,
+        start + length);
+      extended = true;
+    }
+    else
+      extended = false;
+
+    if (extended)
+      node.update();
+
+    return extended;
+  }
+
+  private static int size(Node node) {
+    return node == null
+      ? 0
+      : node.size;
+  }
+
+  private static int lines(Node node) {
+    return node == null
+      ? 0
+      : node.lines;
+  }
+
+  /**
+   * A piece of the document, which is a range of one of the buffers, and the root of
+   * the subtree of pieces around it.
+   */
+  private static final class Node {
+    private final Text text;
+    private final int start,
+      priority;
+    private int length,
+      feeds;
+
+    private Node left,
+      right;
+
+    /**
+     * The number of characters and line feeds within the subtree.
+     */
+    private int size,
+      lines;
+
+    private Node(
+      Text text,
+      int start,
+      int length,
+      int feeds)
+    {
+      this(
+        text,
+        start,
+        length,
+        feeds,
+        ThreadLocalRandom.current().nextInt());
+    }
+
+    private Node(
+      Text text,
+      int start,
+      int length,
+      int feeds,
+      int priority)
+    {
+      this.text = text;
+      this.start = start;
+      this.length = length;
+      this.feeds = feeds;
+      this.priority = priority;
+      update();
+    }
+
+    private Node update() {
+      size = size(left) + length + size(right);
+      lines = lines(left) + feeds + lines(right);
+
+      return this;
+    }
+  }
+
+  /**
+   * A buffer of text, and the sorted positions of the line feeds within it.
+   */
+  private static abstract class Text {
+    protected int[] feeds;
+    protected int feedCount;
+
+    abstract char charAt(int index);
+
+    abstract int length();
+
+    /**
+     * Counts the line feeds within the range of this text.
+     */
+    int countFeeds(
+      int from,
+      int to)
+    {
+      return search(to) - search(from);
+    }
+
+    /**
+     * Finds the position of the given line feed (counting from one) after the start
+     * of the range.
+     */
+    int findFeed(
+      int from,
+      int feed)
+    {
+      return feeds[search(from) + feed - 1];
+    }
+
+    /**
+     * Finds the number of line feeds before the position.
+     */
+    private int search(int position) {
+      int low = 0,
+        high = feedCount;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (feeds[mid] < position)
+          low = mid + 1;
+        else
+          high = mid;
+      }
+
+      return low;
+    }
+
+    protected void indexFeeds(int from) {
+      for (int i = from; i < length(); i++) {
+        if (charAt(i) != '\n')
+          continue;
+
+        if (feedCount == feeds.length)
+          feeds = Arrays.copyOf(
+            feeds,
+            Math.max(
+              feedCount * 2,
+              16));
+        feeds[feedCount++] = i;
+      }
+    }
+  }
+
+  /**
+   * Text which is entirely ASCII, stored as one byte per character.
+   */
+  private static final class AsciiText extends Text {
+    private final byte[] bytes;
+
+    private AsciiText(byte[] bytes) {
+      this.bytes = bytes;
+      feeds = new int[0];
+      indexFeeds(0);
+      feeds = Arrays.copyOf(
+        feeds,
+        feedCount);
+    }
+
+    @Override
+    char charAt(int index) {
+      return (char)bytes[index];
+    }
+
+    @Override
+    int length() {
+      return bytes.length;
+    }
+  }
+
+  private static final class CharText extends Text {
+    private final char[] chars;
+
+    private CharText(char[] chars) {
+      this.chars = chars;
+      feeds = new int[0];
+      indexFeeds(0);
+      feeds = Arrays.copyOf(
+        feeds,
+        feedCount);
+    }
+
+    @Override
+    char charAt(int index) {
+      return chars[index];
+    }
+
+    @Override
+    int length() {
+      return chars.length;
+    }
+  }
+
+  /**
+   * The text which has been inserted into the document. Text is only ever appended
+   * to it, and its line feeds are indexed as it's appended.
+   */
+  private static final class AppendedText extends Text {
+    private char[] chars;
+    private int length;
+
+    private AppendedText() {
+      chars = new char[64];
+      feeds = new int[16];
+    }
+
+    void append(CharSequence text) {
+      if (length + text.length() > chars.length)
+        chars = Arrays.copyOf(
+          chars,
+          Math.max(
+            chars.length * 2,
+            length + text.length()));
+
+      int from = length;
+      for (int c = 0; c < text.length(); c++)
+        chars[length++] = text.charAt(c);
+      indexFeeds(from);
+    }
+
+    @Override
+    char charAt(int index) {
+      return chars[index];
+    }
+
+    @Override
+    int length() {
+      return length;
+    }
+  }
+}
@@ -2,16 +2,25 @@ package test;
 
 import jtxt.emulator.EmulatedTerminal;
 import jtxt.Terminal;
+import jtxt.emulator.Region;
 import jtxt.emulator.tui.*;
 import jtxt.emulator.tui.GridLayout.GridParameters;
+import jtxt.emulator.tui.GridLayout.Track;
 
 import javax.imageio.ImageIO;
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 
 public class TestGridLayout {
   public static void main(String[] args) {
+    checkTracks();
+    checkChangedTracks();
+    System.out.println("GridLayout: OK");
+    if (GraphicsEnvironment.isHeadless())
+      return;
+
     Terminal terminal = new EmulatedTerminal(
       "GridLayout",
       80,
@@ -93,4 +102,199 @@ public class TestGridLayout {
       text,
       button);
   }
+
+  /**
+   * Lays out a grid of fixed and weighted tracks without a display, and checks the
+   * edges of the tracks, as well as which track is found on either side of each
+   * edge. The container doesn't start at the origin, so that an offset which is
+   * applied twice (or not at all) is caught.
+   */
+  private static void checkTracks() {
+    GridLayout layout = new GridLayout(
+      2,
+      3);
+    layout.setRows(
+      Track.fixed(2),
+      Track.weight(1));
+    layout.setColumns(
+      0,
+      Track.weight(1),
+      Track.weight(3));
+    layout.setColumns(
+      1,
+      Track.fixed(10),
+      Track.weight(1),
+      Track.weight(2));
+
+    if (layout.getRowAt(1) != -1)
+      throw new AssertionError("A row was found before the layout was done.");
+
+    layout.setParentBounds(new Region(
+      1,
+      5,
+      13,
+      45));
+
+    /*
+     * The fixed row takes two lines and the weighted row the other ten. The first
+     * row's cells split all forty positions one to three, and the second row's
+     * weighted cells split the thirty left by the fixed cell one to two.
+     */
+    expect(
+      layout,
+      layout.getParametersForCell(
+        0,
+        0),
+      new Region(
+        1,
+        5,
+        3,
+        15));
+    expect(
+      layout,
+      layout.getParametersForCell(
+        0,
+        1),
+      new Region(
+        1,
+        15,
+        3,
+        45));
+    expect(
+      layout,
+      layout.getParametersForCellsInRange(
+        1,
+        0,
+        1,
+        1),
+      new Region(
+        3,
+        5,
+        13,
+        25));
+    expect(
+      layout,
+      layout.getParametersForCell(
+        1,
+        2),
+      new Region(
+        3,
+        25,
+        13,
+        45));
+
+    int[][] rows = {
+      { 0, -1 }, { 1, 0 }, { 2, 0 }, { 3, 1 }, { 12, 1 }, { 13, -1 }
+    };
+    for (int[] row : rows)
+      expect(
+        "getRowAt(" + row[0] + ")",
+        layout.getRowAt(row[0]),
+        row[1]);
+
+    int[][] columns = {
+      { 0, 4, -1 }, { 0, 5, 0 }, { 0, 14, 0 }, { 0, 15, 1 }, { 0, 44, 1 },
+      { 0, 45, -1 }, { 1, 14, 0 }, { 1, 15, 1 }, { 1, 24, 1 }, { 1, 25, 2 },
+      { 1, 44, 2 }, { 1, 45, -1 }
+    };
+    for (int[] column : columns)
+      expect(
+        "getColumnAt(" + column[0] + ", " + column[1] + ")",
+        layout.getColumnAt(
+          column[0],
+          column[1]),
+        column[2]);
+  }
+
+  /**
+   * Changes the tracks of a grid after its container has been laid out. The new
+   * tracks only apply once the container is invalidated, since the layout can't
+   * reach the container itself.
+   */
+  private static void checkChangedTracks() {
+    GridLayout layout = new GridLayout(
+      1,
+      1);
+    Container<Component> container = new Container<>(
+      null,
+      layout);
+    Component top = new TextBox(
+      layout.getParametersForCell(
+        0,
+        0),
+      "top",
+      TextBox.Position.CENTER);
+    container.add(top);
+
+    Region bounds = new Region(
+      0,
+      0,
+      10,
+      20);
+    container.setBounds(bounds);
+    expect(
+      "the first layout",
+      top.getBounds(),
+      new Region(
+        0,
+        0,
+        5,
+        20));
+
+    layout.setRows(
+      Track.fixed(2),
+      Track.weight(1));
+    container.invalidateLayout();
+    container.setBounds(bounds);
+    expect(
+      "the layout after the rows were changed",
+      top.getBounds(),
+      new Region(
+        0,
+        0,
+        2,
+        20));
+  }
+
+  private static void expect(
+    String layout,
+    Region actual,
+    Region expected)
+  {
+    if (!actual.equals(expected))
+      throw new AssertionError("Expected " + expected + " after " + layout
+                               + ", but the component was given " + actual
+                               + ".");
+  }
+
+  private static void expect(
+    GridLayout layout,
+    GridParameters params,
+    Region expected)
+  {
+    /*
+     * Each cell may only be claimed once per layout pass, so every range is
+     * checked in a pass of its own; the bounds are the same, so the edges aren't
+     * calculated again.
+     */
+    layout.setParentBounds(new Region(
+      1,
+      5,
+      13,
+      45));
+    Region actual = layout.getBounds(params);
+    if (!actual.equals(expected))
+      throw new AssertionError("Expected " + expected + ", but the cells were "
+                               + "given " + actual + ".");
+  }
+
+  private static void expect(
+    String call,
+    int actual,
+    int expected)
+  {
+    if (actual != expected)
+      throw new AssertionError("Expected " + call + " to be " + expected
+                               + ", but it was " + actual + ".");
+  }
 }
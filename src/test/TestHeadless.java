@@ -0,0 +1,103 @@
+package test;
+
+import jtxt.emulator.FontAtlas;
+import jtxt.emulator.HeadlessRenderer;
+import jtxt.emulator.HeadlessTerminal;
+import jtxt.emulator.tui.ASCIImage;
+import jtxt.emulator.tui.Border;
+import jtxt.emulator.tui.GridLayout;
+import jtxt.emulator.tui.TextBox;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Rasterizes the same interface with each of the emulator's rasterizers, without a
+ * display, and reports their throughput. Pass a directory as the first argument to
+ * also write the frames drawn with the TrueType rasterizer as PNG images.
+ */
+public class TestHeadless {
+  private static final int WARMUP = 20,
+    FRAMES = 100;
+
+  public static void main(String[] args)
+    throws IOException, URISyntaxException
+  {
+    System.setProperty(
+      "java.awt.headless",
+      "true");
+
+    Font font = new Font(
+      Font.MONOSPACED,
+      Font.PLAIN,
+      12);
+    Path bitmap = Paths.get(ClassLoader.getSystemResource(
+      "dejavu-sans-mono-256.bmp").toURI());
+    HeadlessRenderer[] renderers =
+      { HeadlessRenderer.forFont(font)
+      , HeadlessRenderer.forAtlas(FontAtlas.forFont(font))
+      , HeadlessRenderer.forBitmapFont(
+          bitmap,
+          32,
+          32,
+          0,
+          256) };
+
+    if (args.length > 0)
+      renderers[0].exportTo(Paths.get(args[0]));
+
+    for (HeadlessRenderer renderer : renderers) {
+      HeadlessTerminal terminal = createTerminal(renderer);
+      for (int f = 0; f < WARMUP; f++)
+        terminal.update();
+
+      renderer.resetStatistics();
+      for (int f = 0; f < FRAMES; f++)
+        terminal.update();
+
+      if (renderer.getFrameCount() != FRAMES)
+        throw new AssertionError("Expected " + FRAMES + " frames, but "
+                                 + renderer.getFrameCount() + " were drawn.");
+      System.out.println(renderer);
+    }
+  }
+
+  private static HeadlessTerminal createTerminal(HeadlessRenderer renderer)
+    throws IOException
+  {
+    HeadlessTerminal terminal = new HeadlessTerminal(
+      80,
+      24,
+      renderer);
+    GridLayout layout = GridLayout.initializeForDimensions(
+      1,
+      2);
+    terminal.createRootContainer(layout);
+
+    BufferedImage image = ImageIO.read(
+      ClassLoader.getSystemResource("coke.jpg"));
+    terminal.add(
+      new Border(
+        Border.Type.DASHED,
+        Color.GRAY,
+        new TextBox(
+          layout.getParametersForCell(
+            0,
+            0),
+          "\\e[255;255;000mHello, O beautiful headless world!",
+          TextBox.Position.CENTER)),
+      new ASCIImage(
+        layout.getParametersForCell(
+          0,
+          1),
+        image));
+
+    return terminal;
+  }
+}
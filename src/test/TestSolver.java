@@ -0,0 +1,146 @@
+package test;
+
+import jtxt.emulator.tui.constraint.Constraint;
+import jtxt.emulator.tui.constraint.Solver;
+import jtxt.emulator.tui.constraint.Strength;
+import jtxt.emulator.tui.constraint.UnsatisfiableConstraintException;
+import jtxt.emulator.tui.constraint.Variable;
+
+/**
+ * Solves a pair of panes which share the width of a window, as the window is
+ * resized through an edit variable. A required constraint which can't be satisfied
+ * is then added, which must leave the solver as it was, so that later resizes are
+ * solved the same way as before.
+ */
+public class TestSolver {
+  public static void main(String[] args) {
+    Variable width = new Variable("width"),
+      left = new Variable("left"),
+      right = new Variable("right");
+
+    Solver solver = new Solver();
+    solver.addConstraint(left.atLeast(10));
+    solver.addConstraint(right.atLeast(10));
+    solver.addConstraint(left.plus(right)
+      .plus(1)
+      .equalTo(width));
+    solver.addConstraint(left.equalTo(width.times(0.25))
+      .withStrength(Strength.MEDIUM));
+    solver.addEditVariable(
+      width,
+      Strength.STRONG);
+
+    /*
+     * The left pane takes a quarter of the window, until that would make it
+     * narrower than its minimum.
+     */
+    resize(
+      solver,
+      width,
+      100,
+      left,
+      25,
+      right,
+      74);
+    resize(
+      solver,
+      width,
+      40,
+      left,
+      10,
+      right,
+      29);
+    resize(
+      solver,
+      width,
+      30,
+      left,
+      10,
+      right,
+      19);
+
+    /*
+     * Neither pane can be narrower than ten columns, so the window can't be
+     * narrower than twenty-one.
+     */
+    Constraint narrow = width.atMost(15);
+    try {
+      solver.addConstraint(narrow);
+      throw new AssertionError("An unsatisfiable constraint was added.");
+    } catch (UnsatisfiableConstraintException uce) {
+      if (uce.getConstraint() != narrow)
+        throw new AssertionError("The exception doesn't hold the constraint "
+                                 + "which couldn't be satisfied.");
+    }
+    if (solver.hasConstraint(narrow))
+      throw new AssertionError("The unsatisfiable constraint was kept.");
+
+    resize(
+      solver,
+      width,
+      100,
+      left,
+      25,
+      right,
+      74);
+    resize(
+      solver,
+      width,
+      40,
+      left,
+      10,
+      right,
+      29);
+
+    /*
+     * A satisfiable constraint can still be added once the solver has been
+     * restored, and removing it undoes its effect.
+     */
+    Constraint cap = left.atMost(20);
+    solver.addConstraint(cap);
+    resize(
+      solver,
+      width,
+      100,
+      left,
+      20,
+      right,
+      79);
+    solver.removeConstraint(cap);
+    resize(
+      solver,
+      width,
+      120,
+      left,
+      30,
+      right,
+      89);
+
+    System.out.println("Solver: OK");
+  }
+
+  /**
+   * Suggests a width for the window, and checks the widths of the panes.
+   */
+  private static void resize(
+    Solver solver,
+    Variable width,
+    double value,
+    Variable left,
+    double expectedLeft,
+    Variable right,
+    double expectedRight)
+  {
+    solver.suggestValue(
+      width,
+      value);
+    solver.updateVariables();
+
+    if (Math.abs(left.getValue() - expectedLeft) > 1e-6
+        || Math.abs(right.getValue() - expectedRight) > 1e-6)
+      throw new AssertionError("Expected panes of " + expectedLeft + " and "
+                               + expectedRight + " in a window of " + value
+                               + ", but they were " + left.getValue() + " and "
+                               + right.getValue() + ".");
+  }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import jtxt.GlyphBuffer;
+import jtxt.emulator.GString;
+import jtxt.emulator.Region;
+import jtxt.emulator.tui.TextEditor;
+import jtxt.emulator.tui.text.PieceTable;
+
+/**
+ * Edits a document without a display, and checks what the editor draws. The editor
+ * is scrolled to the right of lines which are shorter than the columns scrolled past,
+ * which must leave those lines blank rather than reading past their end.
+ */
+public class TestTextEditor {
+  public static void main(String[] args) {
+    StringBuilder text = new StringBuilder();
+    for (int c = 0; c < 60; c++)
+      text.append('a');
+    text.append("\nb");
+
+    TextEditor editor = new TextEditor(
+      null,
+      new PieceTable(text));
+    Region bounds = new Region(
+      0,
+      0,
+      5,
+      10);
+    editor.setBounds(bounds);
+
+    /*
+     * Moving the caret far along the first line scrolls the editor right, past
+     * the whole of the second line.
+     */
+    editor.setCaret(55);
+    GlyphBuffer buffer = new GlyphBuffer(bounds);
+    editor.draw(buffer);
+
+    expect(
+      buffer,
+      0,
+      "aaaaaaaaaa");
+    expect(
+      buffer,
+      1,
+      "");
+
+    /*
+     * Moving down to the short line keeps the caret in the column it can, and
+     * scrolls back to show it (as a blank just past the end of the line).
+     */
+    editor.keyPressed(TextEditor.Key.DOWN.character);
+    if (editor.getCaret() != 62)
+      throw new AssertionError("Expected the caret at 62, but it was at "
+                               + editor.getCaret() + ".");
+
+    buffer = new GlyphBuffer(bounds);
+    editor.draw(buffer);
+    expect(
+      buffer,
+      1,
+      " ");
+
+    System.out.println("TextEditor: OK");
+  }
+
+  /**
+   * Checks the glyphs drawn on a line of the buffer, where blank glyphs are
+   * ignored.
+   */
+  private static void expect(
+    GlyphBuffer buffer,
+    int line,
+    String expected)
+  {
+    GString drawn = buffer.getString(line);
+    StringBuilder actual = new StringBuilder();
+    for (int p = 0; p < drawn.length(); p++) {
+      char character = drawn.get(p).character;
+      if (character != '\0')
+        actual.append(character);
+    }
+
+    if (!actual.toString().equals(expected))
+      throw new AssertionError("Expected \"" + expected + "\" on line " + line
+                               + ", but \"" + actual + "\" was drawn.");
+  }
+}